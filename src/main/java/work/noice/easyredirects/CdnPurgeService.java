@@ -0,0 +1,240 @@
+package work.noice.easyredirects;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import info.magnolia.cms.beans.config.ServerConfiguration;
+import info.magnolia.context.MgnlContext;
+import info.magnolia.init.MagnoliaConfigurationProperties;
+import info.magnolia.jcr.util.NodeUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import work.noice.easyredirects.purge.CdnPurger;
+import work.noice.easyredirects.purge.PurgeBatch;
+import work.noice.easyredirects.purge.PurgeQueue;
+import work.noice.easyredirects.rules.CachePolicy;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+import jakarta.inject.Singleton;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.EventIterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static info.magnolia.jcr.util.PropertyUtil.getString;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+import static work.noice.easyredirects.RedirectsService.PN_FROM_URL;
+import static work.noice.easyredirects.RedirectsService.PN_REDIRECT;
+import static work.noice.easyredirects.RedirectsService.PN_USE_PATTERN;
+
+/**
+ * Purges the cached responses of changed redirects with the configured {@link CdnPurger}.
+ * Changes are collected for the purge delay, so a bulk import results in few batches or one purge of all redirects.
+ * Changed and removed redirects are purged by their surrogate key, the from urls of added or changed exact redirects
+ * by path, because their cached response is the page without redirect.
+ * <p>
+ * Only instances serving the redirects purge: the author instance never purges, because its changes reach the
+ * CDN with the publication. With several public instances, all but one switch the purges off with the
+ * {@value #PROPERTY_CDN_PURGE} property, otherwise every public instance sends the same purges.
+ * </p>
+ */
+@Singleton
+public class CdnPurgeService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CdnPurgeService.class);
+    private static final int MAX_BACKOFF_SHIFT = 10;
+    public static final String PROPERTY_CDN_PURGE = "easyredirects.cdnPurge";
+
+    private final PurgeQueue _queue = new PurgeQueue();
+
+    private Provider<RedirectsModule> _redirectsModule;
+    private Provider<ServerConfiguration> _serverConfiguration;
+    private Provider<MagnoliaConfigurationProperties> _configurationProperties;
+    private ScheduledExecutorService _executor;
+    private ScheduledFuture<?> _flushTask;
+
+    /**
+     * Queues the purges of changes in the redirects workspace.
+     *
+     * @param events observation events of the redirects workspace
+     */
+    public void enqueue(final EventIterator events) {
+        if (_redirectsModule.get().getCdnPurger() != null && isPurging()) {
+            Set<String> identifiers = new LinkedHashSet<>();
+            while (events.hasNext()) {
+                try {
+                    identifiers.add(events.nextEvent().getIdentifier());
+                } catch (RepositoryException e) {
+                    LOGGER.debug("Ignore event without identifier.", e);
+                }
+            }
+            Set<String> surrogateKeys = new LinkedHashSet<>();
+            Set<String> paths = new LinkedHashSet<>();
+            boolean all = false;
+            try {
+                MgnlContext.doInSystemContext((MgnlContext.Op<Void, RepositoryException>) () -> {
+                    Session session = MgnlContext.getJCRSession(RedirectsModule.WORKSPACE);
+                    for (String identifier : identifiers) {
+                        addPurges(session, identifier, surrogateKeys, paths);
+                    }
+                    return null;
+                });
+            } catch (RepositoryException e) {
+                LOGGER.warn("Error on reading the changed redirects, purging all redirects.", e);
+                all = true;
+            }
+            if (all) {
+                _queue.addAll();
+            }
+            if (all || !surrogateKeys.isEmpty() || !paths.isEmpty()) {
+                _queue.add(surrogateKeys, paths);
+                scheduleFlush(_redirectsModule.get().getPurgeDelay());
+            }
+        }
+    }
+
+    /**
+     * @return false on the author instance and on instances with purges switched off by {@value #PROPERTY_CDN_PURGE}
+     */
+    public boolean isPurging() {
+        return !_serverConfiguration.get().isAdmin()
+            && Boolean.parseBoolean(defaultIfBlank(_configurationProperties.get().getProperty(PROPERTY_CDN_PURGE), Boolean.TRUE.toString()));
+    }
+
+    /**
+     * @return number of pending surrogate keys and paths
+     */
+    public int getPendingPurges() {
+        return _queue.size();
+    }
+
+    /**
+     * Stops the purge thread, pending purges are dropped.
+     */
+    public synchronized void shutdown() {
+        if (_executor != null) {
+            if (!_queue.isEmpty()) {
+                LOGGER.info("Dropping {} pending CDN purges on shutdown.", _queue.size());
+            }
+            _executor.shutdownNow();
+            _executor = null;
+            _flushTask = null;
+        }
+    }
+
+    private static void addPurges(final Session session, final String identifier, final Set<String> surrogateKeys, final Set<String> paths) throws RepositoryException {
+        try {
+            Node node = session.getNodeByIdentifier(identifier);
+            if (NodeUtil.isNodeType(node, RedirectsModule.NT_REDIRECT)) {
+                surrogateKeys.add(CachePolicy.getSurrogateKey(identifier));
+                if (!Boolean.parseBoolean(getString(node, PN_USE_PATTERN))) {
+                    for (String url : new String[]{getString(node, PN_REDIRECT, EMPTY), getString(node, PN_FROM_URL, EMPTY)}) {
+                        if (isNotEmpty(url)) {
+                            paths.add(url);
+                        }
+                    }
+                }
+            }
+        } catch (ItemNotFoundException e) {
+            // removed redirect, its from url is only known to the cache
+            surrogateKeys.add(CachePolicy.getSurrogateKey(identifier));
+        }
+    }
+
+    private void flush() {
+        RedirectsModule module = _redirectsModule.get();
+        CdnPurger purger = module.getCdnPurger();
+        if (purger == null) {
+            // purging switched off meanwhile
+            _queue.clear();
+        }
+        while (purger != null && !_queue.isEmpty()) {
+            PurgeBatch batch = _queue.drain(module.getPurgeBatchSize(), module.getPurgeAllThreshold());
+            try {
+                purger.purge(batch);
+                LOGGER.debug("Purged {}.", batch);
+            } catch (Exception e) {
+                if (batch.getAttempt() < module.getPurgeRetries()) {
+                    int attempt = _queue.retry(batch);
+                    long delay = module.getPurgeDelay() << Math.min(attempt, MAX_BACKOFF_SHIFT);
+                    LOGGER.warn("Purge of {} failed, retry {} in {} ms.", batch, attempt, delay, e);
+                    rescheduleFlush(delay);
+                    return;
+                }
+                LOGGER.error("Purge of {} failed, dropped after {} retries.", batch, batch.getAttempt(), e);
+            }
+        }
+        synchronized (this) {
+            _flushTask = null;
+            if (!_queue.isEmpty()) {
+                // queued after the last batch was drained
+                scheduleFlush(module.getPurgeDelay());
+            }
+        }
+    }
+
+    /**
+     * Schedules a flush, if none is pending, so changes are coalesced until the flush runs.
+     */
+    private synchronized void scheduleFlush(final long delay) {
+        if (_flushTask == null) {
+            _flushTask = getExecutor().schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void rescheduleFlush(final long delay) {
+        _flushTask = getExecutor().schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService getExecutor() {
+        if (_executor == null) {
+            _executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "easyredirects-cdn-purge");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _executor;
+    }
+
+    @Inject
+    public void setRedirectsModule(final Provider<RedirectsModule> redirectsModule) {
+        _redirectsModule = redirectsModule;
+    }
+
+    @Inject
+    public void setServerConfiguration(final Provider<ServerConfiguration> serverConfiguration) {
+        _serverConfiguration = serverConfiguration;
+    }
+
+    @Inject
+    public void setConfigurationProperties(final Provider<MagnoliaConfigurationProperties> configurationProperties) {
+        _configurationProperties = configurationProperties;
+    }
+}
@@ -25,8 +25,13 @@ import info.magnolia.module.site.SiteManager;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
+import jakarta.inject.Provider;
 import javax.jcr.Node;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 
 import static work.noice.easyredirects.RedirectsService.DEF_SITE;
 import static work.noice.easyredirects.RedirectsService.PN_LINK;
@@ -34,6 +39,7 @@ import static work.noice.easyredirects.RedirectsService.PN_SITE;
 import static work.noice.easyredirects.RedirectsService.PN_SUFFIX;
 import static work.noice.easyredirects.RedirectsService.PN_REDIRECT;
 import static work.noice.easyredirects.RedirectsService.isExternalLink;
+import static info.magnolia.jcr.util.NodeUtil.getNodeIdentifierIfPossible;
 import static info.magnolia.jcr.util.PropertyUtil.getString;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
@@ -47,6 +53,8 @@ import static org.apache.commons.lang3.StringUtils.replaceOnce;
  * @since 16.10.14
  */
 public class DefaultPublicUrlService implements PublicUrlService {
+    private final Map<String, String> _baseUrls = new ConcurrentHashMap<>();
+    private volatile long _baseUrlGeneration;
 
     private String _targetContextPath = EMPTY;
 
@@ -56,15 +64,36 @@ public class DefaultPublicUrlService implements PublicUrlService {
 
     private SiteManager _siteManager;
     private ServerConfiguration _serverConfiguration;
+    private Provider<RedirectRuleRegistry> _ruleRegistry;
 
     @Override
     public String createRedirectUrl(final Node node) {
+        String siteName = getString(node, PN_SITE, DEF_SITE);
+        return removeEnd(getBaseUrl(siteName), "/") + getString(node, PN_REDIRECT, EMPTY);
+    }
+
+    /**
+     * Returns the memoized base url of the site. The base urls are computed again after changes
+     * of the site or server configuration.
+     *
+     * @param siteName site name
+     * @return base url of the site
+     */
+    protected String getBaseUrl(final String siteName) {
+        long generation = _ruleRegistry != null ? _ruleRegistry.get().getConfigurationGeneration() : 0L;
+        if (_baseUrlGeneration != generation) {
+            _baseUrls.clear();
+            _baseUrlGeneration = generation;
+        }
+        return _baseUrls.computeIfAbsent(siteName, this::computeBaseUrl);
+    }
+
+    private String computeBaseUrl(final String siteName) {
         // the default base url is the default
         String baseUrl = _serverConfiguration.getDefaultBaseUrl();
         baseUrl = replaceContextPath(baseUrl);
 
         // check the site configuration and take the first domain
-        String siteName = getString(node, PN_SITE, DEF_SITE);
         if (!DEF_SITE.equals(siteName)) {
             Site site = _siteManager.getSite(siteName);
             Collection<Domain> domains = site.getDomains();
@@ -73,8 +102,7 @@ public class DefaultPublicUrlService implements PublicUrlService {
                 baseUrl = firstDomain.toString();
             }
         }
-
-        return removeEnd(baseUrl, "/") + getString(node, PN_REDIRECT, EMPTY);
+        return baseUrl;
     }
 
     /**
@@ -93,12 +121,26 @@ public class DefaultPublicUrlService implements PublicUrlService {
 
     @Override
     public String createTargetUrl(final Node node) {
+        return createTargetUrl(node, this::getExternalLinkFromId);
+    }
+
+    @Override
+    public Map<String, String> createTargetUrls(final Collection<Node> nodes) {
+        Map<String, String> pageLinks = getExternalLinksFromIds(PublicUrlService.getPageIds(nodes));
+        Map<String, String> urls = new HashMap<>();
+        for (Node node : nodes) {
+            urls.put(getNodeIdentifierIfPossible(node), createTargetUrl(node, pageLinks::get));
+        }
+        return urls;
+    }
+
+    private String createTargetUrl(final Node node, final UnaryOperator<String> pageLinks) {
         String url = EMPTY;
         if (node != null) {
             url = getString(node, PN_LINK, EMPTY);
             if (isNotEmpty(url)) {
                 if (!isExternalLink(url)) {
-                    url = getExternalLinkFromId(url);
+                    url = pageLinks.apply(url);
                     url = replaceContextPath(url);
                 }
                 url += getString(node, PN_SUFFIX, EMPTY);
@@ -110,18 +152,27 @@ public class DefaultPublicUrlService implements PublicUrlService {
     @Inject
     public void setSiteManager(final SiteManager siteManager) {
         _siteManager = siteManager;
+        _baseUrls.clear();
     }
 
     @Inject
     public void setServerConfiguration(final ServerConfiguration serverConfiguration) {
         _serverConfiguration = serverConfiguration;
+        _baseUrls.clear();
     }
 
     public void setContextPath(final String contextPath) {
         _contextPath = contextPath;
+        _baseUrls.clear();
     }
 
     public void setTargetContextPath(final String targetContextPath) {
         _targetContextPath = targetContextPath;
+        _baseUrls.clear();
+    }
+
+    @Inject
+    public void setRuleRegistry(final Provider<RedirectRuleRegistry> ruleRegistry) {
+        _ruleRegistry = ruleRegistry;
     }
 }
@@ -0,0 +1,81 @@
+package work.noice.easyredirects;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import work.noice.easyredirects.rules.SingleFlight;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+import jakarta.inject.Singleton;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Coalesced redirect queries of the requests before the redirects are compiled, e.g. after a cache flush: concurrent
+ * requests of the same url and site wait for one query instead of querying the workspace each. The number of
+ * concurrent queries is limited by the {@link RedirectsModule#getMaxConcurrentLookups()}.
+ */
+@Singleton
+public class LookupFlights {
+    private Provider<RedirectsModule> _redirectsModule;
+    private SingleFlight<List<String>, List<String>> _flights;
+
+    /**
+     * Queries the redirects of an url or waits for the running query of another request.
+     *
+     * @param siteName site name
+     * @param redirect request url
+     * @param query    query of the redirect node identifiers
+     * @return redirect node identifiers, to be resolved in the session of the caller
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public List<String> load(final String siteName, final String redirect, final Supplier<List<String>> query) throws InterruptedException {
+        return getFlights().load(Arrays.asList(siteName, redirect), query);
+    }
+
+    /**
+     * @return number of queries saved by coalescing
+     */
+    public long getCoalesced() {
+        return getFlights().getCoalesced();
+    }
+
+    /**
+     * @return number of queries waiting for the concurrency limit
+     */
+    public int getQueued() {
+        return getFlights().getQueued();
+    }
+
+    private synchronized SingleFlight<List<String>, List<String>> getFlights() {
+        int maxConcurrent = Math.max(0, _redirectsModule.get().getMaxConcurrentLookups());
+        if (_flights == null || _flights.getMaxConcurrent() != maxConcurrent) {
+            _flights = new SingleFlight<>(maxConcurrent);
+        }
+        return _flights;
+    }
+
+    @Inject
+    public void setRedirectsModule(final Provider<RedirectsModule> redirectsModule) {
+        _redirectsModule = redirectsModule;
+    }
+}
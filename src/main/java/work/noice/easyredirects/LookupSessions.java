@@ -0,0 +1,202 @@
+package work.noice.easyredirects;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import info.magnolia.observation.WorkspaceEventListenerRegistration;
+import info.magnolia.repository.RepositoryManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+import jakarta.inject.Singleton;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static info.magnolia.repository.RepositoryConstants.WEBSITE;
+
+/**
+ * Long-lived system sessions of the redirect lookups of requests, one per thread and workspace. Lookups use them
+ * instead of setting up a system context and acquiring a session per request. The sessions are handed out read-only:
+ * saving, moving, removing, importing and logging out fail. They are refreshed before the next use after a change in
+ * the redirects or website workspace. The sessions of finished threads, e.g. retired by the pool of the servlet
+ * container, are logged out on the next session opened after a minute; all sessions are logged out on module stop.
+ */
+@Singleton
+public class LookupSessions {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LookupSessions.class);
+
+    private static final long OBSERVATION_DELAY = 100L;
+    private static final long OBSERVATION_MAX_DELAY = 1000L;
+    private static final long SWEEP_INTERVAL = 60000L;
+    private static final Set<String> WRITE_METHODS = Set.of(
+        "save", "move", "removeItem", "importXML", "getImportContentHandler", "setNamespacePrefix", "logout"
+    );
+
+    private final AtomicLong _generation = new AtomicLong();
+    private final Map<Thread, Map<String, ThreadSession>> _threadSessions = new ConcurrentHashMap<>();
+    private final Set<Session> _sessions = ConcurrentHashMap.newKeySet();
+
+    private Provider<RepositoryManager> _repositoryManager;
+    private volatile boolean _observing;
+    private volatile long _lastSweep = System.currentTimeMillis();
+
+    /**
+     * Returns the session of the current thread. Opens it on first use and refreshes it after workspace changes.
+     *
+     * @param workspace workspace name
+     * @return read-only system session
+     * @throws RepositoryException if the session can't be opened
+     */
+    public Session get(final String workspace) throws RepositoryException {
+        registerObservation();
+        Map<String, ThreadSession> sessions = _threadSessions.computeIfAbsent(Thread.currentThread(), thread -> new ConcurrentHashMap<>());
+        ThreadSession threadSession = sessions.get(workspace);
+        long generation = _generation.get();
+        if (threadSession == null || !threadSession._session.isLive()) {
+            if (threadSession != null) {
+                _sessions.remove(threadSession._session);
+            }
+            sweep();
+            Session session = _repositoryManager.get().getSystemSession(workspace);
+            threadSession = new ThreadSession(session, readOnly(session), generation);
+            _sessions.add(session);
+            sessions.put(workspace, threadSession);
+        } else if (threadSession._generation != generation) {
+            threadSession._session.refresh(false);
+            threadSession._generation = generation;
+        }
+        return threadSession._readOnly;
+    }
+
+    /**
+     * Whether the session is one of the lookup sessions, e.g. the session of a node found by a lookup.
+     *
+     * @param session session
+     * @return true for lookup sessions
+     */
+    public boolean isLookupSession(final Session session) {
+        return _sessions.contains(session);
+    }
+
+    /**
+     * Logs out all sessions. Threads open a new session on their next lookup.
+     */
+    public void release() {
+        Iterator<Map<String, ThreadSession>> iterator = _threadSessions.values().iterator();
+        while (iterator.hasNext()) {
+            logout(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return number of open sessions
+     */
+    public int size() {
+        return _sessions.size();
+    }
+
+    /**
+     * Logs out the sessions of finished threads.
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        if (now - _lastSweep >= SWEEP_INTERVAL) {
+            _lastSweep = now;
+            Iterator<Map.Entry<Thread, Map<String, ThreadSession>>> iterator = _threadSessions.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Thread, Map<String, ThreadSession>> entry = iterator.next();
+                if (!entry.getKey().isAlive()) {
+                    logout(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private void logout(final Map<String, ThreadSession> sessions) {
+        for (ThreadSession threadSession : sessions.values()) {
+            _sessions.remove(threadSession._session);
+            if (threadSession._session.isLive()) {
+                threadSession._session.logout();
+            }
+        }
+    }
+
+    private static Session readOnly(final Session session) {
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class}, (proxy, method, args) -> {
+            if (WRITE_METHODS.contains(method.getName())) {
+                throw new UnsupportedRepositoryOperationException("Lookup sessions are read-only.");
+            }
+            try {
+                return method.invoke(session, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    private void registerObservation() {
+        if (!_observing) {
+            synchronized (this) {
+                if (!_observing) {
+                    _observing = true;
+                    for (String workspace : new String[]{RedirectsModule.WORKSPACE, WEBSITE}) {
+                        try {
+                            WorkspaceEventListenerRegistration.observe(workspace, "/", events -> _generation.incrementAndGet())
+                                .withSubNodes(true)
+                                .withDelay(OBSERVATION_DELAY, OBSERVATION_MAX_DELAY)
+                                .register();
+                        } catch (RepositoryException e) {
+                            LOGGER.error("Unable to observe the {} workspace, lookup sessions are not refreshed.", workspace, e);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Inject
+    public void setRepositoryManager(final Provider<RepositoryManager> repositoryManager) {
+        _repositoryManager = repositoryManager;
+    }
+
+    private static final class ThreadSession {
+        private final Session _session;
+        private final Session _readOnly;
+        private long _generation;
+
+        private ThreadSession(final Session session, final Session readOnly, final long generation) {
+            _session = session;
+            _readOnly = readOnly;
+            _generation = generation;
+        }
+    }
+}
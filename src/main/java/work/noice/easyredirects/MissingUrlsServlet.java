@@ -0,0 +1,77 @@
+package work.noice.easyredirects;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import work.noice.easyredirects.stats.MissingUrlFormat;
+import work.noice.easyredirects.stats.MissingUrlTracker;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+import static org.apache.commons.lang3.math.NumberUtils.toInt;
+
+/**
+ * Most frequent missing urls of this instance, read by the redirects app of the author, which gets no public traffic.
+ * Answers in the {@link MissingUrlFormat}, if the request carries the missing url token of the module in the
+ * {@link MissingUrlTracker#HEADER_TOKEN} header, otherwise 403. Answers 404 without configured token.
+ */
+public class MissingUrlsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+
+    private transient Provider<RedirectsModule> _redirectsModule;
+    private transient Provider<MissingUrlTracker> _missingUrlTracker;
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        String token = _redirectsModule.get().getMissingUrlToken();
+        String requestToken = request.getHeader(MissingUrlTracker.HEADER_TOKEN);
+        response.setHeader("Cache-Control", "no-store");
+        if (isEmpty(token)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        } else if (requestToken == null || !MessageDigest.isEqual(token.getBytes(UTF_8), requestToken.getBytes(UTF_8))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+        } else {
+            int limit = Math.min(Math.max(toInt(request.getParameter("limit"), DEFAULT_LIMIT), 1), MAX_LIMIT);
+            response.setContentType(MissingUrlFormat.CONTENT_TYPE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write(MissingUrlFormat.format(_missingUrlTracker.get().getTopMissingUrls(limit)));
+        }
+    }
+
+    @Inject
+    public void setRedirectsModule(final Provider<RedirectsModule> redirectsModule) {
+        _redirectsModule = redirectsModule;
+    }
+
+    @Inject
+    public void setMissingUrlTracker(final Provider<MissingUrlTracker> missingUrlTracker) {
+        _missingUrlTracker = missingUrlTracker;
+    }
+}
@@ -23,9 +23,19 @@ package work.noice.easyredirects;
 import info.magnolia.link.LinkUtil;
 
 import javax.jcr.Node;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
+import static work.noice.easyredirects.RedirectsService.PN_LINK;
 import static work.noice.easyredirects.RedirectsService.getNodeFromId;
+import static work.noice.easyredirects.RedirectsService.isExternalLink;
+import static info.magnolia.jcr.util.PropertyUtil.getString;
+import static info.magnolia.jcr.util.NodeUtil.getNodeIdentifierIfPossible;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
 /**
  * Service for creating the public urls from author perspective.
@@ -50,8 +60,53 @@ public interface PublicUrlService {
      */
     String createTargetUrl(Node node);
 
+    /**
+     * Creates the public urls of several redirects in one pass, e.g. for the visible rows of the app view.
+     *
+     * @param nodes redirect nodes
+     * @return public url per node identifier
+     */
+    default Map<String, String> createTargetUrls(final Collection<Node> nodes) {
+        Map<String, String> urls = new HashMap<>();
+        for (Node node : nodes) {
+            urls.put(getNodeIdentifierIfPossible(node), createTargetUrl(node));
+        }
+        return urls;
+    }
+
     default String getExternalLinkFromId(final String nodeId) {
         Node nodeFromId = getNodeFromId(nodeId);
         return nodeFromId == null ? EMPTY : LinkUtil.createExternalLink(nodeFromId);
     }
+
+    /**
+     * Resolves the external links of pages. Every page is resolved once, even if several redirects link to it.
+     *
+     * @param nodeIds page identifiers
+     * @return external link per page identifier, empty if the page does not exist
+     */
+    default Map<String, String> getExternalLinksFromIds(final Collection<String> nodeIds) {
+        Map<String, String> links = new HashMap<>();
+        for (String nodeId : nodeIds) {
+            links.computeIfAbsent(nodeId, this::getExternalLinkFromId);
+        }
+        return links;
+    }
+
+    /**
+     * Collects the identifiers of the linked pages for {@link #getExternalLinksFromIds(Collection)}.
+     *
+     * @param nodes redirect nodes
+     * @return identifiers of the internal links
+     */
+    static Set<String> getPageIds(final Collection<Node> nodes) {
+        Set<String> pageIds = new LinkedHashSet<>();
+        for (Node node : nodes) {
+            String link = getString(node, PN_LINK, EMPTY);
+            if (isNotEmpty(link) && !isExternalLink(link)) {
+                pageIds.add(link);
+            }
+        }
+        return pageIds;
+    }
 }
@@ -0,0 +1,216 @@
+package work.noice.easyredirects;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import info.magnolia.context.MgnlContext;
+import info.magnolia.jcr.util.NodeUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import work.noice.easyredirects.export.RedirectMapEntry;
+import work.noice.easyredirects.export.RedirectMapWriter;
+import work.noice.easyredirects.rules.QueryRule;
+import work.noice.easyredirects.rules.UrlCanonicalizer;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+import jakarta.inject.Singleton;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import static work.noice.easyredirects.RedirectsService.PN_FROM_URL;
+import static work.noice.easyredirects.RedirectsService.PN_HOST;
+import static work.noice.easyredirects.RedirectsService.PN_PRIORITY;
+import static work.noice.easyredirects.RedirectsService.PN_REDIRECT;
+import static work.noice.easyredirects.RedirectsService.PN_SITE;
+import static work.noice.easyredirects.RedirectsService.PN_USE_PATTERN;
+import static info.magnolia.cms.util.RequestDispatchUtil.PERMANENT_PREFIX;
+import static info.magnolia.cms.util.RequestDispatchUtil.REDIRECT_PREFIX;
+import static info.magnolia.jcr.util.PropertyUtil.getLong;
+import static info.magnolia.jcr.util.PropertyUtil.getString;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+/**
+ * Exports the redirects into nginx map and Apache RewriteMap files per site, so a reverse proxy can answer them
+ * before the request reaches Magnolia. Exported are the active exact redirects and the pattern redirects with a
+ * single trailing wildcard (prefix redirects) without host and query settings, the prefix redirects in their matching
+ * order. Forwards and exact redirects changed by case folding stay in Magnolia.
+ * <p>
+ * The export runs in the background after the redirects were compiled, i.e. after every change of the workspace
+ * and at the boundaries of validity windows. Only files with a changed content are written.
+ * </p>
+ */
+@Singleton
+public class RedirectMapExporter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedirectMapExporter.class);
+
+    private static final Pattern PREFIX_PATTERN = Pattern.compile("/[^*{}()\\[\\]^$|?+\\\\]*\\*");
+    private static final Pattern UNSAFE_FILE_NAME_CHARS = Pattern.compile("[^A-Za-z0-9_.-]");
+    // the matching order of the pattern redirects (priority descending, then path), nginx tries the regex keys in file order
+    private static final Comparator<Node> MATCHING_ORDER = Comparator.comparingInt((Node node) -> getLong(node, PN_PRIORITY, 0L).intValue()).reversed()
+        .thenComparing(NodeUtil::getPathIfPossible);
+
+    private final AtomicBoolean _pending = new AtomicBoolean();
+    private final Set<String> _exportedSites = new HashSet<>();
+    private Provider<RedirectsService> _redirectsService;
+    private Provider<RedirectsModule> _redirectsModule;
+    private ExecutorService _executor;
+
+    /**
+     * Schedules an export, if an export directory is configured. Requests while an export is pending are merged.
+     */
+    public void requestExport() {
+        if (!isBlank(_redirectsModule.get().getMapExportDirectory()) && _pending.compareAndSet(false, true)) {
+            getExecutor().execute(() -> {
+                _pending.set(false);
+                try {
+                    export();
+                } catch (IOException | RepositoryException | RuntimeException e) {
+                    LOGGER.error("Error on exporting the redirect maps.", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Exports the redirects of all sites into the configured directory.
+     *
+     * @return number of written files
+     * @throws IOException         on write errors
+     * @throws RepositoryException on query errors
+     */
+    public synchronized int export() throws IOException, RepositoryException {
+        int written = 0;
+        String directory = _redirectsModule.get().getMapExportDirectory();
+        if (!isBlank(directory)) {
+            Path exportDirectory = Files.createDirectories(Paths.get(directory));
+            Map<String, List<RedirectMapEntry>> sites = MgnlContext.doInSystemContext(
+                (MgnlContext.Op<Map<String, List<RedirectMapEntry>>, RepositoryException>) this::collectEntries
+            );
+            // sites without redirects since the last export get empty files
+            for (String site : _exportedSites) {
+                sites.putIfAbsent(site, new ArrayList<>());
+            }
+            for (Map.Entry<String, List<RedirectMapEntry>> site : sites.entrySet()) {
+                written += writeSite(exportDirectory, site.getKey(), site.getValue());
+            }
+            _exportedSites.addAll(sites.keySet());
+            LOGGER.debug("Exported redirect maps of {} sites, {} files changed.", sites.size(), written);
+        }
+        return written;
+    }
+
+    private int writeSite(final Path directory, final String site, final List<RedirectMapEntry> entries) throws IOException {
+        String fileName = UNSAFE_FILE_NAME_CHARS.matcher(site).replaceAll("_");
+        List<RedirectMapEntry> permanent = new ArrayList<>();
+        List<RedirectMapEntry> temporary = new ArrayList<>();
+        for (RedirectMapEntry entry : entries) {
+            (entry.isPermanent() ? permanent : temporary).add(entry);
+        }
+        int written = 0;
+        written += RedirectMapWriter.writeAtomically(directory.resolve(fileName + "-301.map"), RedirectMapWriter.toNginxMap(permanent)) ? 1 : 0;
+        written += RedirectMapWriter.writeAtomically(directory.resolve(fileName + "-302.map"), RedirectMapWriter.toNginxMap(temporary)) ? 1 : 0;
+        written += RedirectMapWriter.writeAtomically(directory.resolve(fileName + "-301.txt"), RedirectMapWriter.toApacheMap(permanent)) ? 1 : 0;
+        written += RedirectMapWriter.writeAtomically(directory.resolve(fileName + "-302.txt"), RedirectMapWriter.toApacheMap(temporary)) ? 1 : 0;
+        return written;
+    }
+
+    private Map<String, List<RedirectMapEntry>> collectEntries() throws RepositoryException {
+        Map<String, List<RedirectMapEntry>> sites = new LinkedHashMap<>();
+        RedirectsService redirectsService = _redirectsService.get();
+        UrlCanonicalizer canonicalizer = _redirectsModule.get().getCanonicalizer();
+        long now = System.currentTimeMillis();
+        List<Node> nodes = new ArrayList<>(redirectsService.queryForAllRedirectNodes());
+        nodes.sort(MATCHING_ORDER);
+        for (Node node : nodes) {
+            QueryRule queryRule = RedirectsService.createQueryRule(node);
+            String target = redirectsService.createRedirectUrl(node, false, null, null);
+            boolean permanent = target.startsWith(PERMANENT_PREFIX);
+            if (isNotEmpty(getString(node, PN_HOST)) || queryRule != null || !RedirectsService.isActive(node, now)
+                || !(permanent || target.startsWith(REDIRECT_PREFIX))) {
+                continue;
+            }
+            target = target.substring(permanent ? PERMANENT_PREFIX.length() : REDIRECT_PREFIX.length());
+            List<RedirectMapEntry> entries = sites.computeIfAbsent(getString(node, PN_SITE, RedirectsService.DEF_SITE), key -> new ArrayList<>());
+            String fromUrl = getString(node, PN_FROM_URL, EMPTY);
+            if (Boolean.parseBoolean(getString(node, PN_USE_PATTERN))) {
+                if (PREFIX_PATTERN.matcher(fromUrl).matches() && !target.contains("{") && !target.contains("$")) {
+                    entries.add(new RedirectMapEntry(fromUrl.substring(0, fromUrl.length() - 1), target, permanent, true));
+                }
+            } else {
+                // nginx compares $uri case-sensitively, case folded keys would miss the requests of their own url
+                for (String url : new String[]{getString(node, PN_REDIRECT, EMPTY), fromUrl}) {
+                    if (isNotEmpty(url) && !canonicalizer.isCaseFolded(url)) {
+                        entries.add(new RedirectMapEntry(canonicalizer.canonicalize(url), target, permanent, false));
+                    }
+                }
+            }
+        }
+        return sites;
+    }
+
+    /**
+     * Stops the export thread, a pending export is dropped.
+     */
+    public synchronized void shutdown() {
+        if (_executor != null) {
+            _executor.shutdownNow();
+            _executor = null;
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (_executor == null) {
+            _executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "easyredirects-map-export");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _executor;
+    }
+
+    @Inject
+    public void setRedirectsService(final Provider<RedirectsService> redirectsService) {
+        _redirectsService = redirectsService;
+    }
+
+    @Inject
+    public void setRedirectsModule(final Provider<RedirectsModule> redirectsModule) {
+        _redirectsModule = redirectsModule;
+    }
+}
@@ -0,0 +1,76 @@
+package work.noice.easyredirects;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import work.noice.easyredirects.rules.QueryRule;
+
+import javax.jcr.Node;
+import java.util.Map;
+
+/**
+ * Redirect node found for a request with the parameters extracted by pattern matching.
+ */
+public class RedirectMatch {
+    private final Node _node;
+    private final Map<String, String> _parameters;
+    private final QueryRule _queryRule;
+    private final boolean _pattern;
+
+    public RedirectMatch(final Node node, final Map<String, String> parameters) {
+        this(node, parameters, null);
+    }
+
+    public RedirectMatch(final Node node, final Map<String, String> parameters, final QueryRule queryRule) {
+        this(node, parameters, queryRule, false);
+    }
+
+    public RedirectMatch(final Node node, final Map<String, String> parameters, final QueryRule queryRule, final boolean pattern) {
+        _node = node;
+        _parameters = parameters;
+        _queryRule = queryRule;
+        _pattern = pattern;
+    }
+
+    public Node getNode() {
+        return _node;
+    }
+
+    /**
+     * @return extracted parameters, null for exact matches
+     */
+    public Map<String, String> getParameters() {
+        return _parameters;
+    }
+
+    /**
+     * @return query rewriting of the redirect or null
+     */
+    public QueryRule getQueryRule() {
+        return _queryRule;
+    }
+
+    /**
+     * @return true, if a pattern redirect matched, false for exact redirects
+     */
+    public boolean isPattern() {
+        return _pattern;
+    }
+}
@@ -0,0 +1,719 @@
+package work.noice.easyredirects;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import info.magnolia.context.MgnlContext;
+import info.magnolia.init.MagnoliaConfigurationProperties;
+import info.magnolia.jcr.util.NodeTypes;
+import info.magnolia.module.site.Domain;
+import info.magnolia.module.site.NullSite;
+import info.magnolia.module.site.Site;
+import info.magnolia.module.site.SiteManager;
+import info.magnolia.observation.WorkspaceEventListenerRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import work.noice.easyredirects.rules.ActivationSchedule;
+import work.noice.easyredirects.rules.ParsedQuery;
+import work.noice.easyredirects.rules.PatternRule;
+import work.noice.easyredirects.rules.PatternRuleSet;
+import work.noice.easyredirects.rules.RedirectTable;
+import work.noice.easyredirects.rules.RuleMatch;
+import work.noice.easyredirects.rules.RuleSnapshot;
+import work.noice.easyredirects.rules.RuleSource;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+import jakarta.inject.Singleton;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.PatternSyntaxException;
+
+import static work.noice.easyredirects.RedirectsService.PN_FROM_URL;
+import static work.noice.easyredirects.RedirectsService.PN_HOST;
+import static work.noice.easyredirects.RedirectsService.PN_PRIORITY;
+import static work.noice.easyredirects.RedirectsService.PN_QUERY_DROP;
+import static work.noice.easyredirects.RedirectsService.PN_QUERY_KEEP;
+import static work.noice.easyredirects.RedirectsService.PN_QUERY_MATCH;
+import static work.noice.easyredirects.RedirectsService.PN_REDIRECT;
+import static work.noice.easyredirects.RedirectsService.PN_SITE;
+import static work.noice.easyredirects.RedirectsService.PN_USE_PATTERN;
+import static work.noice.easyredirects.RedirectsService.PN_VALID_FROM;
+import static work.noice.easyredirects.RedirectsService.PN_VALID_TO;
+import static work.noice.easyredirects.RedirectsService.getTime;
+import static info.magnolia.jcr.util.PropertyUtil.getLong;
+import static info.magnolia.jcr.util.PropertyUtil.getString;
+import static info.magnolia.repository.RepositoryConstants.CONFIG;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+/**
+ * Holds the compiled redirects of the workspace in a {@link RedirectTable}, partitioned by host and site.
+ * The table is compiled on first use and again on every change in the redirects workspace, the site configuration or the module configuration.
+ * Changes are compiled in the background into a new table, meanwhile the previous table is served up to the
+ * {@link RedirectsModule#getMaxStaleness()}. A failed compile keeps the previous table.
+ * Redirects with a validity window are only compiled while they are valid, the table is compiled again at the next boundary.
+ * The compiled redirects are persisted in a {@link RuleSnapshot}. After a restart the first table is compiled from the
+ * snapshot and compiled again from the workspace in the background, if the snapshot is outdated.
+ */
+@Singleton
+public class RedirectRuleRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedirectRuleRegistry.class);
+
+    private static final long OBSERVATION_DELAY = 1000L;
+    private static final long OBSERVATION_MAX_DELAY = 5000L;
+    private static final String SITES_CONFIG_PATH = "/modules/multisite/config/sites";
+    private static final String MODULE_CONFIG_PATH = "/modules/easyredirects/config";
+    private static final String SERVER_CONFIG_PATH = "/server";
+    private static final String SNAPSHOT_FILE = "easyredirects/redirect-table.snapshot";
+    private static final long REBUILD_RETRY_DELAY = 10000L;
+
+    private final AtomicLong _generation = new AtomicLong();
+    private final AtomicLong _configurationGeneration = new AtomicLong();
+    private final Object _compileLock = new Object();
+    private final AtomicBoolean _snapshotRead = new AtomicBoolean();
+    private final AtomicBoolean _warmingUp = new AtomicBoolean();
+    private final AtomicBoolean _rebuilding = new AtomicBoolean();
+    private final AtomicLong _staleSince = new AtomicLong();
+    private final AtomicLong _compileFailures = new AtomicLong();
+
+    private Provider<RedirectsService> _redirectsService;
+    private Provider<RedirectsModule> _redirectsModule;
+    private Provider<SiteManager> _siteManager;
+    private Provider<RedirectMapExporter> _mapExporter;
+    private Provider<CdnPurgeService> _cdnPurgeService;
+    private Provider<MagnoliaConfigurationProperties> _configurationProperties;
+    private volatile RedirectTable _table;
+    private volatile RedirectTable _lastTable;
+    private volatile long _tableGeneration = -1L;
+    private volatile long _compileDuration;
+    private volatile long _lastFailure;
+    private volatile boolean _observing;
+    private ScheduledExecutorService _scheduler;
+    private ScheduledFuture<?> _refreshTask;
+    private ExecutorService _executor;
+    private ForkJoinPool _patternPool;
+    private volatile long _snapshotStamp;
+
+    /**
+     * Returns the compiled redirect table. Compiles it, if there is no table or the table is outdated longer than
+     * the maximum staleness. A table outdated for a shorter time is returned and compiled again in the background.
+     * After a failed compile the next compile starts after a delay, without table null is returned meanwhile.
+     *
+     * @return redirect table or null, if the redirects could not be compiled
+     */
+    public RedirectTable getTable() {
+        registerObservation();
+        RedirectTable table = getServableTable();
+        if (table == null && isRetryDue()) {
+            synchronized (_compileLock) {
+                table = getServableTable();
+                if (table == null && isRetryDue()) {
+                    long generation = _generation.get();
+                    table = _snapshotRead.compareAndSet(false, true) ? compileSnapshot() : null;
+                    if (table == null) {
+                        table = compileTable();
+                    }
+                    keepTable(table, generation);
+                    if (table == null) {
+                        // compile failed, the last compiled table is better than none
+                        table = _table;
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns the compiled table without compiling it.
+     *
+     * @return redirect table or null, if the table is not compiled yet
+     */
+    public RedirectTable getCompiledTable() {
+        return _table;
+    }
+
+    /**
+     * @return true, if the table is compiled and lookups don't wait for compiling it
+     */
+    public boolean isReady() {
+        return getServableTable() != null;
+    }
+
+    /**
+     * @return milliseconds since the served table is outdated, 0 if it is up to date
+     */
+    public long getStaleness() {
+        long staleSince = _staleSince.get();
+        return _table != null && _tableGeneration != _generation.get() && staleSince > 0L ? System.currentTimeMillis() - staleSince : 0L;
+    }
+
+    /**
+     * @return duration of the last successful compile in milliseconds
+     */
+    public long getCompileDuration() {
+        return _compileDuration;
+    }
+
+    /**
+     * @return number of failed compiles since the start
+     */
+    public long getCompileFailures() {
+        return _compileFailures.get();
+    }
+
+    /**
+     * Compiles the table in the background, if it is not compiled and no warm-up is running.
+     */
+    public void warmUp() {
+        if (!isReady() && _warmingUp.compareAndSet(false, true)) {
+            getExecutor().execute(() -> {
+                try {
+                    long start = System.currentTimeMillis();
+                    if (getTable() != null) {
+                        LOGGER.info("Redirects ready after {} ms.", System.currentTimeMillis() - start);
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Error on compiling the redirects in the background.", e);
+                } finally {
+                    _warmingUp.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops the background threads of compiling, map export and purging.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (_scheduler != null) {
+                _scheduler.shutdownNow();
+                _scheduler = null;
+            }
+            if (_executor != null) {
+                _executor.shutdownNow();
+                _executor = null;
+            }
+            if (_patternPool != null) {
+                _patternPool.shutdown();
+                _patternPool = null;
+            }
+        }
+        if (_mapExporter != null) {
+            _mapExporter.get().shutdown();
+        }
+        if (_cdnPurgeService != null) {
+            _cdnPurgeService.get().shutdown();
+        }
+    }
+
+    /**
+     * Finds the redirect of a request in the compiled table.
+     *
+     * @param host     request host, may be null
+     * @param siteName site name
+     * @param path     request path
+     * @param query    parsed request query
+     * @return match or null, if no redirect matches
+     */
+    public RuleMatch lookup(final String host, final String siteName, final String path, final ParsedQuery query) {
+        RedirectTable table = getTable();
+        return table != null ? table.lookup(host, toTableSite(siteName), path, query) : null;
+    }
+
+    /**
+     * Returns the compiled pattern rules of the site.
+     *
+     * @param siteName site name
+     * @return pattern rules in matching order
+     */
+    public PatternRuleSet getPatternRules(final String siteName) {
+        RedirectTable table = getTable();
+        return table != null ? table.getPatternRules(toTableSite(siteName)) : PatternRuleSet.EMPTY;
+    }
+
+    /**
+     * Returns the pattern rules, which exceeded their step budget.
+     * They are skipped until the rules are compiled again.
+     *
+     * @return quarantined pattern rules
+     */
+    public List<PatternRule> getQuarantinedRules() {
+        RedirectTable table = _table;
+        return table != null ? table.getQuarantinedRules() : List.of();
+    }
+
+    /**
+     * @return estimated heap of the compiled exact redirects or an empty string, if they are not compiled
+     */
+    public String getFootprintReport() {
+        RedirectTable table = _table;
+        return table != null ? table.getFootprintReport() : EMPTY;
+    }
+
+    /**
+     * Counts the changes of the site and server configuration, e.g. for caches of base urls.
+     *
+     * @return generation of the configuration
+     */
+    public long getConfigurationGeneration() {
+        registerObservation();
+        return _configurationGeneration.get();
+    }
+
+    /**
+     * Marks the compiled table as outdated and compiles it again in the background.
+     */
+    public void invalidate() {
+        _staleSince.compareAndSet(0L, System.currentTimeMillis());
+        _generation.incrementAndGet();
+        if (_redirectsModule.get().getMaxStaleness() > 0L) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Returns the table, if it is up to date or outdated shorter than the maximum staleness. After a failed compile
+     * the outdated table is returned until the next attempt.
+     */
+    private RedirectTable getServableTable() {
+        RedirectTable table = _table;
+        if (table != null && _tableGeneration != _generation.get()) {
+            _staleSince.compareAndSet(0L, System.currentTimeMillis());
+            if (System.currentTimeMillis() - _staleSince.get() < _redirectsModule.get().getMaxStaleness()) {
+                rebuild();
+            } else if (isRetryDue()) {
+                table = null;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return true, if no compile failed within the retry delay
+     */
+    private boolean isRetryDue() {
+        return System.currentTimeMillis() - _lastFailure >= REBUILD_RETRY_DELAY;
+    }
+
+    /**
+     * Compiles the table in the background, if no compile is running. Changes during the compile are compiled afterwards,
+     * after a failure the next compile starts after a delay.
+     */
+    private void rebuild() {
+        if (isRetryDue() && _rebuilding.compareAndSet(false, true)) {
+            getExecutor().execute(() -> {
+                RedirectTable table = null;
+                try {
+                    long generation = _generation.get();
+                    table = compileTable();
+                    keepTable(table, generation);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Error on compiling the redirects in the background.", e);
+                    _compileFailures.incrementAndGet();
+                    _lastFailure = System.currentTimeMillis();
+                } finally {
+                    _rebuilding.set(false);
+                }
+                if (table != null && _tableGeneration != _generation.get()) {
+                    rebuild();
+                }
+            });
+        }
+    }
+
+    /**
+     * The fallback site matches the redirects of all sites.
+     */
+    private static String toTableSite(final String siteName) {
+        return isEmpty(siteName) || NullSite.SITE_NAME.equals(siteName) ? null : siteName;
+    }
+
+    /**
+     * Keeps the table, if it isn't older than the current table. A table of an outdated generation is served until the
+     * table of the current generation is compiled.
+     */
+    private void keepTable(final RedirectTable table, final long generation) {
+        synchronized (_compileLock) {
+            if (table != null && generation >= _tableGeneration) {
+                _table = table;
+                _lastTable = table;
+                _tableGeneration = generation;
+                if (generation == _generation.get()) {
+                    _staleSince.set(0L);
+                    if (_mapExporter != null) {
+                        _mapExporter.get().requestExport();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles the table from the workspace. On errors the previous table is kept.
+     */
+    private RedirectTable compileTable() {
+        RedirectTable table = null;
+        long start = System.currentTimeMillis();
+        try {
+            List<RuleSource> sources = loadSources();
+            table = buildTable(sources);
+            _compileDuration = System.currentTimeMillis() - start;
+            LOGGER.debug("Compiled {} redirects in {} ms.", sources.size(), _compileDuration);
+            writeSnapshot(sources);
+        } catch (RepositoryException e) {
+            LOGGER.error("Error on compiling the redirects, keeping the previously compiled redirects.", e);
+            _compileFailures.incrementAndGet();
+            _lastFailure = System.currentTimeMillis();
+        }
+        return table;
+    }
+
+    private RedirectTable buildTable(final List<RuleSource> sources) {
+        RedirectsModule module = _redirectsModule.get();
+        RedirectTable.Builder builder = new RedirectTable.Builder(module.getPatternStepBudget(), module.getCanonicalizer())
+            .withCompactThreshold(module.getCompactIndexThreshold())
+            .withOffHeap(module.isOffHeapIndex())
+            .withPerfectHash(module.getPerfectHashSites().values())
+            .withPrevious(_lastTable)
+            .withParallelPatterns(getPatternPool(module.getPatternParallelism()), module.getParallelPatternThreshold());
+
+        // redirects outside their validity window are left out until the next boundary
+        ActivationSchedule schedule = new ActivationSchedule(System.currentTimeMillis());
+        List<RuleSource> activeSources = new ArrayList<>(sources.size());
+        for (RuleSource source : sources) {
+            if (schedule.add(source.getValidFrom(), source.getValidTo())) {
+                activeSources.add(source);
+            }
+        }
+        scheduleRefresh(schedule.getNextBoundary());
+
+        // the redirect property wins over the from url on exact lookups, like in the queries
+        for (RuleSource source : activeSources) {
+            addExact(builder, source, source.getRedirect());
+        }
+        for (RuleSource source : activeSources) {
+            addExact(builder, source, source.getFromUrl());
+            if (source.isUsePattern()) {
+                addPattern(builder, source);
+            }
+        }
+        addDomains(builder);
+        RedirectTable table = builder.build();
+        if (table.size() > module.getCompactIndexThreshold()) {
+            LOGGER.info("Compiled {} redirects, {}", table.size(), table.getFootprintReport());
+        } else {
+            LOGGER.debug("Compiled {} redirects, {}", table.size(), table.getFootprintReport());
+        }
+        return table;
+    }
+
+    private List<RuleSource> loadSources() throws RepositoryException {
+        return MgnlContext.doInSystemContext((MgnlContext.Op<List<RuleSource>, RepositoryException>) () -> {
+            List<Node> nodes = _redirectsService.get().queryForAllRedirectNodes();
+            List<RuleSource> sources = new ArrayList<>(nodes.size());
+            for (Node node : nodes) {
+                sources.add(toSource(node));
+            }
+            return sources;
+        });
+    }
+
+    private static RuleSource toSource(final Node node) throws RepositoryException {
+        RuleSource source = new RuleSource();
+        source.setIdentifier(node.getIdentifier());
+        source.setPath(node.getPath());
+        source.setHost(getString(node, PN_HOST));
+        source.setSite(getString(node, PN_SITE));
+        source.setRedirect(getString(node, PN_REDIRECT));
+        source.setFromUrl(getString(node, PN_FROM_URL));
+        source.setUsePattern(Boolean.parseBoolean(getString(node, PN_USE_PATTERN)));
+        source.setPriority(getLong(node, PN_PRIORITY, 0L).intValue());
+        source.setQueryMatch(getString(node, PN_QUERY_MATCH));
+        source.setQueryDrop(getString(node, PN_QUERY_DROP));
+        source.setQueryKeep(getString(node, PN_QUERY_KEEP));
+        source.setValidFrom(getTime(node, PN_VALID_FROM));
+        source.setValidTo(getTime(node, PN_VALID_TO));
+        Calendar lastModified = NodeTypes.LastModified.getLastModified(node);
+        source.setLastModified(lastModified != null ? lastModified.getTimeInMillis() : 0L);
+        return source;
+    }
+
+    /**
+     * Compiles the table from the snapshot of the last run and checks the snapshot against the workspace in the background.
+     *
+     * @return table or null, if there is no valid snapshot
+     */
+    private RedirectTable compileSnapshot() {
+        RedirectTable table = null;
+        Path file = getSnapshotFile();
+        if (file != null) {
+            try {
+                List<RuleSource> sources = RuleSnapshot.read(file);
+                if (sources != null) {
+                    table = buildTable(sources);
+                    long stamp = RuleSnapshot.stamp(sources);
+                    _snapshotStamp = stamp;
+                    LOGGER.info("Compiled {} redirects from snapshot {}.", sources.size(), file);
+                    getExecutor().execute(() -> validateSnapshot(stamp));
+                } else {
+                    LOGGER.debug("No valid redirects snapshot {}.", file);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Error on reading the redirects snapshot {}, compiling from the workspace.", file, e);
+            }
+        }
+        return table;
+    }
+
+    private void validateSnapshot(final long stamp) {
+        try {
+            long generation = _generation.get();
+            List<RuleSource> sources = loadSources();
+            if (RuleSnapshot.stamp(sources) != stamp) {
+                LOGGER.info("Redirects snapshot is outdated, compiling the redirects of the workspace.");
+                keepTable(buildTable(sources), generation);
+                writeSnapshot(sources);
+            }
+        } catch (RepositoryException | RuntimeException e) {
+            LOGGER.warn("Error on checking the redirects snapshot, compiling the redirects again.", e);
+            invalidate();
+        }
+    }
+
+    /**
+     * Writes the snapshot in the background, if the redirects changed since the last snapshot.
+     */
+    private void writeSnapshot(final List<RuleSource> sources) {
+        Path file = getSnapshotFile();
+        long stamp = RuleSnapshot.stamp(sources);
+        if (file != null && stamp != _snapshotStamp) {
+            _snapshotStamp = stamp;
+            getExecutor().execute(() -> {
+                try {
+                    RuleSnapshot.write(file, sources);
+                    LOGGER.debug("Wrote {} redirects to snapshot {}.", sources.size(), file);
+                } catch (IOException e) {
+                    LOGGER.warn("Error on writing the redirects snapshot {}.", file, e);
+                }
+            });
+        }
+    }
+
+    private Path getSnapshotFile() {
+        Path file = null;
+        RedirectsModule module = _redirectsModule.get();
+        if (module.isSnapshot()) {
+            String snapshotFile = module.getSnapshotFile();
+            if (isBlank(snapshotFile) && _configurationProperties != null) {
+                MagnoliaConfigurationProperties properties = _configurationProperties.get();
+                String home = defaultIfBlank(properties.getProperty("magnolia.home"), properties.getProperty("magnolia.app.rootdir"));
+                snapshotFile = isBlank(home) ? null : Paths.get(home, SNAPSHOT_FILE).toString();
+            }
+            file = isBlank(snapshotFile) ? null : Paths.get(snapshotFile);
+        }
+        return file;
+    }
+
+    /**
+     * Background thread of the warm-up and the snapshot.
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (_executor == null) {
+            _executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "easyredirects-compile");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _executor;
+    }
+
+    /**
+     * Pool of the parallel pattern evaluation, replaced on a change of the parallelism. Tables still using a replaced
+     * pool fall back to the sequential evaluation.
+     */
+    private synchronized ForkJoinPool getPatternPool(final int parallelism) {
+        if (_patternPool != null && _patternPool.getParallelism() != parallelism) {
+            _patternPool.shutdown();
+            _patternPool = null;
+        }
+        if (_patternPool == null && parallelism > 0) {
+            _patternPool = new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("easyredirects-patterns-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+        return _patternPool;
+    }
+
+    /**
+     * Compiles the table again at the next start or end of a validity window.
+     */
+    private synchronized void scheduleRefresh(final long boundary) {
+        if (_refreshTask != null) {
+            _refreshTask.cancel(false);
+            _refreshTask = null;
+        }
+        if (boundary != ActivationSchedule.NONE) {
+            if (_scheduler == null) {
+                _scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "easyredirects-activation");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            long delay = Math.max(0L, boundary - System.currentTimeMillis());
+            _refreshTask = _scheduler.schedule(this::refresh, delay, TimeUnit.MILLISECONDS);
+            LOGGER.debug("Scheduled compiling the redirects in {} ms.", delay);
+        }
+    }
+
+    private void refresh() {
+        try {
+            invalidate();
+            getTable();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Error on compiling the redirects at a validity boundary.", e);
+        }
+    }
+
+    private static void addExact(final RedirectTable.Builder builder, final RuleSource source, final String url) {
+        if (isNotEmpty(url)) {
+            builder.addExact(source.getHost(), source.getSite(), url, source.getIdentifier(), source.createQueryRule());
+        }
+    }
+
+    private static void addPattern(final RedirectTable.Builder builder, final RuleSource source) {
+        String pattern = source.getFromUrl();
+        if (isEmpty(pattern)) {
+            pattern = source.getRedirect();
+        }
+        if (isNotEmpty(pattern)) {
+            try {
+                builder.addPattern(source.getHost(), source.getSite(), source.getIdentifier(), source.getPath(), pattern, source.getPriority(), source.createQueryRule());
+            } catch (PatternSyntaxException e) {
+                LOGGER.warn("Ignore redirect {} with invalid pattern {}.", source.getPath(), pattern, e);
+            }
+        }
+    }
+
+    private void addDomains(final RedirectTable.Builder builder) {
+        SiteManager siteManager = _siteManager != null ? _siteManager.get() : null;
+        if (siteManager != null) {
+            for (Site site : siteManager.getSites()) {
+                for (Domain domain : site.getDomains()) {
+                    builder.addDomain(domain.getName(), site.getName());
+                }
+            }
+        }
+    }
+
+    private void registerObservation() {
+        if (!_observing) {
+            synchronized (this) {
+                if (!_observing) {
+                    _observing = true;
+                    try {
+                        WorkspaceEventListenerRegistration.observe(RedirectsModule.WORKSPACE, "/", events -> {
+                                invalidate();
+                                if (_cdnPurgeService != null) {
+                                    _cdnPurgeService.get().enqueue(events);
+                                }
+                            })
+                            .withSubNodes(true)
+                            .withDelay(OBSERVATION_DELAY, OBSERVATION_MAX_DELAY)
+                            .register();
+                        WorkspaceEventListenerRegistration.observe(CONFIG, SITES_CONFIG_PATH, events -> {
+                                _configurationGeneration.incrementAndGet();
+                                invalidate();
+                            })
+                            .withSubNodes(true)
+                            .withDelay(OBSERVATION_DELAY, OBSERVATION_MAX_DELAY)
+                            .register();
+                        WorkspaceEventListenerRegistration.observe(CONFIG, SERVER_CONFIG_PATH, events -> _configurationGeneration.incrementAndGet())
+                            .withSubNodes(true)
+                            .withDelay(OBSERVATION_DELAY, OBSERVATION_MAX_DELAY)
+                            .register();
+                        // step budget and canonicalization are compiled into the table
+                        WorkspaceEventListenerRegistration.observe(CONFIG, MODULE_CONFIG_PATH, events -> invalidate())
+                            .withSubNodes(true)
+                            .withDelay(OBSERVATION_DELAY, OBSERVATION_MAX_DELAY)
+                            .register();
+                    } catch (RepositoryException e) {
+                        LOGGER.error("Unable to observe the {} workspace, compiled redirects are not refreshed.", RedirectsModule.WORKSPACE, e);
+                    }
+                }
+            }
+        }
+    }
+
+    @Inject
+    public void setRedirectsService(final Provider<RedirectsService> redirectsService) {
+        _redirectsService = redirectsService;
+    }
+
+    @Inject
+    public void setRedirectsModule(final Provider<RedirectsModule> redirectsModule) {
+        _redirectsModule = redirectsModule;
+    }
+
+    @Inject
+    public void setSiteManager(final Provider<SiteManager> siteManager) {
+        _siteManager = siteManager;
+    }
+
+    @Inject
+    public void setMapExporter(final Provider<RedirectMapExporter> mapExporter) {
+        _mapExporter = mapExporter;
+    }
+
+    @Inject
+    public void setCdnPurgeService(final Provider<CdnPurgeService> cdnPurgeService) {
+        _cdnPurgeService = cdnPurgeService;
+    }
+
+    @Inject
+    public void setConfigurationProperties(final Provider<MagnoliaConfigurationProperties> configurationProperties) {
+        _configurationProperties = configurationProperties;
+    }
+}
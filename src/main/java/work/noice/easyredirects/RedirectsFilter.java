@@ -0,0 +1,111 @@
+package work.noice.easyredirects;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import info.magnolia.cms.filters.AbstractMgnlFilter;
+import info.magnolia.cms.util.RequestDispatchUtil;
+import info.magnolia.objectfactory.Components;
+import info.magnolia.virtualuri.VirtualUriMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Optional;
+
+import static info.magnolia.cms.util.RequestDispatchUtil.FORWARD_PREFIX;
+import static org.apache.commons.lang3.StringUtils.removeStart;
+
+/**
+ * Optional filter answering redirects early in the filter chain, before security, the cache and rendering.
+ * It resolves the request with the compiled redirects of {@link VirtualRedirectsUriMapping} and sends 301 and 302
+ * responses itself. Forwards, requests without redirect and lookups while the redirects can't be compiled continue
+ * in the chain, so the virtual uri mapping remains the fallback. The mapping skips the paths this filter already
+ * looked up without result. As the site of the request isn't resolved yet, the mapping assigns it by host and path.
+ */
+public class RedirectsFilter extends AbstractMgnlFilter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedirectsFilter.class);
+
+    /**
+     * Request attribute with the path looked up without result.
+     */
+    public static final String ATTR_CHECKED_PATH = RedirectsFilter.class.getName() + ".checkedPath";
+
+    private Provider<RedirectsService> _redirectsService;
+    private VirtualRedirectsUriMapping _uriMapping;
+
+    @Override
+    public void doFilter(final HttpServletRequest request, final HttpServletResponse response, final FilterChain chain) throws IOException, ServletException {
+        boolean answered = false;
+        URI uri = toUri(request);
+        if (uri != null && _redirectsService.get().isRuleTableReady()) {
+            Optional<VirtualUriMapping.Result> result = getUriMapping().mapUri(uri);
+            String toUri = result.map(VirtualUriMapping.Result::getToUri).orElse(null);
+            if (toUri == null) {
+                request.setAttribute(ATTR_CHECKED_PATH, uri.getPath());
+            } else if (!toUri.startsWith(FORWARD_PREFIX)) {
+                answered = RequestDispatchUtil.dispatch(toUri, request, response);
+            }
+        }
+        if (!answered) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    /**
+     * Request uri without context path, like the uri of the virtual uri mapping.
+     *
+     * @param request request
+     * @return uri or null, if the request uri is invalid
+     */
+    protected URI toUri(final HttpServletRequest request) {
+        URI uri = null;
+        String path = removeStart(request.getRequestURI(), request.getContextPath());
+        String query = request.getQueryString();
+        try {
+            uri = URI.create(query != null ? path + "?" + query : path);
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Invalid request uri {}, leave it to the filter chain.", path, e);
+        }
+        return uri;
+    }
+
+    /**
+     * Override for a subclass of the mapping, e.g. with custom redirect url creation.
+     */
+    protected VirtualRedirectsUriMapping getUriMapping() {
+        if (_uriMapping == null) {
+            _uriMapping = Components.newInstance(VirtualRedirectsUriMapping.class);
+        }
+        return _uriMapping;
+    }
+
+    @Inject
+    public void setRedirectsService(final Provider<RedirectsService> redirectsService) {
+        _redirectsService = redirectsService;
+    }
+}
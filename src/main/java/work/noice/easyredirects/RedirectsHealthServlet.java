@@ -0,0 +1,67 @@
+package work.noice.easyredirects;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import work.noice.easyredirects.rules.RedirectTable;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Readiness of the compiled redirects for load balancers and orchestration probes, e.g. to route traffic to an
+ * instance only after the warm-up. Answers 200 with the number of compiled redirects, if the redirects are compiled,
+ * otherwise 503 and starts compiling them in the background. The answer contains the compile metrics: milliseconds
+ * since the served redirects are outdated, duration of the last compile and number of failed compiles.
+ */
+public class RedirectsHealthServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private transient Provider<RedirectRuleRegistry> _ruleRegistry;
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        RedirectRuleRegistry ruleRegistry = _ruleRegistry.get();
+        RedirectTable table = ruleRegistry.getCompiledTable();
+        if (table == null) {
+            ruleRegistry.warmUp();
+        }
+        response.setStatus(table != null ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        response.getWriter().write(toJson(table, ruleRegistry));
+    }
+
+    private static String toJson(final RedirectTable table, final RedirectRuleRegistry ruleRegistry) {
+        String metrics = ",\"staleness\":" + ruleRegistry.getStaleness()
+            + ",\"compileDuration\":" + ruleRegistry.getCompileDuration()
+            + ",\"compileFailures\":" + ruleRegistry.getCompileFailures() + "}";
+        return table != null ? "{\"ready\":true,\"redirects\":" + table.size() + metrics : "{\"ready\":false" + metrics;
+    }
+
+    @Inject
+    public void setRuleRegistry(final Provider<RedirectRuleRegistry> ruleRegistry) {
+        _ruleRegistry = ruleRegistry;
+    }
+}
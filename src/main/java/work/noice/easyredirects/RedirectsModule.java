@@ -20,26 +20,76 @@ package work.noice.easyredirects;
  * #L%
  */
 
+import info.magnolia.module.ModuleLifecycle;
+import info.magnolia.module.ModuleLifecycleContext;
 import info.magnolia.objectfactory.Components;
+import work.noice.easyredirects.purge.CdnPurger;
+import work.noice.easyredirects.rules.CachePolicy;
+import work.noice.easyredirects.rules.ParameterFilter;
+import work.noice.easyredirects.rules.PatternRule;
+import work.noice.easyredirects.rules.PatternRuleSet;
+import work.noice.easyredirects.rules.RedirectTable;
+import work.noice.easyredirects.rules.UrlCanonicalizer;
 
 import java.util.Collections;
 import java.util.Map;
 
 /**
- * Module class of this module.
+ * Module class of this module. Compiles the redirects in the background on start, so the first requests don't wait
+ * for it, and stops the background threads on shutdown.
  *
  * @author frank.sommer
  * @since 26.01.2012
  */
-public class RedirectsModule {
+public class RedirectsModule implements ModuleLifecycle {
     public static final String WORKSPACE = "redirects";
     public static final String NT_REDIRECT = "mgnl:redirect";
+    public static final int DEFAULT_MAX_CONCURRENT_LOOKUPS = 8;
+    public static final long DEFAULT_MAX_STALENESS = 300000L;
 
     private Map<String, String> _excludes;
     private PublicUrlService _publicUrlService;
 
     private String _headlessEndpoint;
 
+    private boolean _trackMissingUrls = true;
+    private int _missingUrlCapacity = 200;
+    private int _missingUrlMaxLength = 512;
+    private String _missingUrlToken;
+    private Map<String, String> _missingUrlSources;
+
+    private long _patternStepBudget = PatternRule.DEFAULT_STEP_BUDGET;
+
+    private Map<String, String> _dropQueryParameters;
+    private ParameterFilter _dropQueryParameterFilter;
+
+    private UrlCanonicalizer _canonicalizer;
+    private int _compactIndexThreshold = RedirectTable.DEFAULT_COMPACT_THRESHOLD;
+    private boolean _offHeapIndex;
+    private Map<String, String> _perfectHashSites;
+    private int _patternParallelism;
+    private int _maxConcurrentLookups = DEFAULT_MAX_CONCURRENT_LOOKUPS;
+    private int _parallelPatternThreshold = PatternRuleSet.DEFAULT_PARALLEL_THRESHOLD;
+    private boolean _warmUp = true;
+    private long _maxStaleness = DEFAULT_MAX_STALENESS;
+    private boolean _snapshot = true;
+    private String _snapshotFile;
+
+    private String _mapExportDirectory;
+
+    private double _traceSampleRate;
+    private String _traceToken;
+
+    private Map<String, CachePolicy> _cachePolicies;
+    private String _surrogateKeyHeader = "Surrogate-Key";
+    private String _surrogateKeySeparator = " ";
+
+    private CdnPurger _cdnPurger;
+    private long _purgeDelay = 5000L;
+    private int _purgeBatchSize = 256;
+    private int _purgeAllThreshold = 1000;
+    private int _purgeRetries = 5;
+
     public Map<String, String> getExcludes() {
         return _excludes == null ? Collections.emptyMap() : _excludes;
     }
@@ -66,4 +116,351 @@ public class RedirectsModule {
     public void setHeadlessEndpoint(String headlessEndpoint) {
         _headlessEndpoint = headlessEndpoint;
     }
+
+    public boolean isTrackMissingUrls() {
+        return _trackMissingUrls;
+    }
+
+    public void setTrackMissingUrls(boolean trackMissingUrls) {
+        _trackMissingUrls = trackMissingUrls;
+    }
+
+    /**
+     * Maximum number of tracked missing urls per site.
+     */
+    public int getMissingUrlCapacity() {
+        return _missingUrlCapacity;
+    }
+
+    public void setMissingUrlCapacity(int missingUrlCapacity) {
+        _missingUrlCapacity = missingUrlCapacity;
+    }
+
+    /**
+     * Longer request paths are not tracked as missing urls.
+     */
+    public int getMissingUrlMaxLength() {
+        return _missingUrlMaxLength;
+    }
+
+    public void setMissingUrlMaxLength(int missingUrlMaxLength) {
+        _missingUrlMaxLength = missingUrlMaxLength;
+    }
+
+    /**
+     * Secret of the requests, which read the missing urls of this instance, e.g. a public, from the author.
+     * The missing urls endpoint is disabled if empty.
+     */
+    public String getMissingUrlToken() {
+        return _missingUrlToken;
+    }
+
+    public void setMissingUrlToken(final String missingUrlToken) {
+        _missingUrlToken = missingUrlToken;
+    }
+
+    /**
+     * Missing urls endpoints of the instances serving the requests, e.g. the publics, merged into the missing urls
+     * of the redirects app. Requested with the {@link #getMissingUrlToken()} of this instance.
+     */
+    public Map<String, String> getMissingUrlSources() {
+        return _missingUrlSources == null ? Collections.emptyMap() : _missingUrlSources;
+    }
+
+    public void setMissingUrlSources(Map<String, String> missingUrlSources) {
+        _missingUrlSources = missingUrlSources;
+    }
+
+    /**
+     * Maximum number of input reads of one pattern evaluation. Patterns exceeding it are quarantined.
+     */
+    public long getPatternStepBudget() {
+        return _patternStepBudget;
+    }
+
+    public void setPatternStepBudget(long patternStepBudget) {
+        _patternStepBudget = patternStepBudget;
+    }
+
+    /**
+     * Query parameters removed from the target url of all redirects, e.g. utm_* or fbclid.
+     */
+    public Map<String, String> getDropQueryParameters() {
+        return _dropQueryParameters == null ? Collections.emptyMap() : _dropQueryParameters;
+    }
+
+    public void setDropQueryParameters(Map<String, String> dropQueryParameters) {
+        _dropQueryParameters = dropQueryParameters;
+        _dropQueryParameterFilter = null;
+    }
+
+    public ParameterFilter getDropQueryParameterFilter() {
+        if (_dropQueryParameterFilter == null) {
+            _dropQueryParameterFilter = ParameterFilter.parse(getDropQueryParameters().values());
+        }
+        return _dropQueryParameterFilter;
+    }
+
+    /**
+     * Canonicalization of from urls and request paths, e.g. case folding and trailing slashes.
+     */
+    public UrlCanonicalizer getCanonicalizer() {
+        if (_canonicalizer == null) {
+            _canonicalizer = new UrlCanonicalizer();
+        }
+        return _canonicalizer;
+    }
+
+    public void setCanonicalizer(final UrlCanonicalizer canonicalizer) {
+        _canonicalizer = canonicalizer;
+    }
+
+    /**
+     * Partitions of a host or site with more exact redirects are stored compactly, trading lookup speed for heap.
+     */
+    public int getCompactIndexThreshold() {
+        return _compactIndexThreshold;
+    }
+
+    public void setCompactIndexThreshold(int compactIndexThreshold) {
+        _compactIndexThreshold = compactIndexThreshold;
+    }
+
+    /**
+     * Stores the partitions above the compact index threshold outside of the heap, e.g. to keep GC pauses flat.
+     */
+    public boolean isOffHeapIndex() {
+        return _offHeapIndex;
+    }
+
+    public void setOffHeapIndex(boolean offHeapIndex) {
+        _offHeapIndex = offHeapIndex;
+    }
+
+    /**
+     * Sites and hosts with rarely changing redirects, e.g. archives, whose exact redirects are stored in a minimal perfect hash.
+     */
+    public Map<String, String> getPerfectHashSites() {
+        return _perfectHashSites == null ? Collections.emptyMap() : _perfectHashSites;
+    }
+
+    public void setPerfectHashSites(final Map<String, String> perfectHashSites) {
+        _perfectHashSites = perfectHashSites;
+    }
+
+    /**
+     * Maximum number of concurrent redirect queries before the redirects are compiled, 0 for no limit.
+     * Concurrent requests of the same url share one query.
+     */
+    public int getMaxConcurrentLookups() {
+        return _maxConcurrentLookups;
+    }
+
+    public void setMaxConcurrentLookups(int maxConcurrentLookups) {
+        _maxConcurrentLookups = maxConcurrentLookups;
+    }
+
+    /**
+     * Number of threads evaluating the pattern redirects of large sites in parallel, 0 for sequential evaluation only.
+     */
+    public int getPatternParallelism() {
+        return _patternParallelism;
+    }
+
+    public void setPatternParallelism(int patternParallelism) {
+        _patternParallelism = patternParallelism;
+    }
+
+    /**
+     * Minimum number of pattern redirects of a site or host for the parallel evaluation.
+     */
+    public int getParallelPatternThreshold() {
+        return _parallelPatternThreshold;
+    }
+
+    public void setParallelPatternThreshold(int parallelPatternThreshold) {
+        _parallelPatternThreshold = parallelPatternThreshold;
+    }
+
+    /**
+     * Compiles the redirects in the background on start and after changes. Requests query the redirects until they are compiled.
+     */
+    public boolean isWarmUp() {
+        return _warmUp;
+    }
+
+    public void setWarmUp(boolean warmUp) {
+        _warmUp = warmUp;
+    }
+
+    /**
+     * Maximum time in milliseconds the previously compiled redirects are served after a change, while the changed redirects
+     * are compiled in the background. 0 to compile changes before serving the next request.
+     */
+    public long getMaxStaleness() {
+        return _maxStaleness;
+    }
+
+    public void setMaxStaleness(long maxStaleness) {
+        _maxStaleness = maxStaleness;
+    }
+
+    /**
+     * Persists the compiled redirects, so the table is compiled without querying the workspace after a restart.
+     */
+    public boolean isSnapshot() {
+        return _snapshot;
+    }
+
+    public void setSnapshot(boolean snapshot) {
+        _snapshot = snapshot;
+    }
+
+    /**
+     * Snapshot file, defaults to easyredirects/redirect-table.snapshot in the Magnolia home directory.
+     */
+    public String getSnapshotFile() {
+        return _snapshotFile;
+    }
+
+    public void setSnapshotFile(final String snapshotFile) {
+        _snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Directory for the nginx and Apache redirect maps, no export if empty.
+     */
+    public String getMapExportDirectory() {
+        return _mapExportDirectory;
+    }
+
+    public void setMapExportDirectory(final String mapExportDirectory) {
+        _mapExportDirectory = mapExportDirectory;
+    }
+
+    /**
+     * Share of the requests, whose redirect decision is traced into the log, e.g. 0.001. 0 for no sampling.
+     */
+    public double getTraceSampleRate() {
+        return _traceSampleRate;
+    }
+
+    public void setTraceSampleRate(final double traceSampleRate) {
+        _traceSampleRate = traceSampleRate;
+    }
+
+    /**
+     * Secret of the requests, which get the trace of their redirect decision in a response header. No trace header if empty.
+     */
+    public String getTraceToken() {
+        return _traceToken;
+    }
+
+    public void setTraceToken(final String traceToken) {
+        _traceToken = traceToken;
+    }
+
+    /**
+     * Cache policies of the redirect responses by redirect type (301, 302). Types without policy get no cache headers.
+     */
+    public Map<String, CachePolicy> getCachePolicies() {
+        return _cachePolicies == null ? Collections.emptyMap() : _cachePolicies;
+    }
+
+    public void setCachePolicies(final Map<String, CachePolicy> cachePolicies) {
+        _cachePolicies = cachePolicies;
+    }
+
+    /**
+     * Header for the surrogate keys of cached redirects, e.g. Cache-Tag for Cloudflare. No surrogate keys if empty.
+     */
+    public String getSurrogateKeyHeader() {
+        return _surrogateKeyHeader;
+    }
+
+    public void setSurrogateKeyHeader(final String surrogateKeyHeader) {
+        _surrogateKeyHeader = surrogateKeyHeader;
+    }
+
+    /**
+     * Separator of the surrogate keys, a space for Fastly, a comma for Cloudflare and Akamai.
+     */
+    public String getSurrogateKeySeparator() {
+        return _surrogateKeySeparator;
+    }
+
+    public void setSurrogateKeySeparator(final String surrogateKeySeparator) {
+        _surrogateKeySeparator = surrogateKeySeparator;
+    }
+
+    /**
+     * Purges cached redirect responses after changes of redirects, no purging if null.
+     */
+    public CdnPurger getCdnPurger() {
+        return _cdnPurger;
+    }
+
+    public void setCdnPurger(final CdnPurger cdnPurger) {
+        _cdnPurger = cdnPurger;
+    }
+
+    /**
+     * Milliseconds the purges of changes are collected before the first batch is sent.
+     */
+    public long getPurgeDelay() {
+        return _purgeDelay;
+    }
+
+    public void setPurgeDelay(long purgeDelay) {
+        _purgeDelay = purgeDelay;
+    }
+
+    /**
+     * Maximum number of surrogate keys and paths of one purge request.
+     */
+    public int getPurgeBatchSize() {
+        return _purgeBatchSize;
+    }
+
+    public void setPurgeBatchSize(int purgeBatchSize) {
+        _purgeBatchSize = purgeBatchSize;
+    }
+
+    /**
+     * More pending surrogate keys and paths are purged by the group key of all redirects, e.g. after an import.
+     */
+    public int getPurgeAllThreshold() {
+        return _purgeAllThreshold;
+    }
+
+    public void setPurgeAllThreshold(int purgeAllThreshold) {
+        _purgeAllThreshold = purgeAllThreshold;
+    }
+
+    /**
+     * Number of retries of a failed purge with doubled delay, the purge is dropped afterwards.
+     */
+    public int getPurgeRetries() {
+        return _purgeRetries;
+    }
+
+    public void setPurgeRetries(int purgeRetries) {
+        _purgeRetries = purgeRetries;
+    }
+
+    @Override
+    public void start(final ModuleLifecycleContext moduleLifecycleContext) {
+        if (_warmUp) {
+            Components.getComponent(RedirectRuleRegistry.class).warmUp();
+        }
+    }
+
+    @Override
+    public void stop(final ModuleLifecycleContext moduleLifecycleContext) {
+        Components.getComponent(LookupSessions.class).release();
+        // a restart after a configuration change keeps the compiled redirects
+        if (moduleLifecycleContext.getPhase() == ModuleLifecycleContext.PHASE_SYSTEM_SHUTDOWN) {
+            Components.getComponent(RedirectRuleRegistry.class).shutdown();
+        }
+    }
 }
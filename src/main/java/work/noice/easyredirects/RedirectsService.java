@@ -26,22 +26,35 @@ import info.magnolia.module.site.NullSite;
 import org.apache.jackrabbit.value.StringValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import work.noice.easyredirects.rules.ActivationSchedule;
+import work.noice.easyredirects.rules.CachePolicy;
+import work.noice.easyredirects.rules.PatternMatch;
+import work.noice.easyredirects.rules.ParsedQuery;
+import work.noice.easyredirects.rules.PatternRule;
+import work.noice.easyredirects.rules.PatternRuleSet;
+import work.noice.easyredirects.rules.QueryRule;
+import work.noice.easyredirects.rules.RuleMatch;
+import work.noice.easyredirects.rules.UrlCanonicalizer;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.inject.Provider;
+import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
 import javax.jcr.query.QueryResult;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import static info.magnolia.cms.util.RequestDispatchUtil.FORWARD_PREFIX;
 import static info.magnolia.cms.util.RequestDispatchUtil.PERMANENT_PREFIX;
@@ -49,6 +62,8 @@ import static info.magnolia.cms.util.RequestDispatchUtil.REDIRECT_PREFIX;
 import static info.magnolia.context.MgnlContext.getJCRSession;
 import static info.magnolia.jcr.util.NodeUtil.asIterable;
 import static info.magnolia.jcr.util.NodeUtil.asList;
+import static info.magnolia.jcr.util.PropertyUtil.getDate;
+import static info.magnolia.jcr.util.PropertyUtil.getLong;
 import static info.magnolia.jcr.util.PropertyUtil.getString;
 import static info.magnolia.repository.RepositoryConstants.WEBSITE;
 import static javax.jcr.query.Query.JCR_SQL2;
@@ -79,6 +94,10 @@ public class RedirectsService {
     private static final String QUERY_REDIRECT_WITH_SITE = QUERY_REDIRECT + " and site = $site";
     private static final String QUERY_REDIRECT_PATTERN = "select * from [" + RedirectsModule.NT_REDIRECT + "] where usePattern = 'true' and fromUrl is not null";
     private static final String QUERY_REDIRECT_PATTERN_WITH_SITE = QUERY_REDIRECT_PATTERN + " and site = $site";
+    private static final String QUERY_ALL = "select * from [" + RedirectsModule.NT_REDIRECT + "]";
+    private static final String QUERY_ALL_WITH_SITE = QUERY_ALL + " where site = $site";
+    private static final String QUERY_ALL_WITH_PREFIX = QUERY_ALL + " where (fromUrl like $prefix or redirect like $prefix)";
+    private static final String QUERY_ALL_WITH_PREFIX_AND_SITE = QUERY_ALL_WITH_PREFIX + " and site = $site";
     public static final String DEF_SITE = "default";
     public static final String PN_SITE = "site";
     public static final String PN_REDIRECT = "redirect";
@@ -86,6 +105,15 @@ public class RedirectsService {
     public static final String PN_SUFFIX = "linkSuffix";
     public static final String PN_TYPE = "type";
     public static final String PN_USE_PATTERN = "usePattern";
+    public static final String PN_PRIORITY = "priority";
+    public static final String PN_HOST = "host";
+    public static final String PN_QUERY_MATCH = "queryMatch";
+    public static final String PN_QUERY_DROP = "queryDrop";
+    public static final String PN_QUERY_KEEP = "queryKeep";
+    public static final String PN_VALID_FROM = "validFrom";
+    public static final String PN_VALID_TO = "validTo";
+    public static final String PN_CACHE_MAX_AGE = "cacheMaxAge";
+    public static final String PN_CACHE_SHARED_MAX_AGE = "cacheSharedMaxAge";
     
     // Redirect-specific property names
     public static final String PN_FROM_URL = "fromUrl";
@@ -98,6 +126,9 @@ public class RedirectsService {
     private String _contextPath = "";
 
     private Provider<RedirectsModule> _redirectsModule;
+    private Provider<RedirectRuleRegistry> _ruleRegistry;
+    private Provider<LookupSessions> _lookupSessions;
+    private Provider<LookupFlights> _lookupFlights;
 
     /**
      * Creates the redirect url for uri mapping.
@@ -149,11 +180,7 @@ public class RedirectsService {
      */
     protected String createRedirectUrl(final Node node, final boolean asExternal, final String originSuffix, Map<String, String> extractedParams) {
         String result;
-        // Try redirect type first (redirectType), then redirect type (type)
-        String type = getString(node, PN_REDIRECT_TYPE, EMPTY);
-        if (isEmpty(type)) {
-            type = getString(node, PN_TYPE, EMPTY);
-        }
+        String type = getRedirectType(node);
         String prefix;
         
         if ("forward".equals(type)) {
@@ -182,6 +209,17 @@ public class RedirectsService {
         return publicUrlService.createTargetUrl(node);
     }
 
+    /**
+     * Creates the public urls of several redirects in one pass.
+     *
+     * @param nodes redirect nodes
+     * @return public url per node identifier
+     */
+    public Map<String, String> createPublicUrls(final Collection<Node> nodes) {
+        PublicUrlService publicUrlService = _redirectsModule.get().getPublicUrlService();
+        return publicUrlService.createTargetUrls(nodes);
+    }
+
     /**
      * Creates the redirect url for public instance.
      *
@@ -252,7 +290,7 @@ public class RedirectsService {
                         url = resolveRedirectPath(linkValue, node, isForward, asExternal);
                     } else {
                         // This is a redirect link - treat as node identifier
-                        Node nodeFromId = getNodeFromId(linkValue);
+                        Node nodeFromId = getPageNode(node, linkValue);
                         url = createTargetLinkForPage(nodeFromId, isForward, asExternal);
                     }
                 }
@@ -294,23 +332,66 @@ public class RedirectsService {
 
 
     /**
-     * Query for a redirect node.
+     * Query for a redirect node. Redirects outside their validity window are skipped. Concurrent queries
+     * of the same redirect and site are coalesced.
      *
      * @param redirect redirect from request
      * @param siteName  site name from aggegation state
-     * @return first redirect node of result or null, if nothing found
+     * @return first active redirect node of result or null, if nothing found
      */
     public Node queryForRedirectNode(final String redirect, final String siteName) {
         Node node = null;
 
-        List<Node> nodes = queryForRedirectNodes(redirect, siteName);
-        if (!nodes.isEmpty()) {
-            node = nodes.get(0);
+        long now = System.currentTimeMillis();
+        for (Node resultNode : queryForRedirectNodesCoalesced(redirect, siteName)) {
+            if (isActive(resultNode, now)) {
+                node = resultNode;
+                break;
+            }
         }
 
         return node;
     }
 
+    private List<Node> queryForRedirectNodesCoalesced(final String redirect, final String siteName) {
+        List<Node> nodes;
+        if (_lookupFlights != null) {
+            nodes = new ArrayList<>();
+            try {
+                List<String> identifiers = _lookupFlights.get().load(siteName, redirect, () -> getIdentifiers(queryForRedirectNodes(redirect, siteName)));
+                // the nodes of the querying thread belong to its session
+                Session jcrSession = getJCRSession(RedirectsModule.WORKSPACE);
+                for (String identifier : identifiers) {
+                    try {
+                        nodes.add(jcrSession.getNodeByIdentifier(identifier));
+                    } catch (ItemNotFoundException e) {
+                        LOGGER.debug("RedirectsService: Redirect {} removed meanwhile.", identifier);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn("RedirectsService: Interrupted while querying for redirect: {} with site: {}", redirect, siteName);
+            } catch (RepositoryException e) {
+                LOGGER.error("RedirectsService: Error getting redirects for: {} with site: {}", redirect, siteName, e);
+            }
+        } else {
+            nodes = queryForRedirectNodes(redirect, siteName);
+        }
+        return nodes;
+    }
+
+    private static List<String> getIdentifiers(final List<Node> nodes) {
+        List<String> identifiers = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            try {
+                identifiers.add(node.getIdentifier());
+            } catch (RepositoryException e) {
+                LOGGER.warn("RedirectsService: Error getting identifier of {}.", NodeUtil.getPathIfPossible(node), e);
+            }
+        }
+        return identifiers;
+    }
+
     /**
      * Query for a redirect nodes.
      *
@@ -416,6 +497,303 @@ public class RedirectsService {
         return nodes;
     }
 
+    /**
+     * Query for all redirect nodes of the workspace.
+     *
+     * @return redirect nodes or empty list, if nothing found
+     * @throws RepositoryException on query errors
+     */
+    public List<Node> queryForAllRedirectNodes() throws RepositoryException {
+        QueryManager queryManager = getJCRSession(RedirectsModule.WORKSPACE).getWorkspace().getQueryManager();
+        return asList(asIterable(queryManager.createQuery(QUERY_ALL, JCR_SQL2).execute().getNodes()));
+    }
+
+    /**
+     * Query for the from urls of the exact redirects (without pattern matching) starting with a prefix.
+     *
+     * @param siteName site name
+     * @param prefix   literal url prefix, empty for all exact redirects
+     * @return from urls or empty list, if nothing found
+     */
+    public List<String> queryForExactRedirectUrls(final String siteName, final String prefix) {
+        List<String> urls = new ArrayList<>();
+
+        try {
+            Session jcrSession = getJCRSession(RedirectsModule.WORKSPACE);
+            QueryManager queryManager = jcrSession.getWorkspace().getQueryManager();
+
+            Query query;
+            if (isEmpty(prefix)) {
+                query = queryManager.createQuery(NullSite.SITE_NAME.equals(siteName) ? QUERY_ALL : QUERY_ALL_WITH_SITE, JCR_SQL2);
+            } else {
+                query = queryManager.createQuery(NullSite.SITE_NAME.equals(siteName) ? QUERY_ALL_WITH_PREFIX : QUERY_ALL_WITH_PREFIX_AND_SITE, JCR_SQL2);
+                query.bindValue("prefix", new StringValue(escapeLike(prefix) + '%'));
+            }
+            if (!NullSite.SITE_NAME.equals(siteName)) {
+                query.bindValue(PN_SITE, new StringValue(siteName));
+            }
+
+            for (Node node : asIterable(query.execute().getNodes())) {
+                String url = getString(node, PN_FROM_URL, EMPTY);
+                if (isEmpty(url)) {
+                    url = getString(node, PN_REDIRECT, EMPTY);
+                }
+                if (isNotEmpty(url) && !Boolean.parseBoolean(getString(node, PN_USE_PATTERN))) {
+                    urls.add(url);
+                }
+            }
+        } catch (RepositoryException e) {
+            LOGGER.error("RedirectsService: Error querying exact redirects for site: {}", siteName, e);
+        }
+
+        return urls;
+    }
+
+    private static String escapeLike(final String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Query for the redirects without query conditions, which share the canonical lookup key of an url.
+     * The saved redirects of the workspace are compared, the compiled redirects may be outdated or still compiling.
+     *
+     * @param host     host of the redirect, may be null
+     * @param siteName site name
+     * @param url      from url
+     * @return redirect nodes or empty list, if nothing found
+     */
+    public List<Node> queryForExactDuplicates(final String host, final String siteName, final String url) {
+        List<Node> nodes = new ArrayList<>();
+        UrlCanonicalizer canonicalizer = _redirectsModule.get().getCanonicalizer();
+        String key = canonicalizer.toKey(canonicalizer.canonicalize(url));
+
+        try {
+            QueryManager queryManager = getJCRSession(RedirectsModule.WORKSPACE).getWorkspace().getQueryManager();
+
+            // host redirects are looked up across sites, like in the compiled redirects
+            Query query;
+            if (isNotEmpty(host) || isEmpty(siteName) || NullSite.SITE_NAME.equals(siteName)) {
+                query = queryManager.createQuery(QUERY_ALL, JCR_SQL2);
+            } else {
+                query = queryManager.createQuery(QUERY_ALL_WITH_SITE, JCR_SQL2);
+                query.bindValue(PN_SITE, new StringValue(siteName));
+            }
+
+            for (Node node : asIterable(query.execute().getNodes())) {
+                QueryRule queryRule = createQueryRule(node);
+                if (defaultString(host).equalsIgnoreCase(getString(node, PN_HOST, EMPTY)) && (queryRule == null || !queryRule.hasConditions())
+                    && (hasKey(canonicalizer, getString(node, PN_FROM_URL), key) || hasKey(canonicalizer, getString(node, PN_REDIRECT), key))) {
+                    nodes.add(node);
+                }
+            }
+        } catch (RepositoryException e) {
+            LOGGER.error("RedirectsService: Error querying duplicates of {} for site: {}", url, siteName, e);
+        }
+
+        return nodes;
+    }
+
+    private static boolean hasKey(final UrlCanonicalizer canonicalizer, final String url, final String key) {
+        return isNotEmpty(url) && key.equals(canonicalizer.toKey(canonicalizer.canonicalize(url)));
+    }
+
+    /**
+     * Checks if the compiled redirect table is available for {@link #findRedirect(String, String, String, ParsedQuery)}.
+     * With warm-up the table is compiled in the background and the redirects are queried meanwhile.
+     *
+     * @return false, if the redirects are not compiled yet or could not be compiled and have to be queried
+     */
+    public boolean isRuleTableReady() {
+        RedirectRuleRegistry ruleRegistry = _ruleRegistry.get();
+        boolean ready;
+        if (_redirectsModule.get().isWarmUp()) {
+            ready = ruleRegistry.isReady();
+            if (!ready) {
+                ruleRegistry.warmUp();
+            }
+        } else {
+            ready = ruleRegistry.getTable() != null;
+        }
+        return ready;
+    }
+
+    /**
+     * Finds the redirect of a request in the compiled redirect table: first the redirects of the request host,
+     * then the redirects of the site. Exact redirects are matched before pattern redirects.
+     *
+     * @param host     request host, may be null
+     * @param redirect redirect from request
+     * @param siteName site name from aggregation state
+     * @param query    parsed request query for the query conditions of the redirects
+     * @return matching redirect node with the extracted parameters or null, if no redirect matches
+     */
+    public RedirectMatch findRedirect(final String host, final String redirect, final String siteName, final ParsedQuery query) {
+        RedirectMatch redirectMatch = null;
+        RuleMatch ruleMatch = _ruleRegistry.get().lookup(host, siteName, redirect, query);
+        if (ruleMatch != null) {
+            try {
+                Node node = getLookupSession(RedirectsModule.WORKSPACE).getNodeByIdentifier(ruleMatch.getIdentifier());
+                redirectMatch = new RedirectMatch(node, ruleMatch.getParameters(), ruleMatch.getQueryRule(), ruleMatch.isPattern());
+            } catch (RepositoryException e) {
+                LOGGER.warn("RedirectsService: Error getting redirect {}.", ruleMatch.getIdentifier(), e);
+            }
+        }
+        return redirectMatch;
+    }
+
+    /**
+     * Finds the first matching pattern redirect of the site in the order of the compiled pattern rules.
+     *
+     * @param redirect redirect from request
+     * @param siteName site name from aggregation state
+     * @return matching redirect node with the extracted parameters or null, if no pattern matches
+     */
+    public RedirectMatch findPatternRedirect(final String redirect, final String siteName) {
+        return findPatternRedirect(redirect, siteName, ParsedQuery.EMPTY);
+    }
+
+    /**
+     * Finds the first matching pattern redirect of the site including the query conditions of the redirects.
+     *
+     * @param redirect redirect from request
+     * @param siteName site name from aggregation state
+     * @param query    parsed request query
+     * @return matching redirect node with the extracted parameters or null, if no pattern matches
+     */
+    public RedirectMatch findPatternRedirect(final String redirect, final String siteName, final ParsedQuery query) {
+        RedirectMatch redirectMatch = null;
+        PatternMatch patternMatch = _ruleRegistry.get().getPatternRules(siteName).match(redirect, query);
+        if (patternMatch != null) {
+            try {
+                Node node = getLookupSession(RedirectsModule.WORKSPACE).getNodeByIdentifier(patternMatch.getRule().getIdentifier());
+                redirectMatch = new RedirectMatch(node, patternMatch.getParameters(), patternMatch.getRule().getQueryRule(), true);
+            } catch (RepositoryException e) {
+                LOGGER.warn("RedirectsService: Error getting pattern redirect {}.", patternMatch.getRule(), e);
+            }
+        }
+        return redirectMatch;
+    }
+
+    /**
+     * Finds the first matching pattern redirect of the site by querying the workspace, e.g. while the redirects are
+     * compiled in the background. Unlike {@link #findPatternRedirect(String, String, ParsedQuery)} it never waits for
+     * the compiled redirects.
+     *
+     * @param redirect redirect from request
+     * @param siteName site name from aggregation state
+     * @param query    parsed request query
+     * @return matching redirect node with the extracted parameters or null, if no pattern matches
+     */
+    public RedirectMatch queryForPatternRedirect(final String redirect, final String siteName, final ParsedQuery query) {
+        RedirectMatch redirectMatch = null;
+        Map<String, Node> nodes = new HashMap<>();
+        PatternMatch patternMatch = new PatternRuleSet(queryForPatternRules(siteName, Integer.MIN_VALUE, nodes)).match(redirect, query);
+        if (patternMatch != null) {
+            redirectMatch = new RedirectMatch(nodes.get(patternMatch.getRule().getIdentifier()), patternMatch.getParameters(), patternMatch.getRule().getQueryRule(), true);
+        }
+        return redirectMatch;
+    }
+
+    /**
+     * Compiles the active pattern redirects of the site from the workspace, without waiting for the compiled redirects.
+     *
+     * Redirects of lower priority are left out before compiling.
+     *
+     * @param siteName    site name
+     * @param minPriority minimum priority of the redirects
+     * @return pattern rules identified by the node path, redirects with invalid patterns are left out
+     */
+    public List<PatternRule> queryForPatternRules(final String siteName, final int minPriority) {
+        return queryForPatternRules(siteName, minPriority, new HashMap<>());
+    }
+
+    private List<PatternRule> queryForPatternRules(final String siteName, final int minPriority, final Map<String, Node> nodes) {
+        long stepBudget = _redirectsModule.get().getPatternStepBudget();
+        long now = System.currentTimeMillis();
+        List<PatternRule> rules = new ArrayList<>();
+        for (Node node : queryForPatternRedirectNodes(siteName)) {
+            String pattern = getFromUrl(node);
+            String path = NodeUtil.getPathIfPossible(node);
+            int priority = getLong(node, PN_PRIORITY, 0L).intValue();
+            if (isNotEmpty(pattern) && priority >= minPriority && isActive(node, now) && nodes.putIfAbsent(path, node) == null) {
+                try {
+                    rules.add(new PatternRule(path, path, pattern, priority, stepBudget, createQueryRule(node)));
+                } catch (PatternSyntaxException e) {
+                    LOGGER.warn("RedirectsService: Ignore redirect {} with invalid pattern {}.", path, pattern, e);
+                }
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Compiles the query conditions and rewriting of a redirect.
+     *
+     * @param node redirect node
+     * @return query rule or null, if the redirect has no query settings
+     */
+    public static QueryRule createQueryRule(final Node node) {
+        return QueryRule.compile(getString(node, PN_QUERY_MATCH), getString(node, PN_QUERY_DROP), getString(node, PN_QUERY_KEEP));
+    }
+
+    /**
+     * @param node redirect node
+     * @return from url of the redirect, the fromUrl property first, then the redirect property
+     */
+    public static String getFromUrl(final Node node) {
+        return getString(node, PN_FROM_URL, getString(node, PN_REDIRECT));
+    }
+
+    /**
+     * Checks the validity window of a redirect.
+     *
+     * @param node redirect node
+     * @param now  time in milliseconds
+     * @return true, if the redirect is valid at this time
+     */
+    public static boolean isActive(final Node node, final long now) {
+        return ActivationSchedule.isActive(getTime(node, PN_VALID_FROM), getTime(node, PN_VALID_TO), now);
+    }
+
+    /**
+     * @param node redirect node
+     * @return redirect type (301, 302 or forward), the redirectType property first, then the legacy type property
+     */
+    public static String getRedirectType(final Node node) {
+        String type = getString(node, PN_REDIRECT_TYPE, EMPTY);
+        if (isEmpty(type)) {
+            type = getString(node, PN_TYPE, EMPTY);
+        }
+        return type;
+    }
+
+    /**
+     * Cache policy of the redirect response: the policy of the redirect type with the max ages of the redirect.
+     *
+     * @param node redirect node
+     * @return cache policy or null, if the response is not cacheable
+     */
+    public CachePolicy getCachePolicy(final Node node) {
+        CachePolicy policy = null;
+        CachePolicy typePolicy = _redirectsModule.get().getCachePolicies().get(getRedirectType(node));
+        Long maxAge = getLong(node, PN_CACHE_MAX_AGE, null);
+        Long sharedMaxAge = getLong(node, PN_CACHE_SHARED_MAX_AGE, null);
+        if (typePolicy != null || maxAge != null || sharedMaxAge != null) {
+            policy = (typePolicy != null ? typePolicy : new CachePolicy()).override(maxAge, sharedMaxAge);
+        }
+        return policy;
+    }
+
+    /**
+     * @param node redirect node
+     * @param name name of a date property
+     * @return date in milliseconds or null, if not set
+     */
+    public static Long getTime(final Node node, final String name) {
+        Calendar date = getDate(node, name);
+        return date != null ? date.getTimeInMillis() : null;
+    }
+
     /**
      * Override for testing.
      */
@@ -428,6 +806,59 @@ public class RedirectsService {
         _redirectsModule = redirectsModule;
     }
 
+    @Inject
+    public void setRuleRegistry(final Provider<RedirectRuleRegistry> ruleRegistry) {
+        _ruleRegistry = ruleRegistry;
+    }
+
+    @Inject
+    public void setLookupSessions(final Provider<LookupSessions> lookupSessions) {
+        _lookupSessions = lookupSessions;
+    }
+
+    @Inject
+    public void setLookupFlights(final Provider<LookupFlights> lookupFlights) {
+        _lookupFlights = lookupFlights;
+    }
+
+    /**
+     * Session for the redirect lookups: the long-lived system session of the thread, if available,
+     * otherwise the session of the current context.
+     */
+    private Session getLookupSession(final String workspace) throws RepositoryException {
+        return _lookupSessions != null ? _lookupSessions.get().get(workspace) : getJCRSession(workspace);
+    }
+
+    /**
+     * Target page of a redirect: read with the lookup session, if the redirect was found by a lookup of a request,
+     * otherwise with the session of the current context, e.g. of the editor in the redirects app.
+     */
+    private Node getPageNode(final Node redirectNode, final String nodeId) {
+        Node node = null;
+        if (isLookupNode(redirectNode)) {
+            try {
+                node = getLookupSession(WEBSITE).getNodeByIdentifier(nodeId);
+            } catch (RepositoryException e) {
+                LOGGER.info("Error getting node for {}.", nodeId);
+            }
+        } else {
+            node = getNodeFromId(nodeId);
+        }
+        return node;
+    }
+
+    private boolean isLookupNode(final Node node) {
+        boolean lookupNode = false;
+        if (_lookupSessions != null) {
+            try {
+                lookupNode = _lookupSessions.get().isLookupSession(node.getSession());
+            } catch (RepositoryException e) {
+                LOGGER.debug("No session of {}.", node, e);
+            }
+        }
+        return lookupNode;
+    }
+
     protected static Node getNodeFromId(final String nodeId) {
         Node node = null;
         try {
@@ -451,32 +882,7 @@ public class RedirectsService {
      * @return compiled regex pattern
      */
     public static Pattern convertToRegexPattern(String pattern) {
-        String regex = pattern;
-        
-        // Check if this is already a regex pattern (contains unescaped parentheses or brackets)
-        boolean isAlreadyRegex = pattern.contains("(") || pattern.contains("[") || pattern.contains("^") || pattern.contains("$");
-        
-        if (isAlreadyRegex) {
-            // Pattern is already regex - use as-is but ensure anchoring
-            if (!regex.startsWith("^")) {
-                regex = "^" + regex;
-            }
-            if (!regex.endsWith("$")) {
-                regex = regex + "$";
-            }
-        } else {
-            // Convert simple pattern to regex
-            // Escape special regex characters except * and {}
-            regex = regex.replaceAll("([.+?^$|\\\\\\[\\]()])", "\\\\$1");
-            // Replace {param} with named capture group
-            regex = regex.replaceAll("\\{([^}]+)\\}", "(?<$1>[^/]+)");
-            // Replace * with .* for wildcard matching
-            regex = regex.replaceAll("\\*", ".*");
-            // Ensure exact match
-            regex = "^" + regex + "$";
-        }
-        
-        return Pattern.compile(regex);
+        return Pattern.compile(PatternRule.toRegex(pattern));
     }
 
     /**
@@ -487,37 +893,7 @@ public class RedirectsService {
      * @return map of extracted parameters or null if no match
      */
     public static Map<String, String> matchPattern(String requestUrl, String pattern) {
-        Pattern regex = convertToRegexPattern(pattern);
-        Matcher matcher = regex.matcher(requestUrl);
-        
-        if (matcher.matches()) {
-            Map<String, String> params = new HashMap<>();
-            
-            // First, extract numbered groups (for $1, $2, etc.)
-            for (int i = 1; i <= matcher.groupCount(); i++) {
-                String groupValue = matcher.group(i);
-                if (groupValue != null) {
-                    params.put(String.valueOf(i), groupValue);
-                }
-            }
-            
-            // Also extract named groups (for {name} placeholders)
-            Pattern namedGroupPattern = Pattern.compile("\\(\\?<([^>]+)>");
-            Matcher groupMatcher = namedGroupPattern.matcher(regex.pattern());
-            while (groupMatcher.find()) {
-                String groupName = groupMatcher.group(1);
-                try {
-                    String groupValue = matcher.group(groupName);
-                    if (groupValue != null) {
-                        params.put(groupName, groupValue);
-                    }
-                } catch (IllegalArgumentException e) {
-                    // Group not found, skip
-                }
-            }
-            return params;
-        }
-        return null;
+        return new PatternRule(null, EMPTY, pattern, 0).match(requestUrl);
     }
 
     /**
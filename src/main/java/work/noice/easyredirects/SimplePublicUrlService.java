@@ -23,11 +23,16 @@ package work.noice.easyredirects;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import javax.jcr.Node;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static work.noice.easyredirects.RedirectsService.PN_LINK;
 import static work.noice.easyredirects.RedirectsService.PN_SUFFIX;
 import static work.noice.easyredirects.RedirectsService.PN_REDIRECT;
 import static work.noice.easyredirects.RedirectsService.isExternalLink;
+import static info.magnolia.jcr.util.NodeUtil.getNodeIdentifierIfPossible;
 import static info.magnolia.jcr.util.PropertyUtil.getString;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
@@ -45,6 +50,7 @@ public class SimplePublicUrlService implements PublicUrlService {
     private String _contextPath = EMPTY;
 
     private String _targetServerPrefix = "https://www.demo-project.com/context";
+    private String _normalizedPrefix = removeEnd(_targetServerPrefix, "/");
 
     @Override
     public String createRedirectUrl(final Node node) {
@@ -53,12 +59,26 @@ public class SimplePublicUrlService implements PublicUrlService {
 
     @Override
     public String createTargetUrl(final Node node) {
+        return createTargetUrl(node, this::getExternalLinkFromId);
+    }
+
+    @Override
+    public Map<String, String> createTargetUrls(final Collection<Node> nodes) {
+        Map<String, String> pageLinks = getExternalLinksFromIds(PublicUrlService.getPageIds(nodes));
+        Map<String, String> urls = new HashMap<>();
+        for (Node node : nodes) {
+            urls.put(getNodeIdentifierIfPossible(node), createTargetUrl(node, pageLinks::get));
+        }
+        return urls;
+    }
+
+    private String createTargetUrl(final Node node, final UnaryOperator<String> pageLinks) {
         String url = EMPTY;
         if (node != null) {
             url = getString(node, PN_LINK, EMPTY);
             if (isNotEmpty(url)) {
                 if (!isExternalLink(url)) {
-                    url = normalizePrefix() + removeContextPath(getExternalLinkFromId(url));
+                    url = normalizePrefix() + removeContextPath(pageLinks.apply(url));
                 }
                 url += getString(node, PN_SUFFIX, EMPTY);
             }
@@ -81,10 +101,11 @@ public class SimplePublicUrlService implements PublicUrlService {
     }
 
     private String normalizePrefix() {
-        return removeEnd(_targetServerPrefix, "/");
+        return _normalizedPrefix;
     }
 
     public void setTargetServerPrefix(final String targetServerPrefix) {
         _targetServerPrefix = targetServerPrefix;
+        _normalizedPrefix = removeEnd(targetServerPrefix, "/");
     }
 }
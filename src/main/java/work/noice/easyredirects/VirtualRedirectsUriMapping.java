@@ -22,42 +22,63 @@ package work.noice.easyredirects;
 
 import info.magnolia.cms.core.AggregationState;
 import info.magnolia.context.MgnlContext;
+import info.magnolia.context.WebContext;
+import info.magnolia.jcr.util.NodeUtil;
 import info.magnolia.module.site.ExtendedAggregationState;
 import info.magnolia.module.site.NullSite;
 import info.magnolia.module.site.Site;
 import info.magnolia.virtualuri.VirtualUriMapping;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import work.noice.easyredirects.rules.CachePolicy;
+import work.noice.easyredirects.rules.ParameterFilter;
+import work.noice.easyredirects.rules.ParsedQuery;
+import work.noice.easyredirects.rules.QueryRule;
+import work.noice.easyredirects.rules.RedirectTrace;
+import work.noice.easyredirects.stats.MissingUrlTracker;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Provider;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import java.net.URI;
-import java.util.List;
+import java.security.MessageDigest;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.PatternSyntaxException;
 
+import static info.magnolia.cms.util.RequestDispatchUtil.FORWARD_PREFIX;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
-import static org.apache.commons.lang3.StringUtils.isEmpty;
+import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 import static org.apache.commons.lang3.StringUtils.removeStart;
-import info.magnolia.jcr.util.PropertyUtil;
+import static work.noice.easyredirects.RedirectsService.PN_VALID_TO;
 import info.magnolia.module.site.SiteManager;
 
 /**
  * Virtual Uri Mapping of redirects managed in the redirects app.
+ * A sample of the redirect decisions is traced into the log. Requests with the trace token of the module in the
+ * {@value #HEADER_TRACE} header get the trace of their redirect decision in the response header of the same name.
  *
  * @author frank.sommer
  */
 public class VirtualRedirectsUriMapping implements VirtualUriMapping {
+    public static final String HEADER_TRACE = "X-Redirect-Trace";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(VirtualRedirectsUriMapping.class);
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+    private static final ThreadLocal<RedirectTrace> TRACE = new ThreadLocal<>();
 
     private Provider<RedirectsModule> _redirectsModule;
     private Provider<RedirectsService> _redirectsService;
     private Provider<SiteManager> _siteManager;
+    private Provider<MissingUrlTracker> _missingUrlTracker;
 
     @Inject
     public void setRedirectsModule(final Provider<RedirectsModule> redirectsModule) {
@@ -74,30 +95,102 @@ public class VirtualRedirectsUriMapping implements VirtualUriMapping {
         _siteManager = siteManager;
     }
 
+    @Inject
+    public void setMissingUrlTracker(final Provider<MissingUrlTracker> missingUrlTracker) {
+        _missingUrlTracker = missingUrlTracker;
+    }
+
     @Override
     public Optional<Result> mapUri(final URI uri) {
+        boolean traceRequested = isTraceRequested();
+        boolean sampled = !traceRequested && isTraceSampled();
+        RedirectTrace trace = traceRequested || sampled ? new RedirectTrace(false, null, traceRequested) : RedirectTrace.NONE;
+
+        Optional<Result> result = mapUri(uri, trace);
+
+        if (sampled) {
+            LOGGER.info("Redirect trace of {}: {}", uri, trace.toHeaderValue());
+        } else if (traceRequested) {
+            WebContext webContext = MgnlContext.getWebContextOrNull();
+            HttpServletResponse response = webContext != null ? webContext.getResponse() : null;
+            if (response != null) {
+                // the trace header is no part of a cache key, so neither the cdn nor the cache may store the response
+                response.setHeader(HEADER_CACHE_CONTROL, "private, no-store");
+                response.setHeader(HEADER_TRACE, trace.toHeaderValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tests an url like a request, e.g. from the redirects app. Cache headers and missing url statistics are left out.
+     *
+     * @param uri  request uri with query
+     * @param host request host, null for redirects without host
+     * @return trace of the redirect decision
+     */
+    public RedirectTrace testUri(final URI uri, final String host) {
+        RedirectTrace trace = new RedirectTrace(true, host);
+        mapUri(uri, trace);
+        return trace;
+    }
+
+    private Optional<Result> mapUri(final URI uri, final RedirectTrace trace) {
         Optional<Result> result = Optional.empty();
+        TRACE.set(trace);
         try {
             String redirect = extractPath(uri);
-            
-            if (isRedirectCandidate(redirect)) {
+            String exclusion = !isRedirectCandidate(redirect) ? "excluded" : isCheckedByFilter(redirect) ? "checked by filter" : null;
+            trace.record("exclude", exclusion != null ? exclusion : "candidate");
+
+            if (exclusion == null) {
                 // Extract site and clean redirect URL
                 SiteUrlInfo siteUrlInfo = extractSiteFromUrl(redirect);
                 final String siteName = siteUrlInfo.getSiteName() != null ? siteUrlInfo.getSiteName() : retrieveSite(redirect);
                 final String cleanRedirect = siteUrlInfo.getRedirect();
+                trace.record("site", siteUrlInfo.getSiteName() != null ? siteName + " from url " + cleanRedirect : siteName);
                 
-                String toUri = getUriOfRedirect(siteName, cleanRedirect, Optional.ofNullable(uri.getQuery()).map(value -> "?" + value).orElse(null));
+                String toUri = getUriOfRedirect(siteName, cleanRedirect, Optional.ofNullable(uri.getRawQuery()).map(value -> "?" + value).orElse(null));
                 
                 if (isNotBlank(toUri)) {
                     result = Optional.of(new Result(toUri, redirect.length(), this));
+                } else if (!trace.isDryRun()) {
+                    recordMissingUrl(siteName, cleanRedirect);
                 }
             }
         } catch (PatternSyntaxException e) {
             LOGGER.error("A redirect exclude pattern is not set correctly.", e);
+            trace.record("exclude", "invalid exclude pattern");
+        } finally {
+            TRACE.remove();
         }
         return result;
     }
 
+    /**
+     * Trace of the current redirect decision, {@link RedirectTrace#NONE} if it is not traced.
+     */
+    protected static RedirectTrace currentTrace() {
+        RedirectTrace trace = TRACE.get();
+        return trace != null ? trace : RedirectTrace.NONE;
+    }
+
+    /**
+     * Whether the request carries the trace token of the module.
+     */
+    private boolean isTraceRequested() {
+        String token = _redirectsModule.get().getTraceToken();
+        WebContext webContext = isNotEmpty(token) ? MgnlContext.getWebContextOrNull() : null;
+        HttpServletRequest request = webContext != null ? webContext.getRequest() : null;
+        String requestToken = request != null ? request.getHeader(HEADER_TRACE) : null;
+        return requestToken != null && MessageDigest.isEqual(token.getBytes(UTF_8), requestToken.getBytes(UTF_8));
+    }
+
+    private boolean isTraceSampled() {
+        double sampleRate = _redirectsModule.get().getTraceSampleRate();
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
     protected String extractPath(URI uri) {
         return uri.getPath();
     }
@@ -120,38 +213,78 @@ public class VirtualRedirectsUriMapping implements VirtualUriMapping {
         return uri.length() <= 1;
     }
 
+    /**
+     * Whether the {@link RedirectsFilter} already looked up this path without result.
+     */
+    private boolean isCheckedByFilter(final String uri) {
+        WebContext webContext = MgnlContext.getWebContextOrNull();
+        HttpServletRequest request = webContext != null ? webContext.getRequest() : null;
+        return request != null && uri.equals(request.getAttribute(RedirectsFilter.ATTR_CHECKED_PATH));
+    }
+
     protected String getUriOfRedirect(String siteName, final String redirect, String originSuffix) {
         Node node = null;
         Map<String, String> extractedParams = null;
+        QueryRule queryRule = null;
+        RedirectsService redirectsService = _redirectsService.get();
+        final ParsedQuery query = ParsedQuery.parse(originSuffix);
+        RedirectTrace trace = currentTrace();
 
         try {
-            // do it in the system context, so the anonymous need no read rights for using redirects
-            node = MgnlContext.doInSystemContext(
-                (MgnlContext.Op<Node, RepositoryException>) () -> _redirectsService.get().queryForRedirectNode(redirect, siteName)
-            );
-            
-            // If no exact match found, try pattern matching
-            if (node == null) {
-                final String finalRedirect = redirect;
-                List<Node> patternNodes = MgnlContext.doInSystemContext(
-                    (MgnlContext.Op<List<Node>, RepositoryException>) () -> _redirectsService.get().queryForPatternRedirectNodes(siteName)
+            if (redirectsService.isRuleTableReady()) {
+                // the lookup reads with the system session of the thread, so the anonymous need no read rights for using redirects
+                RedirectMatch redirectMatch = redirectsService.findRedirect(retrieveHost(), redirect, siteName, query);
+                if (redirectMatch != null) {
+                    node = redirectMatch.getNode();
+                    extractedParams = redirectMatch.getParameters();
+                    queryRule = redirectMatch.getQueryRule();
+                    if (trace.isEnabled()) {
+                        trace.recordMatch(redirectMatch.isPattern() ? "pattern" : "exact", NodeUtil.getPathIfPossible(node), extractedParams);
+                    }
+                } else {
+                    trace.record("lookup", "no match in compiled redirects");
+                }
+            } else {
+                // do it in the system context, so the anonymous need no read rights for using redirects
+                node = MgnlContext.doInSystemContext(
+                    (MgnlContext.Op<Node, RepositoryException>) () -> redirectsService.queryForRedirectNode(redirect, siteName)
                 );
-
-                // Check each pattern node for a match
-                for (Node patternNode : patternNodes) {
-                    // Try fromUrl field first (for redirects), then redirect field (for redirects)
-                    String pattern = PropertyUtil.getString(patternNode, RedirectsService.PN_FROM_URL, EMPTY);
-                    if (isEmpty(pattern)) {
-                        pattern = PropertyUtil.getString(patternNode, RedirectsService.PN_REDIRECT, EMPTY);
+                if (node != null) {
+                    queryRule = RedirectsService.createQueryRule(node);
+                    Map<String, String> queryParams = queryRule != null ? queryRule.match(query) : null;
+                    if (queryRule != null && queryParams == null) {
+                        // query conditions not met
+                        if (trace.isEnabled()) {
+                            trace.record("exact", NodeUtil.getPathIfPossible(node) + " query conditions not met");
+                        }
+                        node = null;
+                        queryRule = null;
+                    } else {
+                        if (queryParams != null && !queryParams.isEmpty()) {
+                            extractedParams = queryParams;
+                        }
+                        if (trace.isEnabled()) {
+                            trace.recordMatch("exact", NodeUtil.getPathIfPossible(node), extractedParams);
+                        }
                     }
-                    
-                    if (isNotEmpty(pattern)) {
-                        Map<String, String> params = RedirectsService.matchPattern(finalRedirect, pattern);
-                        if (params != null) {
-                            node = patternNode;
-                            extractedParams = params;
-                            break;
+                } else {
+                    trace.record("exact", "no match");
+                }
+
+                // If no exact match found, try the pattern redirects of the site, without waiting for the compiled redirects
+                if (node == null) {
+                    RedirectMatch patternMatch = MgnlContext.doInSystemContext(
+                        (MgnlContext.Op<RedirectMatch, RepositoryException>) () -> redirectsService.queryForPatternRedirect(redirect, siteName, query)
+                    );
+                    if (patternMatch != null) {
+                        node = patternMatch.getNode();
+                        extractedParams = patternMatch.getParameters();
+                        queryRule = patternMatch.getQueryRule();
+                        if (trace.isEnabled()) {
+                            trace.recordMatch("pattern", NodeUtil.getPathIfPossible(node), extractedParams);
                         }
+                    } else {
+                        trace.record("pattern", "no match");
                     }
                 }
             }
@@ -159,10 +292,90 @@ public class VirtualRedirectsUriMapping implements VirtualUriMapping {
             LOGGER.warn("Error on querying for redirect.", e);
         }
 
-        String result = node == null ? EMPTY : createUrlForRedirectNode(node, originSuffix, extractedParams);
+        String result = node == null ? EMPTY : createUrlForRedirectNode(node, rewriteQuery(originSuffix, query, queryRule), extractedParams);
+        if (isNotEmpty(result) && !result.startsWith(FORWARD_PREFIX) && !trace.isDryRun() && !trace.isExposed()) {
+            applyCacheHeaders(node);
+        }
+        trace.record("target", isNotEmpty(result) ? result : "none");
         return result;
     }
 
+    /**
+     * Applies the query rewriting of the redirect and the globally dropped parameters to the request query.
+     *
+     * @param originSuffix request query with question mark
+     * @param query        parsed request query
+     * @param queryRule    query rewriting of the redirect, may be null
+     * @return query for the target url, null if no parameter is kept
+     */
+    protected String rewriteQuery(final String originSuffix, final ParsedQuery query, final QueryRule queryRule) {
+        String suffix = originSuffix;
+        ParameterFilter globalDrop = _redirectsModule.get().getDropQueryParameterFilter();
+        if (queryRule != null || !globalDrop.isEmpty()) {
+            String rewritten = queryRule != null ? queryRule.rewrite(query, globalDrop) : query.format(name -> !globalDrop.matches(name));
+            suffix = rewritten.isEmpty() ? null : "?" + rewritten;
+        }
+        return suffix;
+    }
+
+    /**
+     * Sets the Cache-Control and surrogate key headers of the cache policy on the redirect response.
+     * Forwards are left alone, their response is the target page.
+     *
+     * @param node redirect node
+     */
+    protected void applyCacheHeaders(final Node node) {
+        WebContext webContext = MgnlContext.getWebContextOrNull();
+        HttpServletResponse response = webContext != null ? webContext.getResponse() : null;
+        CachePolicy policy = response != null ? _redirectsService.get().getCachePolicy(node) : null;
+        if (policy != null) {
+            Long validTo = RedirectsService.getTime(node, PN_VALID_TO);
+            String cacheControl = policy.toCacheControl(validTo != null ? (validTo - System.currentTimeMillis()) / 1000 : null);
+            if (cacheControl != null) {
+                response.setHeader(HEADER_CACHE_CONTROL, cacheControl);
+                RedirectsModule module = _redirectsModule.get();
+                String surrogateKeyHeader = module.getSurrogateKeyHeader();
+                if (policy.isSurrogateKey() && isNotEmpty(surrogateKeyHeader)) {
+                    try {
+                        response.setHeader(surrogateKeyHeader, CachePolicy.getSurrogateKeys(node.getIdentifier(), module.getSurrogateKeySeparator()));
+                    } catch (RepositoryException e) {
+                        LOGGER.debug("No identifier for surrogate key of {}.", node, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Host of the current request for host specific redirects.
+     *
+     * @return server name of the request or null outside of a web request
+     */
+    protected String retrieveHost() {
+        String host;
+        RedirectTrace trace = currentTrace();
+        if (trace.isDryRun()) {
+            host = trace.getHost();
+        } else {
+            WebContext webContext = MgnlContext.getWebContextOrNull();
+            HttpServletRequest request = webContext != null ? webContext.getRequest() : null;
+            host = request != null ? request.getServerName() : null;
+        }
+        return host;
+    }
+
+    /**
+     * Feeds request urls without redirect into the missing url statistics.
+     *
+     * @param siteName site name of the request
+     * @param redirect request path without site prefix
+     */
+    protected void recordMissingUrl(String siteName, String redirect) {
+        if (_missingUrlTracker != null && _missingUrlTracker.get() != null) {
+            _missingUrlTracker.get().record(siteName, redirect);
+        }
+    }
+
     /**
      * Override for alternative redirect url creation.
      *
@@ -187,9 +400,16 @@ public class VirtualRedirectsUriMapping implements VirtualUriMapping {
     }
 
     protected String retrieveSite(String redirect) {
-        final AggregationState aggregationState = MgnlContext.getAggregationState();
-        Site site = aggregationState instanceof ExtendedAggregationState ? ((ExtendedAggregationState) aggregationState).getSite() : new NullSite();
-        return site.getName();
+        Site site = null;
+        if (!currentTrace().isDryRun()) {
+            final AggregationState aggregationState = MgnlContext.getAggregationState();
+            site = aggregationState instanceof ExtendedAggregationState ? ((ExtendedAggregationState) aggregationState).getSite() : null;
+        }
+        if (site == null && _siteManager != null && _siteManager.get() != null) {
+            // a test and the early filter run without site in the aggregation state, the site is assigned like for a request
+            site = _siteManager.get().getAssignedSite(defaultString(retrieveHost()), redirect);
+        }
+        return (site != null ? site : new NullSite()).getName();
     }
 
     @Override
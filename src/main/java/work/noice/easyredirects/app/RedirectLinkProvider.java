@@ -20,23 +20,49 @@ package work.noice.easyredirects.app;
  * #L%
  */
 
-
+import work.noice.easyredirects.PublicUrlService;
+import work.noice.easyredirects.RedirectsModule;
 import work.noice.easyredirects.RedirectsService;
 import com.machinezoo.noexception.Exceptions;
 import com.vaadin.data.ValueProvider;
+import info.magnolia.context.MgnlContext;
+import info.magnolia.jcr.util.NodeTypes;
 
 import jakarta.inject.Inject;
 import javax.jcr.Item;
+import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static info.magnolia.jcr.util.NodeUtil.getNodeIdentifierIfPossible;
+import static info.magnolia.repository.RepositoryConstants.WEBSITE;
 
 /**
- * Redirect link column value provider.
+ * Redirect link column value provider. The grid requests the rows one by one in the order of its sorting and
+ * filtering, so the first uncached row resolves the public urls of the uncached redirects of its folder in one
+ * pass, whichever of them are shown next. The results are cached by identifier and modification date of the
+ * redirect and by path and modification date of the target page, so moved or renamed pages are resolved again.
  *
  * @author frank.sommer
  * @since 1.6.0
  */
 public class RedirectLinkProvider implements ValueProvider<Item, String> {
+    private static final int BATCH_SIZE = 50;
+    private static final int CACHE_SIZE = 2000;
+    private static final int MAX_FOLDER_BATCH = CACHE_SIZE / 2;
+
     private final RedirectsService _redirectsService;
+    private final Map<String, String> _urls = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
 
     @Inject
     public RedirectLinkProvider(RedirectsService redirectsService) {
@@ -45,6 +71,76 @@ public class RedirectLinkProvider implements ValueProvider<Item, String> {
 
     @Override
     public String apply(Item item) {
-        return Exceptions.wrap().get(() -> _redirectsService.createPublicUrl((Node) item));
+        return Exceptions.wrap().get(() -> {
+            Node node = (Node) item;
+            String key = cacheKey(node);
+            String url = _urls.get(key);
+            if (url == null) {
+                Map<String, Node> batch = new LinkedHashMap<>();
+                for (Map.Entry<String, Node> entry : collectUncached(node, key).entrySet()) {
+                    batch.put(entry.getKey(), entry.getValue());
+                    if (batch.size() == BATCH_SIZE) {
+                        resolve(batch);
+                    }
+                }
+                resolve(batch);
+                url = _urls.get(key);
+            }
+            return url;
+        });
+    }
+
+    /**
+     * Collects the redirect and the uncached redirects of its folder in one pass over the folder.
+     * The batch stays below the cache size, so the requested redirect is not evicted by its own batch.
+     */
+    private Map<String, Node> collectUncached(final Node node, final String key) throws RepositoryException {
+        Map<String, Node> uncached = new LinkedHashMap<>();
+        uncached.put(key, node);
+        if (node.getDepth() > 0) {
+            NodeIterator siblings = node.getParent().getNodes();
+            while (siblings.hasNext() && uncached.size() < MAX_FOLDER_BATCH) {
+                Node sibling = siblings.nextNode();
+                if (sibling.isNodeType(RedirectsModule.NT_REDIRECT)) {
+                    String siblingKey = cacheKey(sibling);
+                    if (!_urls.containsKey(siblingKey)) {
+                        uncached.putIfAbsent(siblingKey, sibling);
+                    }
+                }
+            }
+        }
+        return uncached;
+    }
+
+    private void resolve(final Map<String, Node> batch) {
+        if (!batch.isEmpty()) {
+            Map<String, String> urls = _redirectsService.createPublicUrls(batch.values());
+            for (Map.Entry<String, Node> entry : batch.entrySet()) {
+                _urls.put(entry.getKey(), urls.get(getNodeIdentifierIfPossible(entry.getValue())));
+            }
+            batch.clear();
+        }
+    }
+
+    private static String cacheKey(final Node node) throws RepositoryException {
+        Calendar lastModified = NodeTypes.LastModified.getLastModified(node);
+        return node.getIdentifier() + (lastModified != null ? "@" + lastModified.getTimeInMillis() : "") + pageKey(node);
+    }
+
+    /**
+     * Path and modification date of the target page, its public url changes with them.
+     */
+    private static String pageKey(final Node node) throws RepositoryException {
+        StringBuilder pageKey = new StringBuilder();
+        for (String pageId : PublicUrlService.getPageIds(List.of(node))) {
+            try {
+                Node page = MgnlContext.getJCRSession(WEBSITE).getNodeByIdentifier(pageId);
+                Calendar lastModified = NodeTypes.LastModified.getLastModified(page);
+                pageKey.append('|').append(page.getPath()).append(lastModified != null ? "@" + lastModified.getTimeInMillis() : "");
+            } catch (ItemNotFoundException e) {
+                pageKey.append('|').append(pageId);
+            }
+        }
+        return pageKey.toString();
     }
 }
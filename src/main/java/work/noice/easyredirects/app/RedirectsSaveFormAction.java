@@ -22,10 +22,12 @@ package work.noice.easyredirects.app;
 
 import com.machinezoo.noexception.Exceptions;
 import com.vaadin.ui.Notification;
+import work.noice.easyredirects.RedirectsModule;
 import work.noice.easyredirects.RedirectsService;
 import info.magnolia.i18nsystem.SimpleTranslator;
 import info.magnolia.jcr.util.NodeNameHelper;
 import info.magnolia.jcr.util.NodeUtil;
+import info.magnolia.module.site.NullSite;
 import info.magnolia.ui.AlertBuilder;
 import info.magnolia.ui.CloseHandler;
 import info.magnolia.ui.ValueContext;
@@ -40,16 +42,33 @@ import info.magnolia.ui.editor.EditorView;
 import info.magnolia.ui.observation.DatasourceObservation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import work.noice.easyredirects.rules.ActivationSchedule;
+import work.noice.easyredirects.rules.PatternAnalysis;
+import work.noice.easyredirects.rules.PatternAnalyzer;
+import work.noice.easyredirects.rules.PatternRule;
+import work.noice.easyredirects.rules.QueryRule;
 
 import jakarta.inject.Inject;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
+import java.util.ArrayList;
 import java.util.List;
 
+import static work.noice.easyredirects.RedirectsService.PN_FROM_URL;
+import static work.noice.easyredirects.RedirectsService.PN_HOST;
+import static work.noice.easyredirects.RedirectsService.PN_PRIORITY;
 import static work.noice.easyredirects.RedirectsService.PN_SITE;
 import static work.noice.easyredirects.RedirectsService.PN_REDIRECT;
+import static work.noice.easyredirects.RedirectsService.PN_USE_PATTERN;
+import static work.noice.easyredirects.RedirectsService.PN_VALID_FROM;
+import static work.noice.easyredirects.RedirectsService.PN_VALID_TO;
 import static info.magnolia.jcr.util.NodeUtil.getNodeIdentifierIfPossible;
+import static info.magnolia.jcr.util.NodeUtil.getPathIfPossible;
+import static info.magnolia.jcr.util.PropertyUtil.getLong;
 import static info.magnolia.jcr.util.PropertyUtil.getString;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.defaultIfEmpty;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 import static org.apache.commons.lang3.StringUtils.stripStart;
 import static org.apache.commons.lang3.StringUtils.trimToEmpty;
 
@@ -68,6 +87,7 @@ public class RedirectsSaveFormAction extends CommitAction<Node> {
     private SimpleTranslator _simpleTranslator;
     private RedirectsService _redirectsService;
     private NodeNameHelper _nodeNameHelper;
+    private RedirectsModule _redirectsModule;
 
     //CHECKSTYLE:OFF
     @Inject
@@ -87,26 +107,106 @@ public class RedirectsSaveFormAction extends CommitAction<Node> {
             getForm().write(node);
 
             String site = getString(node, PN_SITE);
-            String redirect = getString(node, PN_REDIRECT);
-            if (site != null && redirect != null) {
-                List<Node> nodes = _redirectsService.queryForRedirectNodes(redirect, site);
-                String currentIdentifier = getNodeIdentifierIfPossible(node);
+            String fromUrl = RedirectsService.getFromUrl(node);
+            if (site != null && fromUrl != null) {
+                List<Node> nodes = _redirectsService.queryForRedirectNodes(fromUrl, site);
                 for (Node resultNode : nodes) {
-                    if (!currentIdentifier.equals(getNodeIdentifierIfPossible(resultNode))) {
+                    if (isConflicting(node, resultNode)) {
                         isValid = false;
-                        AlertBuilder.alert(_simpleTranslator.translate("actions.commit.failureMessage"))
-                            .withLevel(Notification.Type.WARNING_MESSAGE)
-                            .withBody(_simpleTranslator.translate("redirect.errorMessage.notUnique"))
-                            .withOkButtonCaption(_simpleTranslator.translate("button.ok"))
-                            .buildAndOpen();
                         break;
                     }
                 }
             }
+            QueryRule queryRule = RedirectsService.createQueryRule(node);
+            if (isValid && fromUrl != null && (queryRule == null || !queryRule.hasConditions())) {
+                // variants of the url like /Foo/ and /foo share the canonical lookup key
+                for (Node duplicate : _redirectsService.queryForExactDuplicates(getString(node, PN_HOST), site, fromUrl)) {
+                    isValid &= !isConflicting(node, duplicate);
+                }
+            }
+            if (!isValid) {
+                AlertBuilder.alert(_simpleTranslator.translate("actions.commit.failureMessage"))
+                    .withLevel(Notification.Type.WARNING_MESSAGE)
+                    .withBody(_simpleTranslator.translate("redirect.errorMessage.notUnique"))
+                    .withOkButtonCaption(_simpleTranslator.translate("button.ok"))
+                    .buildAndOpen();
+            }
+            Long validFrom = RedirectsService.getTime(node, PN_VALID_FROM);
+            Long validTo = RedirectsService.getTime(node, PN_VALID_TO);
+            if (isValid && validFrom != null && validTo != null && validTo <= validFrom) {
+                isValid = false;
+                AlertBuilder.alert(_simpleTranslator.translate("actions.commit.failureMessage"))
+                    .withLevel(Notification.Type.WARNING_MESSAGE)
+                    .withBody(_simpleTranslator.translate("redirect.errorMessage.validity"))
+                    .withOkButtonCaption(_simpleTranslator.translate("button.ok"))
+                    .buildAndOpen();
+            }
+            if (isValid && Boolean.parseBoolean(getString(node, PN_USE_PATTERN))) {
+                isValid = validatePattern(node, defaultIfEmpty(site, NullSite.SITE_NAME));
+            }
         }
         return isValid;
     }
 
+    /**
+     * Redirects with the same from url conflict, if their validity windows overlap.
+     */
+    private static boolean isConflicting(final Node node, final Node other) {
+        return other != null && !getNodeIdentifierIfPossible(node).equals(getNodeIdentifierIfPossible(other)) && ActivationSchedule.overlaps(
+            RedirectsService.getTime(node, PN_VALID_FROM), RedirectsService.getTime(node, PN_VALID_TO),
+            RedirectsService.getTime(other, PN_VALID_FROM), RedirectsService.getTime(other, PN_VALID_TO)
+        );
+    }
+
+    /**
+     * Analyzes the pattern of the redirect. Errors (invalid or too expensive patterns) prevent saving,
+     * warnings (super-linear constructs, shadowed patterns) are shown to the editor.
+     */
+    private boolean validatePattern(final Node node, final String site) {
+        boolean isValid = true;
+        String pattern = getString(node, PN_FROM_URL, getString(node, PN_REDIRECT, EMPTY));
+        if (isNotEmpty(pattern)) {
+            // the saved pattern redirects of the workspace, the compiled redirects may be outdated or still compiling,
+            // only patterns matched before this one and exact urls sharing its literal prefix can be shadowing or shadowed
+            String currentPath = getPathIfPossible(node);
+            int priority = getLong(node, PN_PRIORITY, 0L).intValue();
+            List<PatternRule> patternRules = new ArrayList<>();
+            for (PatternRule rule : _redirectsService.queryForPatternRules(site, priority)) {
+                if (!rule.getIdentifier().equals(currentPath)) {
+                    patternRules.add(rule);
+                }
+            }
+
+            PatternAnalyzer analyzer = new PatternAnalyzer(_redirectsModule.getPatternStepBudget());
+            PatternAnalysis analysis = analyzer.analyze(
+                pattern, priority, currentPath, patternRules, _redirectsService.queryForExactRedirectUrls(site, PatternRule.literalPrefix(pattern))
+            );
+            if (analysis.hasErrors()) {
+                isValid = false;
+                openAlert(Notification.Type.ERROR_MESSAGE, "actions.commit.failureMessage", analysis.getErrors());
+            } else if (!analysis.getWarnings().isEmpty()) {
+                LOGGER.info("Saved pattern {} of {} with warnings {}.", pattern, getPathIfPossible(node), analysis.getWarnings());
+                openAlert(Notification.Type.WARNING_MESSAGE, "redirect.pattern.warningCaption", analysis.getWarnings());
+            }
+        }
+        return isValid;
+    }
+
+    private void openAlert(final Notification.Type level, final String captionKey, final List<PatternAnalysis.Finding> findings) {
+        StringBuilder body = new StringBuilder();
+        for (PatternAnalysis.Finding finding : findings) {
+            if (body.length() > 0) {
+                body.append('\n');
+            }
+            body.append(_simpleTranslator.translate(finding.getKey(), finding.getArguments()));
+        }
+        AlertBuilder.alert(_simpleTranslator.translate(captionKey))
+            .withLevel(level)
+            .withBody(body.toString())
+            .withOkButtonCaption(_simpleTranslator.translate("button.ok"))
+            .buildAndOpen();
+    }
+
     @Override
     protected void write() {
         getValueContext().getSingle().ifPresent(Exceptions.wrap().consumer(
@@ -158,5 +258,10 @@ public class RedirectsSaveFormAction extends CommitAction<Node> {
         _nodeNameHelper = nodeNameHelper;
     }
 
+    @Inject
+    public void setRedirectsModule(final RedirectsModule redirectsModule) {
+        _redirectsModule = redirectsModule;
+    }
+
 
 }
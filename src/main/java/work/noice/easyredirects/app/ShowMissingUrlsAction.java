@@ -0,0 +1,129 @@
+package work.noice.easyredirects.app;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Grid;
+import com.vaadin.ui.Notification;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+import com.vaadin.ui.Window;
+import info.magnolia.context.MgnlContext;
+import info.magnolia.i18nsystem.SimpleTranslator;
+import info.magnolia.jcr.util.NodeNameHelper;
+import info.magnolia.ui.api.action.AbstractAction;
+import info.magnolia.ui.api.action.ConfiguredActionDefinition;
+import info.magnolia.ui.api.app.AppContext;
+import info.magnolia.ui.api.location.DefaultLocation;
+import info.magnolia.ui.api.location.LocationController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import work.noice.easyredirects.RedirectsModule;
+import work.noice.easyredirects.stats.MissingUrlTracker;
+import work.noice.easyredirects.stats.MissingUrlTracker.MissingUrl;
+
+import jakarta.inject.Inject;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import static work.noice.easyredirects.RedirectsService.PN_FROM_URL;
+import static work.noice.easyredirects.RedirectsService.PN_SITE;
+import static info.magnolia.ui.api.location.Location.LOCATION_TYPE_APP;
+import static org.apache.commons.lang3.StringUtils.stripStart;
+import static org.apache.commons.lang3.time.DateFormatUtils.format;
+
+/**
+ * Shows the most frequent request urls without redirect of this instance and the configured missing url sources, e.g.
+ * the publics, and creates a redirect with pre-filled from url for a selected entry.
+ */
+public class ShowMissingUrlsAction extends AbstractAction<ConfiguredActionDefinition> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShowMissingUrlsAction.class);
+
+    private static final int MAX_ENTRIES = 100;
+
+    private final AppContext _appContext;
+    private final LocationController _locationController;
+    private MissingUrlTracker _missingUrlTracker;
+    private SimpleTranslator _simpleTranslator;
+    private NodeNameHelper _nodeNameHelper;
+
+    @Inject
+    public ShowMissingUrlsAction(ConfiguredActionDefinition definition, AppContext appContext, LocationController locationController) {
+        super(definition);
+        _appContext = appContext;
+        _locationController = locationController;
+    }
+
+    @Override
+    public void execute() {
+        Window window = new Window(_simpleTranslator.translate("redirects.missingUrls.caption"));
+        window.setModal(true);
+        window.setWidth("900px");
+
+        Grid<MissingUrl> grid = new Grid<>();
+        grid.setWidth("100%");
+        grid.addColumn(MissingUrl::getPath).setCaption(_simpleTranslator.translate("redirects.missingUrls.path")).setExpandRatio(1);
+        grid.addColumn(MissingUrl::getSiteName).setCaption(_simpleTranslator.translate("redirects.missingUrls.site"));
+        grid.addColumn(MissingUrl::getCount).setCaption(_simpleTranslator.translate("redirects.missingUrls.hits"));
+        grid.addColumn(missingUrl -> format(missingUrl.getLastSeen(), "yyyy-MM-dd HH:mm:ss")).setCaption(_simpleTranslator.translate("redirects.missingUrls.lastSeen"));
+        grid.addComponentColumn(missingUrl -> new Button(_simpleTranslator.translate("redirects.missingUrls.createRedirect"), event -> createRedirect(window, missingUrl)));
+        grid.setItems(_missingUrlTracker.collectTopMissingUrls(MAX_ENTRIES));
+
+        VerticalLayout content = new VerticalLayout(grid);
+        window.setContent(content);
+        UI.getCurrent().addWindow(window);
+    }
+
+    private void createRedirect(final Window window, final MissingUrl missingUrl) {
+        try {
+            Session session = MgnlContext.getJCRSession(RedirectsModule.WORKSPACE);
+            Node root = session.getRootNode();
+            String nodeName = _nodeNameHelper.getUniqueName(root, _nodeNameHelper.getValidatedName(stripStart(missingUrl.getPath(), "/")));
+            Node redirectNode = root.addNode(nodeName, RedirectsModule.NT_REDIRECT);
+            redirectNode.setProperty(PN_FROM_URL, missingUrl.getPath());
+            redirectNode.setProperty(PN_SITE, missingUrl.getSiteName());
+            session.save();
+
+            _missingUrlTracker.remove(missingUrl.getSiteName(), missingUrl.getPath());
+            window.close();
+            _locationController.goTo(new DefaultLocation(LOCATION_TYPE_APP, _appContext.getName(), "detail", redirectNode.getPath() + ":edit"));
+        } catch (RepositoryException e) {
+            LOGGER.error("Error creating redirect for missing url {}.", missingUrl.getPath(), e);
+            Notification.show(_simpleTranslator.translate("redirects.missingUrls.createFailed"), Notification.Type.ERROR_MESSAGE);
+        }
+    }
+
+    @Inject
+    public void setMissingUrlTracker(final MissingUrlTracker missingUrlTracker) {
+        _missingUrlTracker = missingUrlTracker;
+    }
+
+    @Inject
+    public void setSimpleTranslator(final SimpleTranslator simpleTranslator) {
+        _simpleTranslator = simpleTranslator;
+    }
+
+    @Inject
+    public void setNodeNameHelper(final NodeNameHelper nodeNameHelper) {
+        _nodeNameHelper = nodeNameHelper;
+    }
+}
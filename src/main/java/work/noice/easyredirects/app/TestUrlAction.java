@@ -0,0 +1,108 @@
+package work.noice.easyredirects.app;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Grid;
+import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Notification;
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+import com.vaadin.ui.Window;
+import info.magnolia.i18nsystem.SimpleTranslator;
+import info.magnolia.objectfactory.Components;
+import info.magnolia.ui.api.action.AbstractAction;
+import info.magnolia.ui.api.action.ConfiguredActionDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import work.noice.easyredirects.VirtualRedirectsUriMapping;
+import work.noice.easyredirects.rules.RedirectTrace;
+
+import jakarta.inject.Inject;
+import java.net.URI;
+import java.util.Locale;
+
+import static org.apache.commons.lang3.StringUtils.prependIfMissing;
+import static org.apache.commons.lang3.StringUtils.stripToNull;
+import static org.apache.commons.lang3.StringUtils.trimToEmpty;
+
+/**
+ * Tests an url against the redirects like a request and shows the trace of the redirect decision:
+ * exclusion, site, exact and pattern lookup with the matched redirect and parameters, and the target url.
+ */
+public class TestUrlAction extends AbstractAction<ConfiguredActionDefinition> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestUrlAction.class);
+
+    private SimpleTranslator _simpleTranslator;
+
+    @Inject
+    public TestUrlAction(ConfiguredActionDefinition definition) {
+        super(definition);
+    }
+
+    @Override
+    public void execute() {
+        Window window = new Window(_simpleTranslator.translate("redirects.testUrl.caption"));
+        window.setModal(true);
+        window.setWidth("900px");
+
+        TextField url = new TextField(_simpleTranslator.translate("redirects.testUrl.url"));
+        url.setWidth("100%");
+        TextField host = new TextField(_simpleTranslator.translate("redirects.testUrl.host"));
+
+        Grid<RedirectTrace.Step> grid = new Grid<>();
+        grid.setWidth("100%");
+        grid.addColumn(RedirectTrace.Step::getPhase).setCaption(_simpleTranslator.translate("redirects.testUrl.phase"));
+        grid.addColumn(RedirectTrace.Step::getDetail).setCaption(_simpleTranslator.translate("redirects.testUrl.result")).setExpandRatio(1);
+        grid.addColumn(step -> String.format(Locale.ROOT, "%.1f", step.getNanos() / 1000.0)).setCaption(_simpleTranslator.translate("redirects.testUrl.micros"));
+
+        Button test = new Button(_simpleTranslator.translate("redirects.testUrl.test"), event -> test(url.getValue(), host.getValue(), grid));
+        HorizontalLayout input = new HorizontalLayout(url, host, test);
+        input.setWidth("100%");
+        input.setExpandRatio(url, 1);
+
+        window.setContent(new VerticalLayout(input, grid));
+        UI.getCurrent().addWindow(window);
+    }
+
+    private void test(final String url, final String host, final Grid<RedirectTrace.Step> grid) {
+        try {
+            URI uri = URI.create(prependIfMissing(trimToEmpty(url), "/"));
+            grid.setItems(getUriMapping().testUri(uri, stripToNull(host)).getSteps());
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Invalid test url {}.", url, e);
+            Notification.show(_simpleTranslator.translate("redirects.testUrl.invalid"), Notification.Type.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * Override for a subclass of the mapping, e.g. with custom redirect url creation.
+     */
+    protected VirtualRedirectsUriMapping getUriMapping() {
+        return Components.newInstance(VirtualRedirectsUriMapping.class);
+    }
+
+    @Inject
+    public void setSimpleTranslator(final SimpleTranslator simpleTranslator) {
+        _simpleTranslator = simpleTranslator;
+    }
+}
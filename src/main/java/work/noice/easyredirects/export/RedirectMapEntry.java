@@ -0,0 +1,60 @@
+package work.noice.easyredirects.export;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Redirect of a web server map: an exact path or a path prefix and the target url.
+ */
+public final class RedirectMapEntry {
+    private final String _from;
+    private final String _target;
+    private final boolean _permanent;
+    private final boolean _prefix;
+
+    /**
+     * @param from      exact path or path prefix
+     * @param target    target url, a prefix redirect may use $1 for the rest of the path
+     * @param permanent true for 301, false for 302
+     * @param prefix    true, if all paths starting with from are redirected
+     */
+    public RedirectMapEntry(final String from, final String target, final boolean permanent, final boolean prefix) {
+        _from = from;
+        _target = target;
+        _permanent = permanent;
+        _prefix = prefix;
+    }
+
+    public String getFrom() {
+        return _from;
+    }
+
+    public String getTarget() {
+        return _target;
+    }
+
+    public boolean isPermanent() {
+        return _permanent;
+    }
+
+    public boolean isPrefix() {
+        return _prefix;
+    }
+}
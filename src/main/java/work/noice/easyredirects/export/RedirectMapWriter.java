@@ -0,0 +1,145 @@
+package work.noice.easyredirects.export;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Formats redirects as nginx map and Apache RewriteMap files and writes them atomically.
+ * <p>
+ * nginx: {@code map $uri $redirect { include site-301.map; }} with {@code if ($redirect) { return 301 $redirect; }}.
+ * Exact paths are written as strings, prefixes as regex. nginx checks the strings before the regex, like the exact
+ * redirects are matched before the patterns. Targets with $ are left out, nginx would read them as variables.
+ * </p>
+ * <p>
+ * Apache: {@code RewriteMap redirects301 txt:site-301.txt} with
+ * {@code RewriteCond ${redirects301:%{REQUEST_URI}} !=""} and {@code RewriteRule ^ ${redirects301:%{REQUEST_URI}} [R=301,L]}.
+ * Text maps only support exact keys without whitespace, use httxt2dbm for the dbm format.
+ * </p>
+ */
+public final class RedirectMapWriter {
+    static final String HEADER = "# Generated by easyredirects, changes are overwritten.\n";
+    private static final String REGEX_META = "\\.[]{}()*+?^$|";
+
+    private RedirectMapWriter() {
+    }
+
+    /**
+     * @param entries redirects in matching order
+     * @return content of an nginx map include file
+     */
+    public static String toNginxMap(final List<RedirectMapEntry> entries) {
+        StringBuilder map = new StringBuilder(HEADER);
+        for (RedirectMapEntry entry : sortExactFirst(entries)) {
+            if (entry.getTarget().indexOf('$') < 0) {
+                String key = entry.isPrefix() ? "~^" + escapeRegex(entry.getFrom()) : entry.getFrom();
+                map.append(quote(key)).append(' ').append(quote(entry.getTarget())).append(";\n");
+            }
+        }
+        return map.toString();
+    }
+
+    /**
+     * @param entries redirects in matching order
+     * @return content of an Apache RewriteMap text file, prefixes and keys with whitespace are left out
+     */
+    public static String toApacheMap(final List<RedirectMapEntry> entries) {
+        StringBuilder map = new StringBuilder(HEADER);
+        for (RedirectMapEntry entry : sortExactFirst(entries)) {
+            if (!entry.isPrefix() && !containsWhitespace(entry.getFrom()) && !containsWhitespace(entry.getTarget())) {
+                map.append(entry.getFrom()).append(' ').append(entry.getTarget()).append('\n');
+            }
+        }
+        return map.toString();
+    }
+
+    /**
+     * Writes the file by moving a temporary file of the same directory, so the web server never reads a partial file.
+     *
+     * @param file    target file
+     * @param content file content
+     * @return false, if the file already had this content and was not written
+     * @throws IOException on write errors
+     */
+    public static boolean writeAtomically(final Path file, final String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        boolean changed = !Files.exists(file) || !Arrays.equals(Files.readAllBytes(file), bytes);
+        if (changed) {
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, bytes);
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Exact paths sorted for a stable file content, then the prefixes in matching order.
+     * The first entry of a path wins, like in the compiled redirects.
+     */
+    private static List<RedirectMapEntry> sortExactFirst(final List<RedirectMapEntry> entries) {
+        Map<String, RedirectMapEntry> exact = new TreeMap<>();
+        Map<String, RedirectMapEntry> prefixes = new LinkedHashMap<>();
+        for (RedirectMapEntry entry : entries) {
+            (entry.isPrefix() ? prefixes : exact).putIfAbsent(entry.getFrom(), entry);
+        }
+        List<RedirectMapEntry> sorted = new ArrayList<>(exact.values());
+        sorted.addAll(prefixes.values());
+        return sorted;
+    }
+
+    private static String quote(final String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private static String escapeRegex(final String value) {
+        StringBuilder escaped = new StringBuilder();
+        for (char current : value.toCharArray()) {
+            if (REGEX_META.indexOf(current) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(current);
+        }
+        return escaped.toString();
+    }
+
+    private static boolean containsWhitespace(final String value) {
+        return value.chars().anyMatch(Character::isWhitespace);
+    }
+}
@@ -0,0 +1,37 @@
+package work.noice.easyredirects.purge;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+/**
+ * Purges cached redirect responses in a CDN. Configured as cdnPurger in the module configuration.
+ */
+public interface CdnPurger {
+
+    /**
+     * Purges a batch. Failed batches are retried with backoff.
+     *
+     * @param batch surrogate keys and paths to purge
+     * @throws IOException if the CDN didn't accept the purge
+     */
+    void purge(PurgeBatch batch) throws IOException;
+}
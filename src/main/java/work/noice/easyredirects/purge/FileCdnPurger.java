@@ -0,0 +1,56 @@
+package work.noice.easyredirects.purge;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Appends the purges to a local file instead of calling a CDN, for testing the purge configuration.
+ */
+public class FileCdnPurger implements CdnPurger {
+    private String _file;
+
+    @Override
+    public synchronized void purge(final PurgeBatch batch) throws IOException {
+        StringBuilder line = new StringBuilder(Instant.now().toString());
+        if (batch.isAll()) {
+            line.append(" all");
+        } else {
+            line.append(" keys=").append(String.join(",", batch.getSurrogateKeys()));
+            line.append(" paths=").append(String.join(",", batch.getPaths()));
+        }
+        line.append('\n');
+        Files.writeString(Path.of(_file), line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public String getFile() {
+        return _file;
+    }
+
+    public void setFile(String file) {
+        _file = file;
+    }
+}
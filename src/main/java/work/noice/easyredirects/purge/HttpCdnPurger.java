@@ -0,0 +1,128 @@
+package work.noice.easyredirects.purge;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import work.noice.easyredirects.rules.CachePolicy;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Posts the purges as JSON to an url, e.g. a purge endpoint of the CDN or a small adapter service:
+ * {@code {"all":false,"surrogateKeys":["redirect-..."],"paths":["/old"]}}.
+ * A purge of all redirects sends the group key of all redirect responses.
+ */
+public class HttpCdnPurger implements CdnPurger {
+    private String _url;
+    private Map<String, String> _headers;
+    private long _timeout = 10000L;
+    private volatile HttpClient _client;
+
+    @Override
+    public void purge(final PurgeBatch batch) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(_url))
+            .timeout(Duration.ofMillis(_timeout))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(toJson(batch)));
+        getHeaders().forEach(request::header);
+        try {
+            HttpResponse<Void> response = getClient().send(request.build(), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Purge of " + batch + " failed with status " + response.statusCode() + ".");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Purge of " + batch + " interrupted.", e);
+        }
+    }
+
+    static String toJson(final PurgeBatch batch) {
+        Collection<String> surrogateKeys = batch.isAll() ? List.of(CachePolicy.SURROGATE_KEY_ALL) : batch.getSurrogateKeys();
+        return "{\"all\":" + batch.isAll() + ",\"surrogateKeys\":" + toJson(surrogateKeys) + ",\"paths\":" + toJson(batch.getPaths()) + "}";
+    }
+
+    private static String toJson(final Collection<String> values) {
+        StringBuilder json = new StringBuilder("[");
+        for (String value : values) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"');
+            for (char current : value.toCharArray()) {
+                if (current == '"' || current == '\\') {
+                    json.append('\\').append(current);
+                } else if (current < 0x20) {
+                    json.append(String.format("\\u%04x", (int) current));
+                } else {
+                    json.append(current);
+                }
+            }
+            json.append('"');
+        }
+        return json.append(']').toString();
+    }
+
+    private HttpClient getClient() {
+        if (_client == null) {
+            _client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(_timeout)).build();
+        }
+        return _client;
+    }
+
+    public String getUrl() {
+        return _url;
+    }
+
+    public void setUrl(String url) {
+        _url = url;
+    }
+
+    /**
+     * Additional request headers, e.g. the api token of the CDN.
+     */
+    public Map<String, String> getHeaders() {
+        return _headers == null ? Collections.emptyMap() : _headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        _headers = headers;
+    }
+
+    /**
+     * Connect and request timeout in milliseconds.
+     */
+    public long getTimeout() {
+        return _timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        _timeout = timeout;
+        _client = null;
+    }
+}
@@ -0,0 +1,76 @@
+package work.noice.easyredirects.purge;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Surrogate keys and paths purged in one CDN request.
+ */
+public class PurgeBatch {
+    private final Set<String> _surrogateKeys;
+    private final Set<String> _paths;
+    private final boolean _all;
+    private final int _attempt;
+
+    public PurgeBatch(final Set<String> surrogateKeys, final Set<String> paths, final boolean all, final int attempt) {
+        _surrogateKeys = Collections.unmodifiableSet(new LinkedHashSet<>(surrogateKeys));
+        _paths = Collections.unmodifiableSet(new LinkedHashSet<>(paths));
+        _all = all;
+        _attempt = attempt;
+    }
+
+    public Set<String> getSurrogateKeys() {
+        return _surrogateKeys;
+    }
+
+    /**
+     * @return request paths of added or changed exact redirects, their cached responses are pages without surrogate key
+     */
+    public Set<String> getPaths() {
+        return _paths;
+    }
+
+    /**
+     * @return true, if all redirects are purged by the group key instead of the single keys, e.g. after an import
+     */
+    public boolean isAll() {
+        return _all;
+    }
+
+    /**
+     * @return number of failed attempts of this batch
+     */
+    public int getAttempt() {
+        return _attempt;
+    }
+
+    public boolean isEmpty() {
+        return !_all && _surrogateKeys.isEmpty() && _paths.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return _all ? "all redirects" : _surrogateKeys.size() + " keys and " + _paths.size() + " paths";
+    }
+}
@@ -0,0 +1,114 @@
+package work.noice.easyredirects.purge;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Deduplicating queue of pending purges. Changes of the same redirect are purged once, a burst of changes is
+ * drained in batches and above a threshold replaced by one purge of all redirects.
+ * Failed batches are put back and merged with the purges queued meanwhile.
+ */
+public class PurgeQueue {
+    private final Set<String> _surrogateKeys = new LinkedHashSet<>();
+    private final Set<String> _paths = new LinkedHashSet<>();
+    private boolean _all;
+    private int _attempt;
+
+    public synchronized void add(final Collection<String> surrogateKeys, final Collection<String> paths) {
+        _surrogateKeys.addAll(surrogateKeys);
+        _paths.addAll(paths);
+    }
+
+    /**
+     * Purges all redirects with the next batch.
+     */
+    public synchronized void addAll() {
+        _all = true;
+    }
+
+    public synchronized void clear() {
+        _surrogateKeys.clear();
+        _paths.clear();
+        _all = false;
+        _attempt = 0;
+    }
+
+    /**
+     * Takes the next batch.
+     *
+     * @param batchSize         maximum number of keys and paths of a batch
+     * @param purgeAllThreshold more pending keys and paths are purged at once by the group key
+     * @return batch, empty if nothing is pending
+     */
+    public synchronized PurgeBatch drain(final int batchSize, final int purgeAllThreshold) {
+        PurgeBatch batch;
+        if (_all || _surrogateKeys.size() + _paths.size() > purgeAllThreshold) {
+            batch = new PurgeBatch(Set.of(), Set.of(), true, _attempt);
+            _surrogateKeys.clear();
+            _paths.clear();
+            _all = false;
+        } else {
+            int size = Math.max(1, batchSize);
+            Set<String> surrogateKeys = take(_surrogateKeys, size);
+            batch = new PurgeBatch(surrogateKeys, take(_paths, size - surrogateKeys.size()), false, _attempt);
+        }
+        if (isEmpty()) {
+            _attempt = 0;
+        }
+        return batch;
+    }
+
+    /**
+     * Puts a failed batch back.
+     *
+     * @param batch failed batch
+     * @return attempt of the next try
+     */
+    public synchronized int retry(final PurgeBatch batch) {
+        _surrogateKeys.addAll(batch.getSurrogateKeys());
+        _paths.addAll(batch.getPaths());
+        _all |= batch.isAll();
+        _attempt = Math.max(_attempt, batch.getAttempt() + 1);
+        return _attempt;
+    }
+
+    public synchronized boolean isEmpty() {
+        return !_all && _surrogateKeys.isEmpty() && _paths.isEmpty();
+    }
+
+    public synchronized int size() {
+        return _surrogateKeys.size() + _paths.size();
+    }
+
+    private static Set<String> take(final Set<String> values, final int count) {
+        Set<String> taken = new LinkedHashSet<>();
+        Iterator<String> iterator = values.iterator();
+        while (taken.size() < count && iterator.hasNext()) {
+            taken.add(iterator.next());
+            iterator.remove();
+        }
+        return taken;
+    }
+}
@@ -0,0 +1,80 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Validity windows of the redirects at compile time. Collects the next time a window opens or closes,
+ * so the compiled redirects can be refreshed at this boundary instead of comparing dates per request.
+ */
+public final class ActivationSchedule {
+    public static final long NONE = Long.MAX_VALUE;
+
+    private final long _now;
+    private long _nextBoundary = NONE;
+
+    /**
+     * @param now compile time in milliseconds
+     */
+    public ActivationSchedule(final long now) {
+        _now = now;
+    }
+
+    /**
+     * Checks if a redirect is active at compile time and records its future boundaries.
+     *
+     * @param validFrom start of the window in milliseconds (inclusive), null for no start
+     * @param validTo   end of the window in milliseconds (exclusive), null for no end
+     * @return true, if the redirect is active
+     */
+    public boolean add(final Long validFrom, final Long validTo) {
+        if (validFrom != null && validFrom > _now && (validTo == null || validFrom < validTo)) {
+            _nextBoundary = Math.min(_nextBoundary, validFrom);
+        }
+        if (validTo != null && validTo > _now) {
+            _nextBoundary = Math.min(_nextBoundary, validTo);
+        }
+        return isActive(validFrom, validTo, _now);
+    }
+
+    /**
+     * @return next time a window opens or closes in milliseconds, {@link #NONE} if no window changes
+     */
+    public long getNextBoundary() {
+        return _nextBoundary;
+    }
+
+    /**
+     * @param validFrom start of the window in milliseconds (inclusive), null for no start
+     * @param validTo   end of the window in milliseconds (exclusive), null for no end
+     * @param now       time in milliseconds
+     * @return true, if the time is in the window
+     */
+    public static boolean isActive(final Long validFrom, final Long validTo, final long now) {
+        return (validFrom == null || validFrom <= now) && (validTo == null || now < validTo);
+    }
+
+    /**
+     * @return true, if the two windows share a time, null values are open ends
+     */
+    public static boolean overlaps(final Long validFrom, final Long validTo, final Long otherFrom, final Long otherTo) {
+        return (validFrom == null || otherTo == null || validFrom < otherTo) && (otherFrom == null || validTo == null || otherFrom < validTo);
+    }
+}
@@ -0,0 +1,94 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Char sequence counting the character reads of a regex matcher. {@link java.util.regex.Matcher} reads the input
+ * through {@link #charAt(int)} for every step, so the count bounds the work of backtracking patterns.
+ */
+class BudgetedCharSequence implements CharSequence {
+    private final String _value;
+    private final int _offset;
+    private final int _length;
+    private final Budget _budget;
+
+    BudgetedCharSequence(final String value, final long steps) {
+        this(value, 0, value.length(), new Budget(steps));
+    }
+
+    private BudgetedCharSequence(final String value, final int offset, final int length, final Budget budget) {
+        _value = value;
+        _offset = offset;
+        _length = length;
+        _budget = budget;
+    }
+
+    @Override
+    public int length() {
+        return _length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (--_budget._remaining < 0) {
+            throw new PatternBudgetExceededException(_budget._steps);
+        }
+        return _value.charAt(_offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return new BudgetedCharSequence(_value, _offset + start, end - start, _budget);
+    }
+
+    /**
+     * @return number of character reads so far, shared with all sub sequences
+     */
+    long getReads() {
+        return _budget._steps - Math.max(_budget._remaining, 0);
+    }
+
+    @Override
+    public String toString() {
+        return _value.substring(_offset, _offset + _length);
+    }
+
+    private static final class Budget {
+        private final long _steps;
+        private long _remaining;
+
+        private Budget(final long steps) {
+            _steps = steps;
+            _remaining = steps;
+        }
+    }
+
+    /**
+     * Thrown if a regex evaluation exceeds its step budget.
+     */
+    static class PatternBudgetExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        PatternBudgetExceededException(final long steps) {
+            super("Pattern evaluation exceeded the budget of " + steps + " steps.", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cache headers of redirect responses, so a CDN or browser can answer repeated requests of an old url.
+ * Configured per redirect type in the module configuration, the max ages can be overridden per redirect.
+ * Values are seconds, unset values are left out of the Cache-Control header.
+ */
+public class CachePolicy {
+    /**
+     * Group key of all redirect responses, for purging all redirects at once.
+     */
+    public static final String SURROGATE_KEY_ALL = "redirects";
+    private static final String SURROGATE_KEY_PREFIX = "redirect-";
+
+    private Long _maxAge;
+    private Long _sharedMaxAge;
+    private Long _staleWhileRevalidate;
+    private Long _staleIfError;
+    private boolean _surrogateKey = true;
+
+    /**
+     * Copy with the max ages of a redirect.
+     *
+     * @param maxAge       max age of the redirect or null for the max age of this policy
+     * @param sharedMaxAge shared max age of the redirect or null for the shared max age of this policy
+     * @return policy of the redirect
+     */
+    public CachePolicy override(final Long maxAge, final Long sharedMaxAge) {
+        CachePolicy policy = new CachePolicy();
+        policy.setMaxAge(maxAge != null ? maxAge : _maxAge);
+        policy.setSharedMaxAge(sharedMaxAge != null ? sharedMaxAge : _sharedMaxAge);
+        policy.setStaleWhileRevalidate(_staleWhileRevalidate);
+        policy.setStaleIfError(_staleIfError);
+        policy.setSurrogateKey(_surrogateKey);
+        return policy;
+    }
+
+    /**
+     * Cache-Control header value. The max ages are limited to the remaining validity of the redirect,
+     * so caches don't answer an expired redirect.
+     *
+     * @param remaining seconds until the redirect expires or null, if it doesn't expire
+     * @return header value or null, if nothing is configured
+     */
+    public String toCacheControl(final Long remaining) {
+        List<String> directives = new ArrayList<>();
+        if (_maxAge != null || _sharedMaxAge != null) {
+            directives.add("public");
+        }
+        addDirective(directives, "max-age", limit(_maxAge, remaining));
+        addDirective(directives, "s-maxage", limit(_sharedMaxAge, remaining));
+        if (remaining == null) {
+            addDirective(directives, "stale-while-revalidate", _staleWhileRevalidate);
+            addDirective(directives, "stale-if-error", _staleIfError);
+        }
+        return directives.isEmpty() ? null : String.join(", ", directives);
+    }
+
+    /**
+     * @param identifier identifier of the redirect node
+     * @return surrogate key of the responses of a redirect
+     */
+    public static String getSurrogateKey(final String identifier) {
+        return SURROGATE_KEY_PREFIX + identifier;
+    }
+
+    /**
+     * @param identifier identifier of the redirect node
+     * @param separator  separator of the keys in the header, e.g. a space or comma depending on the CDN
+     * @return header value with the group key and the key of the redirect
+     */
+    public static String getSurrogateKeys(final String identifier, final String separator) {
+        return SURROGATE_KEY_ALL + separator + getSurrogateKey(identifier);
+    }
+
+    private static Long limit(final Long value, final Long remaining) {
+        Long limited = value;
+        if (value != null && remaining != null) {
+            limited = Math.max(0, Math.min(value, remaining));
+        }
+        return limited;
+    }
+
+    private static void addDirective(final List<String> directives, final String name, final Long value) {
+        if (value != null && value >= 0) {
+            directives.add(name + "=" + value);
+        }
+    }
+
+    public Long getMaxAge() {
+        return _maxAge;
+    }
+
+    public void setMaxAge(Long maxAge) {
+        _maxAge = maxAge;
+    }
+
+    public Long getSharedMaxAge() {
+        return _sharedMaxAge;
+    }
+
+    public void setSharedMaxAge(Long sharedMaxAge) {
+        _sharedMaxAge = sharedMaxAge;
+    }
+
+    public Long getStaleWhileRevalidate() {
+        return _staleWhileRevalidate;
+    }
+
+    public void setStaleWhileRevalidate(Long staleWhileRevalidate) {
+        _staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public Long getStaleIfError() {
+        return _staleIfError;
+    }
+
+    public void setStaleIfError(Long staleIfError) {
+        _staleIfError = staleIfError;
+    }
+
+    /**
+     * Whether the response is tagged with the surrogate key of the redirect for purging.
+     */
+    public boolean isSurrogateKey() {
+        return _surrogateKey;
+    }
+
+    public void setSurrogateKey(boolean surrogateKey) {
+        _surrogateKey = surrogateKey;
+    }
+}
@@ -0,0 +1,71 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Exact redirects in primitive arrays for very large redirect sets, e.g. a million urls of migrations.
+ * The keys are front coded ({@link FrontCodedKeys}), the candidates are stored in {@link ExactRuleArrays}.
+ * Lookups are a binary search instead of a hash lookup, the candidates are created per lookup.
+ */
+final class CompactExactRuleIndex implements ExactRuleIndex {
+    private final FrontCodedKeys _keys;
+    private final int[] _offsets;
+    private final ExactRuleArrays _candidates;
+
+    CompactExactRuleIndex(final Map<String, ExactRule[]> rules) {
+        TreeMap<String, ExactRule[]> sorted = new TreeMap<>(rules);
+        List<ExactRule> candidates = new ArrayList<>();
+        _offsets = new int[sorted.size() + 1];
+        int key = 0;
+        for (ExactRule[] keyCandidates : sorted.values()) {
+            _offsets[key++] = candidates.size();
+            candidates.addAll(List.of(keyCandidates));
+        }
+        _offsets[key] = candidates.size();
+        _keys = new FrontCodedKeys(new ArrayList<>(sorted.keySet()));
+        _candidates = new ExactRuleArrays(candidates);
+    }
+
+    @Override
+    public ExactRule[] get(final String key) {
+        int index = _keys.indexOf(key);
+        return index >= 0 ? _candidates.get(_offsets[index], _offsets[index + 1]) : null;
+    }
+
+    @Override
+    public int size() {
+        return _keys.size();
+    }
+
+    @Override
+    public long estimateOffHeapBytes() {
+        return 0;
+    }
+
+    @Override
+    public long estimateBytes() {
+        return _keys.estimateBytes() + 16L + 4L * _offsets.length + _candidates.estimateBytes();
+    }
+}
@@ -0,0 +1,260 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import work.noice.easyredirects.rules.BudgetedCharSequence.PatternBudgetExceededException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matcher specialized for one simple pattern (literals, path parameters and wildcards) without regex engine.
+ * The pattern is compiled into a chain of steps: literal comparisons, path parameters up to the next slash and
+ * wildcards, each calling the next step directly. Parameters and wildcards backtrack longest first like the regex of
+ * {@link PatternRule#toRegex(String)}, so both find the same match and the same parameters.
+ * <p>
+ * Every backtracking step counts against the step budget of the rule.
+ * </p>
+ */
+final class CompiledPattern {
+    private final Step _first;
+    private final String[] _parameterNames;
+
+    private CompiledPattern(final Step first, final String[] parameterNames) {
+        _first = first;
+        _parameterNames = parameterNames;
+    }
+
+    /**
+     * Compiles a simple pattern.
+     *
+     * @param pattern    simple pattern, see {@link PatternRule#isRegex(String)}
+     * @param ignoreCase true to compare the literals ignoring the case
+     * @return matcher or null, if the pattern can't be specialized (e.g. non-ASCII literals ignoring the case)
+     */
+    static CompiledPattern compile(final String pattern, final boolean ignoreCase) {
+        if (PatternRule.isRegex(pattern)) {
+            return null;
+        }
+        List<Object> tokens = new ArrayList<>();
+        List<String> parameterNames = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char current = pattern.charAt(i);
+            if (current == '*' || current == '{') {
+                if (literal.length() > 0) {
+                    tokens.add(literal.toString());
+                    literal.setLength(0);
+                }
+                if (current == '*') {
+                    tokens.add(Wildcard.class);
+                } else {
+                    int end = pattern.indexOf('}', i);
+                    if (end < 0) {
+                        return null;
+                    }
+                    tokens.add(parameterNames.size());
+                    parameterNames.add(pattern.substring(i + 1, end));
+                    i = end;
+                }
+            } else if (ignoreCase && current > 127) {
+                return null;
+            } else {
+                literal.append(current);
+            }
+        }
+        if (literal.length() > 0) {
+            tokens.add(literal.toString());
+        }
+
+        Step step = new End();
+        for (int i = tokens.size() - 1; i >= 0; i--) {
+            Object token = tokens.get(i);
+            if (token instanceof String) {
+                step = new Literal((String) token, ignoreCase, step);
+            } else if (token instanceof Integer) {
+                step = new Parameter((Integer) token, step);
+            } else {
+                step = new Wildcard(step);
+            }
+        }
+        return new CompiledPattern(step, parameterNames.toArray(new String[0]));
+    }
+
+    /**
+     * Matches a request url and extracts the parameters by name and by number.
+     *
+     * @param url        request url
+     * @param stepBudget maximum number of backtracking steps
+     * @return parameters or null, if the url doesn't match
+     * @throws PatternBudgetExceededException if the budget is exceeded
+     */
+    Map<String, String> match(final String url, final long stepBudget) {
+        Map<String, String> params = null;
+        Context context = new Context(url, _parameterNames.length, stepBudget);
+        if (_first.match(context, 0)) {
+            params = new HashMap<>();
+            for (int i = 0; i < _parameterNames.length; i++) {
+                String value = url.substring(context._starts[i], context._ends[i]);
+                params.put(String.valueOf(i + 1), value);
+                params.put(_parameterNames[i], value);
+            }
+        }
+        return params;
+    }
+
+    private static final class Context {
+        private final String _url;
+        private final int[] _starts;
+        private final int[] _ends;
+        private final long _steps;
+        private long _remaining;
+
+        private Context(final String url, final int parameters, final long steps) {
+            _url = url;
+            _starts = new int[parameters];
+            _ends = new int[parameters];
+            _steps = steps;
+            _remaining = steps;
+        }
+
+        private void step() {
+            if (--_remaining < 0) {
+                throw new PatternBudgetExceededException(_steps);
+            }
+        }
+    }
+
+    private abstract static class Step {
+        /**
+         * @return true, if this and the following steps match the url from the position to its end
+         */
+        abstract boolean match(Context context, int position);
+    }
+
+    private static final class End extends Step {
+        @Override
+        boolean match(final Context context, final int position) {
+            return position == context._url.length();
+        }
+    }
+
+    private static final class Literal extends Step {
+        private final String _literal;
+        private final boolean _ignoreCase;
+        private final Step _next;
+
+        private Literal(final String literal, final boolean ignoreCase, final Step next) {
+            _literal = literal;
+            _ignoreCase = ignoreCase;
+            _next = next;
+        }
+
+        @Override
+        boolean match(final Context context, final int position) {
+            return context._url.regionMatches(_ignoreCase, position, _literal, 0, _literal.length()) && _next.match(context, position + _literal.length());
+        }
+
+        /**
+         * @return true, if the literal is the end of the pattern
+         */
+        private boolean isSuffix() {
+            return _next instanceof End;
+        }
+    }
+
+    /**
+     * Path parameter: one or more characters except the slash, longest first.
+     */
+    private static final class Parameter extends Step {
+        private final int _index;
+        private final Step _next;
+        private final boolean _wholeSegment;
+
+        private Parameter(final int index, final Step next) {
+            _index = index;
+            _next = next;
+            // followed by a slash or the end, the parameter can only end at the end of the segment
+            _wholeSegment = next instanceof End || next instanceof Literal && ((Literal) next)._literal.charAt(0) == '/';
+        }
+
+        @Override
+        boolean match(final Context context, final int position) {
+            String url = context._url;
+            int segmentEnd = url.indexOf('/', position);
+            if (segmentEnd < 0) {
+                segmentEnd = url.length();
+            }
+            int last = _wholeSegment ? segmentEnd : position + 1;
+            for (int end = segmentEnd; end >= last && end > position; end--) {
+                context.step();
+                if (_next.match(context, end)) {
+                    context._starts[_index] = position;
+                    context._ends[_index] = end;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Wildcard: any characters except line terminators, longest first.
+     */
+    private static final class Wildcard extends Step {
+        private final Step _next;
+
+        private Wildcard(final Step next) {
+            _next = next;
+        }
+
+        @Override
+        boolean match(final Context context, final int position) {
+            String url = context._url;
+            int limit = position;
+            while (limit < url.length() && !isLineTerminator(url.charAt(limit))) {
+                limit++;
+            }
+            if (_next instanceof End || _next instanceof Literal && ((Literal) _next).isSuffix()) {
+                // the rest of the pattern has a fixed length
+                int end = url.length() - (_next instanceof Literal ? ((Literal) _next)._literal.length() : 0);
+                context.step();
+                return end >= position && end <= limit && _next.match(context, end);
+            }
+            for (int end = limit; end >= position; end--) {
+                context.step();
+                if (_next.match(context, end)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Line terminators of {@link java.util.regex.Pattern}, which the regex dot doesn't match.
+         */
+        private static boolean isLineTerminator(final char c) {
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+    }
+}
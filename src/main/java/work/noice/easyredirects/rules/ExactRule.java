@@ -0,0 +1,56 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Map;
+
+/**
+ * Exact redirect of an url: the identifier of the redirect node and its query conditions.
+ */
+final class ExactRule {
+    private final String _identifier;
+    private final QueryRule _queryRule;
+
+    ExactRule(final String identifier, final QueryRule queryRule) {
+        _identifier = identifier;
+        _queryRule = queryRule;
+    }
+
+    String getIdentifier() {
+        return _identifier;
+    }
+
+    QueryRule getQueryRule() {
+        return _queryRule;
+    }
+
+    boolean hasConditions() {
+        return _queryRule != null && _queryRule.hasConditions();
+    }
+
+    RuleMatch match(final ParsedQuery query) {
+        RuleMatch match = null;
+        Map<String, String> params = _queryRule != null ? _queryRule.match(query) : null;
+        if (_queryRule == null || params != null) {
+            match = new RuleMatch(_identifier, params == null || params.isEmpty() ? null : params, _queryRule);
+        }
+        return match;
+    }
+}
@@ -0,0 +1,102 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Candidates of the exact redirects in primitive arrays, shared by the indexes of very large redirect sets.
+ * Node identifiers are stored as two longs, if all are UUIDs, query rules only if any candidate has one.
+ */
+final class ExactRuleArrays {
+    private final long[] _identifierBits;
+    private final String[] _identifiers;
+    private final QueryRule[] _queryRules;
+
+    ExactRuleArrays(final List<ExactRule> candidates) {
+        boolean uuids = candidates.stream().allMatch(rule -> isUuid(rule.getIdentifier()));
+        _identifierBits = uuids ? new long[candidates.size() * 2] : null;
+        _identifiers = uuids ? null : new String[candidates.size()];
+        boolean queryRules = candidates.stream().anyMatch(rule -> rule.getQueryRule() != null);
+        _queryRules = queryRules ? new QueryRule[candidates.size()] : null;
+        for (int i = 0; i < candidates.size(); i++) {
+            ExactRule rule = candidates.get(i);
+            if (uuids) {
+                UUID uuid = UUID.fromString(rule.getIdentifier());
+                _identifierBits[2 * i] = uuid.getMostSignificantBits();
+                _identifierBits[2 * i + 1] = uuid.getLeastSignificantBits();
+            } else {
+                _identifiers[i] = rule.getIdentifier();
+            }
+            if (queryRules) {
+                _queryRules[i] = rule.getQueryRule();
+            }
+        }
+    }
+
+    /**
+     * Creates the candidates of a range.
+     *
+     * @param start first candidate
+     * @param end   candidate after the last
+     * @return candidates
+     */
+    ExactRule[] get(final int start, final int end) {
+        ExactRule[] candidates = new ExactRule[end - start];
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = new ExactRule(getIdentifier(start + i), _queryRules != null ? _queryRules[start + i] : null);
+        }
+        return candidates;
+    }
+
+    long estimateBytes() {
+        long bytes = 0;
+        if (_identifierBits != null) {
+            bytes += 16L + 8L * _identifierBits.length;
+        } else {
+            for (String identifier : _identifiers) {
+                bytes += 4L + 40L + identifier.length();
+            }
+        }
+        if (_queryRules != null) {
+            bytes += 16L + 4L * _queryRules.length;
+        }
+        return bytes;
+    }
+
+    private String getIdentifier(final int candidate) {
+        return _identifierBits != null ? new UUID(_identifierBits[2 * candidate], _identifierBits[2 * candidate + 1]).toString() : _identifiers[candidate];
+    }
+
+    /**
+     * Only identifiers in the canonical form are stored as bits, so the lookup returns the same identifier.
+     */
+    static boolean isUuid(final String identifier) {
+        boolean uuid = identifier != null && identifier.length() == 36;
+        try {
+            uuid = uuid && UUID.fromString(identifier).toString().equals(identifier);
+        } catch (IllegalArgumentException e) {
+            uuid = false;
+        }
+        return uuid;
+    }
+}
@@ -0,0 +1,48 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+/**
+ * Exact redirects of a partition by lookup key. Every key has a list of candidates: the rules with query conditions
+ * in the order they were added, then the first rule without query conditions.
+ */
+interface ExactRuleIndex {
+
+    /**
+     * @param key lookup key
+     * @return candidates in matching order or null, if no redirect has this key
+     */
+    ExactRule[] get(String key);
+
+    /**
+     * @return number of keys
+     */
+    int size();
+
+    /**
+     * @return estimated heap size in bytes, for planning the heap of very large redirect sets
+     */
+    long estimateBytes();
+
+    /**
+     * @return bytes allocated outside of the heap
+     */
+    long estimateOffHeapBytes();
+}
@@ -0,0 +1,152 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorted dictionary of lookup keys with front coding: the keys are stored in blocks, the first key of a block
+ * as string, the following keys as length of the prefix shared with the previous key and the UTF-8 bytes of
+ * the rest. Urls of a migration share long prefixes, so the dictionary needs a fraction of the heap of strings.
+ * A lookup is a binary search over the first keys and a scan of one block.
+ */
+final class FrontCodedKeys {
+    static final int BLOCK_SIZE = 16;
+
+    private final String[] _firstKeys;
+    private final int[] _blockOffsets;
+    private final byte[] _data;
+    private final int _size;
+
+    /**
+     * @param sortedKeys distinct keys in natural order
+     */
+    FrontCodedKeys(final List<String> sortedKeys) {
+        _size = sortedKeys.size();
+        int blocks = (_size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        _firstKeys = new String[blocks];
+        _blockOffsets = new int[blocks];
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        String previous = null;
+        for (int i = 0; i < _size; i++) {
+            String key = sortedKeys.get(i);
+            if (i % BLOCK_SIZE == 0) {
+                _firstKeys[i / BLOCK_SIZE] = key;
+                _blockOffsets[i / BLOCK_SIZE] = data.size();
+            } else {
+                int prefix = commonPrefix(previous, key);
+                byte[] suffix = key.substring(prefix).getBytes(StandardCharsets.UTF_8);
+                writeVarInt(data, prefix);
+                writeVarInt(data, suffix.length);
+                data.write(suffix, 0, suffix.length);
+            }
+            previous = key;
+        }
+        _data = data.toByteArray();
+    }
+
+    /**
+     * @param key lookup key
+     * @return ordinal of the key in the sorted keys or -1, if it is not contained
+     */
+    int indexOf(final String key) {
+        int block = Arrays.binarySearch(_firstKeys, key);
+        int index = -1;
+        if (block >= 0) {
+            index = block * BLOCK_SIZE;
+        } else if (block < -1) {
+            index = scanBlock(-block - 2, key);
+        }
+        return index;
+    }
+
+    int size() {
+        return _size;
+    }
+
+    long estimateBytes() {
+        long bytes = 16L + _data.length + 16L + 4L * _blockOffsets.length + 16L + 4L * _firstKeys.length;
+        for (String firstKey : _firstKeys) {
+            bytes += 40L + firstKey.length();
+        }
+        return bytes;
+    }
+
+    private int scanBlock(final int block, final String key) {
+        int index = -1;
+        int end = Math.min(BLOCK_SIZE, _size - block * BLOCK_SIZE);
+        int[] position = {_blockOffsets[block]};
+        StringBuilder current = new StringBuilder(_firstKeys[block]);
+        for (int i = 1; i < end && index < 0; i++) {
+            int prefix = readVarInt(position);
+            int length = readVarInt(position);
+            current.setLength(prefix);
+            current.append(new String(_data, position[0], length, StandardCharsets.UTF_8));
+            position[0] += length;
+            int comparison = CharSequence.compare(current, key);
+            if (comparison == 0) {
+                index = block * BLOCK_SIZE + i;
+            } else if (comparison > 0) {
+                // sorted, the key is not in this block
+                break;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Shared prefix, which doesn't split a surrogate pair, so the rest is valid UTF-16.
+     */
+    private static int commonPrefix(final String previous, final String key) {
+        int max = Math.min(previous.length(), key.length());
+        int prefix = 0;
+        while (prefix < max && previous.charAt(prefix) == key.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix > 0 && Character.isHighSurrogate(key.charAt(prefix - 1))) {
+            prefix--;
+        }
+        return prefix;
+    }
+
+    private static void writeVarInt(final ByteArrayOutputStream data, final int value) {
+        int remaining = value;
+        while (remaining >= 0x80) {
+            data.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        data.write(remaining);
+    }
+
+    private int readVarInt(final int[] position) {
+        int value = 0;
+        int shift = 0;
+        int current;
+        do {
+            current = _data[position[0]++];
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+}
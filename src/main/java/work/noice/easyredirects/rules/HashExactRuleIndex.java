@@ -0,0 +1,69 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exact redirects in a hash map, the fastest index for the usual number of redirects.
+ */
+final class HashExactRuleIndex implements ExactRuleIndex {
+    // object header, fields and alignment of the JVM with compressed oops
+    private static final long STRING_BYTES = 40L;
+    private static final long MAP_ENTRY_BYTES = 48L;
+    private static final long ARRAY_BYTES = 16L;
+    private static final long RULE_BYTES = 24L;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Map<String, ExactRule[]> _rules;
+
+    HashExactRuleIndex(final Map<String, ExactRule[]> rules) {
+        _rules = new HashMap<>(rules);
+    }
+
+    @Override
+    public ExactRule[] get(final String key) {
+        return _rules.get(key);
+    }
+
+    @Override
+    public int size() {
+        return _rules.size();
+    }
+
+    @Override
+    public long estimateOffHeapBytes() {
+        return 0;
+    }
+
+    @Override
+    public long estimateBytes() {
+        long bytes = (long) (_rules.size() / LOAD_FACTOR) * Integer.BYTES;
+        for (Map.Entry<String, ExactRule[]> entry : _rules.entrySet()) {
+            bytes += MAP_ENTRY_BYTES + STRING_BYTES + entry.getKey().length() + ARRAY_BYTES;
+            for (ExactRule rule : entry.getValue()) {
+                // the identifiers are shared with the other partitions of the rule
+                bytes += Integer.BYTES + RULE_BYTES + STRING_BYTES + rule.getIdentifier().length();
+            }
+        }
+        return bytes;
+    }
+}
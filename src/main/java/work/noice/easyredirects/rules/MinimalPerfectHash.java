@@ -0,0 +1,193 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Minimal perfect hash function of a static key set (hash and displace): the keys are hashed into buckets of about
+ * {@value #BUCKET_SIZE} keys, every bucket gets a seed, which maps its keys to free slots of {@code 0..n-1}.
+ * A lookup is one hash of the key and one probe. The 64-bit hash of the key in the slot rejects keys outside the set,
+ * together about 13 bytes per key.
+ */
+final class MinimalPerfectHash {
+    static final int NOT_FOUND = -1;
+
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_SEED = 1 << 24;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private final int[] _seeds;
+    private final long[] _fingerprints;
+
+    private MinimalPerfectHash(final int[] seeds, final long[] fingerprints) {
+        _seeds = seeds;
+        _fingerprints = fingerprints;
+    }
+
+    /**
+     * Searches the seeds of the buckets, largest buckets first.
+     *
+     * @param keys distinct keys
+     * @return hash function or null, if two keys have the same 64-bit hash
+     */
+    static MinimalPerfectHash build(final Collection<String> keys) {
+        int size = keys.size();
+        long[] hashes = new long[size];
+        int index = 0;
+        for (String key : keys) {
+            hashes[index++] = hash(key);
+        }
+        long[] sorted = hashes.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < size; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                return null;
+            }
+        }
+
+        int bucketCount = Math.max(1, (size + BUCKET_SIZE - 1) / BUCKET_SIZE);
+        int[] bucketStarts = new int[bucketCount + 1];
+        for (long hash : hashes) {
+            bucketStarts[bucket(hash, bucketCount) + 1]++;
+        }
+        int maxBucketSize = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            maxBucketSize = Math.max(maxBucketSize, bucketStarts[i + 1]);
+            bucketStarts[i + 1] += bucketStarts[i];
+        }
+        long[] bucketHashes = new long[size];
+        int[] fill = Arrays.copyOf(bucketStarts, bucketCount);
+        for (long hash : hashes) {
+            bucketHashes[fill[bucket(hash, bucketCount)]++] = hash;
+        }
+
+        int[] seeds = new int[bucketCount];
+        long[] fingerprints = new long[size];
+        boolean[] taken = new boolean[size];
+        int[] slots = new int[maxBucketSize];
+        for (int bucketSize = maxBucketSize; bucketSize > 0; bucketSize--) {
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                int start = bucketStarts[bucket];
+                if (bucketStarts[bucket + 1] - start == bucketSize) {
+                    int seed = findSeed(bucketHashes, start, bucketSize, taken, slots);
+                    if (seed < 0) {
+                        return null;
+                    }
+                    seeds[bucket] = seed;
+                    for (int i = 0; i < bucketSize; i++) {
+                        taken[slots[i]] = true;
+                        fingerprints[slots[i]] = bucketHashes[start + i];
+                    }
+                }
+            }
+        }
+        return new MinimalPerfectHash(seeds, fingerprints);
+    }
+
+    private static int findSeed(final long[] hashes, final int start, final int length, final boolean[] taken, final int[] slots) {
+        for (int seed = 0; seed < MAX_SEED; seed++) {
+            boolean free = true;
+            for (int i = 0; i < length && free; i++) {
+                int slot = slot(hashes[start + i], seed, taken.length);
+                free = !taken[slot];
+                for (int j = 0; j < i && free; j++) {
+                    free = slots[j] != slot;
+                }
+                slots[i] = slot;
+            }
+            if (free) {
+                return seed;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param key key
+     * @return slot of the key or {@link #NOT_FOUND}, if the key is not in the set
+     */
+    int indexOf(final String key) {
+        int slot = NOT_FOUND;
+        if (_fingerprints.length > 0) {
+            long hash = hash(key);
+            int candidate = slot(hash, _seeds[bucket(hash, _seeds.length)], _fingerprints.length);
+            slot = _fingerprints[candidate] == hash ? candidate : NOT_FOUND;
+        }
+        return slot;
+    }
+
+    /**
+     * Checks, if this function was built for the keys, so it can be reused instead of searching the seeds again.
+     *
+     * @param keys distinct keys
+     * @return true, if every key has its own slot
+     */
+    boolean covers(final Collection<String> keys) {
+        boolean covers = keys.size() == _fingerprints.length;
+        for (String key : keys) {
+            if (!covers) {
+                break;
+            }
+            covers = indexOf(key) != NOT_FOUND;
+        }
+        return covers;
+    }
+
+    int size() {
+        return _fingerprints.length;
+    }
+
+    long estimateBytes() {
+        return 32L + 4L * _seeds.length + 8L * _fingerprints.length;
+    }
+
+    private static int bucket(final long hash, final int bucketCount) {
+        return (int) Long.remainderUnsigned(hash, bucketCount);
+    }
+
+    private static int slot(final long hash, final int seed, final int size) {
+        return (int) Long.remainderUnsigned(mix(hash ^ (seed + 1) * GOLDEN_RATIO), size);
+    }
+
+    /**
+     * FNV-1a over the chars of the key with a final avalanche.
+     */
+    static long hash(final String key) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(final long value) {
+        long mixed = value;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xFF51AFD7ED558CCDL;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xC4CEB9FE1A85EC53L;
+        mixed ^= mixed >>> 33;
+        return mixed;
+    }
+}
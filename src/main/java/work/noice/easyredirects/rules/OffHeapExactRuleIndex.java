@@ -0,0 +1,191 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Exact redirects in a direct byte buffer outside of the garbage collected heap, so very large redirect sets
+ * don't grow the old generation and the pause times. The buffer holds an open addressing hash table of entry
+ * offsets and the entries: hash, UTF-8 key and the candidates with their identifier as UUID bits or UTF-8.
+ * The buffer is written once when the table is compiled and only read with absolute reads afterwards, so request
+ * threads read it without locks. Query rules are objects and stay on the heap, the entries refer to them by index.
+ * <p>
+ * The buffer is freed with the compiled table by the garbage collector, its size is limited by
+ * {@code -XX:MaxDirectMemorySize}.
+ * </p>
+ */
+final class OffHeapExactRuleIndex implements ExactRuleIndex {
+    private static final int MAX_LOAD_PERCENT = 50;
+    private static final int NO_QUERY_RULE = -1;
+    private static final byte KIND_UUID = 0;
+    private static final byte KIND_STRING = 1;
+    private static final int UUID_BYTES = 16;
+
+    private final ByteBuffer _buffer;
+    private final int _mask;
+    private final int _entriesOffset;
+    private final int _size;
+    private final QueryRule[] _queryRules;
+
+    OffHeapExactRuleIndex(final Map<String, ExactRule[]> rules) {
+        _size = rules.size();
+        int capacity = Integer.highestOneBit((int) Math.max(2L, (long) _size * 100 / MAX_LOAD_PERCENT - 1)) << 1;
+        _mask = capacity - 1;
+        _entriesOffset = capacity * Integer.BYTES;
+
+        List<QueryRule> queryRules = new ArrayList<>();
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        for (Map.Entry<String, ExactRule[]> rule : rules.entrySet()) {
+            byte[] key = rule.getKey().getBytes(StandardCharsets.UTF_8);
+            int hash = hash(key);
+            int slot = hash & _mask;
+            while (slots[slot] >= 0) {
+                slot = (slot + 1) & _mask;
+            }
+            slots[slot] = entries.size();
+            writeEntry(entries, hash, key, rule.getValue(), queryRules);
+        }
+        if ((long) _entriesOffset + entries.size() > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many exact redirects for one off-heap buffer.");
+        }
+        _buffer = ByteBuffer.allocateDirect(_entriesOffset + entries.size());
+        for (int i = 0; i < capacity; i++) {
+            _buffer.putInt(i * Integer.BYTES, slots[i]);
+        }
+        _buffer.put(_entriesOffset, entries.toByteArray());
+        _queryRules = queryRules.toArray(new QueryRule[0]);
+    }
+
+    @Override
+    public ExactRule[] get(final String key) {
+        ExactRule[] candidates = null;
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+        int slot = hash & _mask;
+        int entry = _buffer.getInt(slot * Integer.BYTES);
+        while (entry >= 0 && candidates == null) {
+            int position = _entriesOffset + entry;
+            if (_buffer.getInt(position) == hash && matches(position + Integer.BYTES, bytes)) {
+                candidates = readCandidates(position + 2 * Integer.BYTES + bytes.length);
+            } else {
+                slot = (slot + 1) & _mask;
+                entry = _buffer.getInt(slot * Integer.BYTES);
+            }
+        }
+        return candidates;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public long estimateBytes() {
+        // the buffer object and the query rule references, the rules are shared with the other partitions
+        return 64L + 16L + 4L * _queryRules.length;
+    }
+
+    @Override
+    public long estimateOffHeapBytes() {
+        return _buffer.capacity();
+    }
+
+    private boolean matches(final int position, final byte[] key) {
+        boolean matches = _buffer.getInt(position) == key.length;
+        for (int i = 0; matches && i < key.length; i++) {
+            matches = _buffer.get(position + Integer.BYTES + i) == key[i];
+        }
+        return matches;
+    }
+
+    private ExactRule[] readCandidates(final int start) {
+        ExactRule[] candidates = new ExactRule[_buffer.getInt(start)];
+        int position = start + Integer.BYTES;
+        for (int i = 0; i < candidates.length; i++) {
+            String identifier;
+            if (_buffer.get(position++) == KIND_UUID) {
+                identifier = new UUID(_buffer.getLong(position), _buffer.getLong(position + Long.BYTES)).toString();
+                position += UUID_BYTES;
+            } else {
+                byte[] bytes = new byte[_buffer.getInt(position)];
+                _buffer.get(position + Integer.BYTES, bytes);
+                identifier = new String(bytes, StandardCharsets.UTF_8);
+                position += Integer.BYTES + bytes.length;
+            }
+            int queryRule = _buffer.getInt(position);
+            position += Integer.BYTES;
+            candidates[i] = new ExactRule(identifier, queryRule != NO_QUERY_RULE ? _queryRules[queryRule] : null);
+        }
+        return candidates;
+    }
+
+    private static void writeEntry(final ByteArrayOutputStream entries, final int hash, final byte[] key, final ExactRule[] candidates, final List<QueryRule> queryRules) {
+        ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+        header.putInt(hash).putInt(key.length);
+        entries.write(header.array(), 0, header.capacity());
+        entries.write(key, 0, key.length);
+        ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).putInt(candidates.length);
+        entries.write(count.array(), 0, count.capacity());
+        for (ExactRule candidate : candidates) {
+            String identifier = candidate.getIdentifier();
+            ByteBuffer value;
+            if (ExactRuleArrays.isUuid(identifier)) {
+                UUID uuid = UUID.fromString(identifier);
+                value = ByteBuffer.allocate(1 + UUID_BYTES + Integer.BYTES);
+                value.put(KIND_UUID).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+            } else {
+                byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+                value = ByteBuffer.allocate(1 + Integer.BYTES + bytes.length + Integer.BYTES);
+                value.put(KIND_STRING).putInt(bytes.length).put(bytes);
+            }
+            int queryRule = NO_QUERY_RULE;
+            if (candidate.getQueryRule() != null) {
+                queryRule = queryRules.size();
+                queryRules.add(candidate.getQueryRule());
+            }
+            value.putInt(queryRule);
+            entries.write(value.array(), 0, value.capacity());
+        }
+    }
+
+    /**
+     * FNV-1a with a final mix, so similar urls spread over the table.
+     */
+    private static int hash(final byte[] key) {
+        int hash = 0x811C9DC5;
+        for (byte current : key) {
+            hash = (hash ^ (current & 0xFF)) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        return hash ^ (hash >>> 13);
+    }
+}
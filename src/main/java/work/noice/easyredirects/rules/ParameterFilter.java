@@ -0,0 +1,81 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * List of query parameter names. Names ending with * match all parameters with this prefix, e.g. utm_*.
+ */
+public final class ParameterFilter {
+    public static final ParameterFilter NONE = new ParameterFilter(new HashSet<>(), new ArrayList<>());
+
+    private final Set<String> _names;
+    private final String[] _prefixes;
+
+    private ParameterFilter(final Set<String> names, final List<String> prefixes) {
+        _names = names;
+        _prefixes = prefixes.toArray(new String[0]);
+    }
+
+    /**
+     * @param names comma separated parameter names, may be null
+     * @return filter of the names
+     */
+    public static ParameterFilter parse(final String names) {
+        return names == null ? NONE : parse(Arrays.asList(names.split(",")));
+    }
+
+    /**
+     * @param names parameter names
+     * @return filter of the names
+     */
+    public static ParameterFilter parse(final Collection<String> names) {
+        Set<String> exact = new HashSet<>();
+        List<String> prefixes = new ArrayList<>();
+        for (String name : names) {
+            String trimmed = name == null ? "" : name.trim();
+            if (trimmed.endsWith("*")) {
+                prefixes.add(trimmed.substring(0, trimmed.length() - 1));
+            } else if (!trimmed.isEmpty()) {
+                exact.add(trimmed);
+            }
+        }
+        return exact.isEmpty() && prefixes.isEmpty() ? NONE : new ParameterFilter(exact, prefixes);
+    }
+
+    public boolean matches(final String name) {
+        boolean matches = _names.contains(name);
+        for (int i = 0; i < _prefixes.length && !matches; i++) {
+            matches = name.startsWith(_prefixes[i]);
+        }
+        return matches;
+    }
+
+    public boolean isEmpty() {
+        return _names.isEmpty() && _prefixes.length == 0;
+    }
+}
@@ -0,0 +1,125 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Query string of a request, parsed once. Keeps the raw parameters, so a rewritten query string
+ * contains the kept parameters exactly as requested.
+ */
+public final class ParsedQuery {
+    public static final ParsedQuery EMPTY = new ParsedQuery(new String[0], new String[0], new String[0]);
+
+    private final String[] _names;
+    private final String[] _values;
+    private final String[] _rawParameters;
+
+    private ParsedQuery(final String[] names, final String[] values, final String[] rawParameters) {
+        _names = names;
+        _values = values;
+        _rawParameters = rawParameters;
+    }
+
+    /**
+     * Parses a raw query string.
+     *
+     * @param rawQuery query string with or without leading question mark, may be null
+     * @return parsed query
+     */
+    public static ParsedQuery parse(final String rawQuery) {
+        ParsedQuery query = EMPTY;
+        String raw = rawQuery != null && rawQuery.startsWith("?") ? rawQuery.substring(1) : rawQuery;
+        if (raw != null && !raw.isEmpty()) {
+            List<String> names = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            List<String> rawParameters = new ArrayList<>();
+            int start = 0;
+            while (start <= raw.length()) {
+                int end = raw.indexOf('&', start);
+                if (end < 0) {
+                    end = raw.length();
+                }
+                String parameter = raw.substring(start, end);
+                if (!parameter.isEmpty()) {
+                    int separator = parameter.indexOf('=');
+                    names.add(decode(separator < 0 ? parameter : parameter.substring(0, separator)));
+                    values.add(separator < 0 ? "" : decode(parameter.substring(separator + 1)));
+                    rawParameters.add(parameter);
+                }
+                start = end + 1;
+            }
+            query = new ParsedQuery(names.toArray(new String[0]), values.toArray(new String[0]), rawParameters.toArray(new String[0]));
+        }
+        return query;
+    }
+
+    /**
+     * @param name parameter name
+     * @return first decoded value of the parameter, empty for parameters without value, null if missing
+     */
+    public String get(final String name) {
+        String value = null;
+        for (int i = 0; i < _names.length && value == null; i++) {
+            if (_names[i].equals(name)) {
+                value = _values[i];
+            }
+        }
+        return value;
+    }
+
+    public boolean isEmpty() {
+        return _names.length == 0;
+    }
+
+    /**
+     * Formats the query string of the accepted parameters.
+     *
+     * @param accept accepts the decoded parameter names to keep
+     * @return raw query string without question mark, empty if no parameter is kept
+     */
+    public String format(final Predicate<String> accept) {
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < _names.length; i++) {
+            if (accept.test(_names[i])) {
+                if (query.length() > 0) {
+                    query.append('&');
+                }
+                query.append(_rawParameters[i]);
+            }
+        }
+        return query.toString();
+    }
+
+    private static String decode(final String value) {
+        String decoded = value;
+        try {
+            decoded = URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            // keep malformed escapes as they are
+        }
+        return decoded;
+    }
+}
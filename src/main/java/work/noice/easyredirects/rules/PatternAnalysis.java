@@ -0,0 +1,92 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of the {@link PatternAnalyzer}. Errors prevent saving the redirect, warnings are shown to the editor.
+ * Findings are message keys with arguments, so the ui can translate them.
+ */
+public class PatternAnalysis {
+    private final List<Finding> _errors = new ArrayList<>();
+    private final List<Finding> _warnings = new ArrayList<>();
+    private long _estimatedSteps;
+
+    void addError(final String key, final Object... arguments) {
+        _errors.add(new Finding(key, arguments));
+    }
+
+    void addWarning(final String key, final Object... arguments) {
+        _warnings.add(new Finding(key, arguments));
+    }
+
+    void setEstimatedSteps(final long estimatedSteps) {
+        _estimatedSteps = estimatedSteps;
+    }
+
+    public List<Finding> getErrors() {
+        return Collections.unmodifiableList(_errors);
+    }
+
+    public List<Finding> getWarnings() {
+        return Collections.unmodifiableList(_warnings);
+    }
+
+    public boolean hasErrors() {
+        return !_errors.isEmpty();
+    }
+
+    /**
+     * @return worst observed regex steps of a request url, see {@link PatternAnalyzer#PROBE_LENGTH}
+     */
+    public long getEstimatedSteps() {
+        return _estimatedSteps;
+    }
+
+    /**
+     * Message key with arguments.
+     */
+    public static class Finding {
+        private final String _key;
+        private final Object[] _arguments;
+
+        Finding(final String key, final Object[] arguments) {
+            _key = key;
+            _arguments = arguments;
+        }
+
+        public String getKey() {
+            return _key;
+        }
+
+        public Object[] getArguments() {
+            return _arguments.clone();
+        }
+
+        @Override
+        public String toString() {
+            return _key;
+        }
+    }
+}
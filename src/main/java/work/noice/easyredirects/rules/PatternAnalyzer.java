@@ -0,0 +1,345 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import work.noice.easyredirects.rules.BudgetedCharSequence.PatternBudgetExceededException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Save time analysis of a pattern redirect.
+ * <ul>
+ *     <li>invalid regex is an error</li>
+ *     <li>nested quantifiers and backreferences are flagged as super-linear constructs</li>
+ *     <li>the cost is measured on adversarial urls under the step budget, exceeding it is an error</li>
+ *     <li>patterns shadowed by an earlier pattern and exact redirects covered by the pattern are warnings</li>
+ * </ul>
+ */
+public class PatternAnalyzer {
+    public static final String ERROR_INVALID = "redirect.pattern.error.invalid";
+    public static final String ERROR_BUDGET = "redirect.pattern.error.budget";
+    public static final String WARNING_NESTED_QUANTIFIER = "redirect.pattern.warning.nestedQuantifier";
+    public static final String WARNING_BACKREFERENCE = "redirect.pattern.warning.backreference";
+    public static final String WARNING_COST = "redirect.pattern.warning.cost";
+    public static final String WARNING_SHADOWED = "redirect.pattern.warning.shadowed";
+    public static final String WARNING_SHADOWS_EXACT = "redirect.pattern.warning.shadowsExact";
+
+    /**
+     * Length of the adversarial urls used for the cost estimate.
+     */
+    public static final int PROBE_LENGTH = 128;
+
+    private static final int MAX_FILLERS = 8;
+    private static final String DEFAULT_FILLERS = "a1/-.";
+    private static final String[] PROBE_ENDINGS = {"", "!", "/"};
+    private static final String[] WILDCARD_SAMPLES = {"", "x", "x/y/z"};
+    private static final String[] PARAMETER_SAMPLES = {"x", "123", "x-y"};
+
+    private final long _stepBudget;
+
+    /**
+     * @param stepBudget step budget of the pattern evaluation, see {@link PatternRule}
+     */
+    public PatternAnalyzer(final long stepBudget) {
+        _stepBudget = stepBudget;
+    }
+
+    /**
+     * Analyzes a pattern redirect.
+     *
+     * @param pattern      redirect pattern
+     * @param priority     priority of the redirect
+     * @param path         node path of the redirect
+     * @param patternRules other pattern redirects of the site
+     * @param exactUrls    from urls of the exact redirects of the site
+     * @return analysis with errors and warnings
+     */
+    public PatternAnalysis analyze(final String pattern, final int priority, final String path, final Collection<PatternRule> patternRules, final Collection<String> exactUrls) {
+        PatternAnalysis analysis = new PatternAnalysis();
+        PatternRule rule = null;
+        try {
+            rule = new PatternRule(null, path, pattern, priority, _stepBudget);
+        } catch (PatternSyntaxException e) {
+            analysis.addError(ERROR_INVALID, e.getDescription(), e.getIndex());
+        }
+
+        if (rule != null) {
+            checkConstructs(rule.getRegex().pattern(), analysis);
+            checkCost(rule, analysis);
+            if (!analysis.hasErrors()) {
+                checkShadowed(rule, patternRules, analysis);
+                checkShadowsExact(rule, exactUrls, analysis);
+            }
+        }
+        return analysis;
+    }
+
+    /**
+     * Scans the regex for quantified groups containing an unbounded quantifier and for backreferences.
+     * Possessive quantifiers and atomic groups don't backtrack and are ignored.
+     */
+    private static void checkConstructs(final String regex, final PatternAnalysis analysis) {
+        Deque<GroupState> groups = new ArrayDeque<>();
+        groups.push(new GroupState(false));
+        boolean nested = false;
+        boolean backreference = false;
+        GroupState lastGroup = null;
+
+        int i = 0;
+        while (i < regex.length()) {
+            char current = regex.charAt(i);
+            int quantifierEnd = quantifierEnd(regex, i);
+            if (current == '\\') {
+                char next = i + 1 < regex.length() ? regex.charAt(i + 1) : ' ';
+                backreference |= (next >= '1' && next <= '9') || next == 'k';
+                lastGroup = null;
+                i += 2;
+            } else if (current == '[') {
+                lastGroup = null;
+                i = skipCharacterClass(regex, i);
+            } else if (current == '(') {
+                groups.push(new GroupState(regex.startsWith("(?>", i)));
+                lastGroup = null;
+                i = skipGroupPrefix(regex, i);
+            } else if (current == ')' && groups.size() > 1) {
+                lastGroup = groups.pop();
+                groups.peek()._unbounded |= lastGroup._unbounded && !lastGroup._atomic;
+                i++;
+            } else if (quantifierEnd > 0) {
+                boolean possessive = quantifierEnd < regex.length() && regex.charAt(quantifierEnd) == '+';
+                boolean repeating = isRepeating(regex.substring(i, quantifierEnd));
+                if (!possessive && repeating) {
+                    nested |= lastGroup != null && lastGroup._unbounded && !lastGroup._atomic;
+                    groups.peek()._unbounded |= isUnbounded(regex.substring(i, quantifierEnd));
+                }
+                lastGroup = null;
+                i = quantifierEnd < regex.length() && (regex.charAt(quantifierEnd) == '+' || regex.charAt(quantifierEnd) == '?') ? quantifierEnd + 1 : quantifierEnd;
+            } else {
+                lastGroup = null;
+                i++;
+            }
+        }
+
+        if (nested) {
+            analysis.addWarning(WARNING_NESTED_QUANTIFIER);
+        }
+        if (backreference) {
+            analysis.addWarning(WARNING_BACKREFERENCE);
+        }
+    }
+
+    /**
+     * Measures the regex steps on adversarial urls: the literal prefix followed by repeated characters of the
+     * pattern, so quantifiers have to try every split before the ending fails or matches.
+     */
+    private void checkCost(final PatternRule rule, final PatternAnalysis analysis) {
+        long maxSteps = 0;
+        boolean exceeded = false;
+        for (String filler : fillers(rule.getRegex().pattern())) {
+            for (String ending : PROBE_ENDINGS) {
+                String url = rule.getLiteralPrefix() + filler.repeat(PROBE_LENGTH / filler.length()) + ending;
+                BudgetedCharSequence input = new BudgetedCharSequence(url, _stepBudget);
+                try {
+                    rule.getRegex().matcher(input).matches();
+                } catch (PatternBudgetExceededException e) {
+                    exceeded = true;
+                }
+                maxSteps = Math.max(maxSteps, input.getReads());
+            }
+        }
+        analysis.setEstimatedSteps(maxSteps);
+        if (exceeded) {
+            analysis.addError(ERROR_BUDGET, _stepBudget, PROBE_LENGTH);
+        } else if (maxSteps > _stepBudget / 10) {
+            analysis.addWarning(WARNING_COST, maxSteps, PROBE_LENGTH, _stepBudget);
+        }
+    }
+
+    /**
+     * An earlier rule without query conditions shadows the new one, if it covers every url starting with its literal prefix, has the same regex
+     * or matches all sample urls of a simple pattern.
+     */
+    private void checkShadowed(final PatternRule rule, final Collection<PatternRule> patternRules, final PatternAnalysis analysis) {
+        List<String> samples = sampleUrls(rule);
+        for (PatternRule earlier : patternRules) {
+            boolean unconditional = earlier.getQueryRule() == null || !earlier.getQueryRule().hasConditions();
+            if (unconditional && PatternRuleSet.MATCHING_ORDER.compare(earlier, rule) < 0 && isShadowing(earlier, rule, samples)) {
+                analysis.addWarning(WARNING_SHADOWED, earlier.getPattern(), earlier.getPath());
+                break;
+            }
+        }
+    }
+
+    private boolean isShadowing(final PatternRule earlier, final PatternRule rule, final List<String> samples) {
+        boolean shadowing = earlier.getRegex().pattern().equals(rule.getRegex().pattern())
+            || (isPrefixWildcard(earlier) && rule.getLiteralPrefix().startsWith(earlier.getLiteralPrefix()));
+        if (!shadowing && !samples.isEmpty()) {
+            shadowing = true;
+            for (String sample : samples) {
+                shadowing &= matches(earlier, sample);
+            }
+        }
+        return shadowing;
+    }
+
+    private void checkShadowsExact(final PatternRule rule, final Collection<String> exactUrls, final PatternAnalysis analysis) {
+        int count = 0;
+        String example = null;
+        for (String url : exactUrls) {
+            if (url.startsWith(rule.getLiteralPrefix()) && url.endsWith(rule.getLiteralSuffix()) && matches(rule, url)) {
+                count++;
+                if (example == null) {
+                    example = url;
+                }
+            }
+        }
+        if (count > 0) {
+            analysis.addWarning(WARNING_SHADOWS_EXACT, count, example);
+        }
+    }
+
+    private boolean matches(final PatternRule rule, final String url) {
+        boolean matches;
+        try {
+            matches = rule.getRegex().matcher(new BudgetedCharSequence(url, _stepBudget)).matches();
+        } catch (PatternBudgetExceededException e) {
+            matches = false;
+        }
+        return matches;
+    }
+
+    /**
+     * Simple pattern ending with a single wildcard, e.g. /shop/*.
+     */
+    private static boolean isPrefixWildcard(final PatternRule rule) {
+        return !PatternRule.isRegex(rule.getPattern()) && rule.getPattern().equals(rule.getLiteralPrefix() + "*");
+    }
+
+    /**
+     * Creates urls matching a simple pattern by replacing wildcards and parameters. Regex patterns have no samples.
+     */
+    private static List<String> sampleUrls(final PatternRule rule) {
+        List<String> samples = new ArrayList<>();
+        if (!PatternRule.isRegex(rule.getPattern())) {
+            for (int i = 0; i < WILDCARD_SAMPLES.length; i++) {
+                String sample = rule.getPattern().replaceAll("\\{[^}]+\\}", PARAMETER_SAMPLES[i]).replace("*", WILDCARD_SAMPLES[i]);
+                if (rule.getRegex().matcher(sample).matches()) {
+                    samples.add(sample);
+                }
+            }
+        }
+        return samples;
+    }
+
+    private static Set<String> fillers(final String regex) {
+        Set<String> fillers = new LinkedHashSet<>();
+        for (char filler : DEFAULT_FILLERS.toCharArray()) {
+            fillers.add(String.valueOf(filler));
+        }
+        for (int i = 0; i < regex.length() && fillers.size() < MAX_FILLERS; i++) {
+            char current = regex.charAt(i);
+            if (Character.isLetterOrDigit(current) || current == '_' || current == '~') {
+                fillers.add(String.valueOf(current));
+            }
+        }
+        fillers.add("a/");
+        return fillers;
+    }
+
+    private static int skipCharacterClass(final String regex, final int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        int depth = 1;
+        while (i < regex.length() && depth > 0) {
+            char current = regex.charAt(i);
+            if (current == '\\') {
+                i++;
+            } else if (current == '[') {
+                depth++;
+            } else if (current == ']') {
+                depth--;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipGroupPrefix(final String regex, final int start) {
+        int i = start + 1;
+        if (regex.startsWith("?<", i) && !regex.startsWith("?<=", i) && !regex.startsWith("?<!", i)) {
+            i = regex.indexOf('>', i) + 1;
+        } else if (i < regex.length() && regex.charAt(i) == '?') {
+            i += 2;
+        }
+        return i;
+    }
+
+    /**
+     * @return end of the quantifier starting at the index (without lazy or possessive modifier), -1 if there is none
+     */
+    private static int quantifierEnd(final String regex, final int start) {
+        int end = -1;
+        char current = regex.charAt(start);
+        if (current == '*' || current == '+' || current == '?') {
+            end = start + 1;
+        } else if (current == '{') {
+            int close = regex.indexOf('}', start);
+            if (close > 0 && regex.substring(start + 1, close).matches("\\d+(,\\d*)?")) {
+                end = close + 1;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isRepeating(final String quantifier) {
+        boolean repeating = !"?".equals(quantifier);
+        if (quantifier.startsWith("{")) {
+            String[] bounds = quantifier.substring(1, quantifier.length() - 1).split(",", -1);
+            repeating = bounds.length > 1 ? bounds[1].isEmpty() || Integer.parseInt(bounds[1]) > 1 : Integer.parseInt(bounds[0]) > 1;
+        }
+        return repeating;
+    }
+
+    private static boolean isUnbounded(final String quantifier) {
+        return "*".equals(quantifier) || "+".equals(quantifier) || quantifier.endsWith(",}");
+    }
+
+    private static final class GroupState {
+        private final boolean _atomic;
+        private boolean _unbounded;
+
+        private GroupState(final boolean atomic) {
+            _atomic = atomic;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Map;
+
+/**
+ * Matching pattern rule with the extracted parameters.
+ */
+public class PatternMatch {
+    private final PatternRule _rule;
+    private final Map<String, String> _parameters;
+
+    public PatternMatch(final PatternRule rule, final Map<String, String> parameters) {
+        _rule = rule;
+        _parameters = parameters;
+    }
+
+    public PatternRule getRule() {
+        return _rule;
+    }
+
+    public Map<String, String> getParameters() {
+        return _parameters;
+    }
+}
@@ -0,0 +1,450 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import work.noice.easyredirects.rules.BudgetedCharSequence.PatternBudgetExceededException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled pattern redirect. Keeps the regex, the named groups and the literal prefix and suffix of the pattern,
+ * so most non-matching urls are rejected by a string comparison before the regex is evaluated.
+ * Simple patterns without regex are evaluated by a {@link CompiledPattern} instead of the regex.
+ * <p>
+ * Every regex evaluation runs with a step budget. A pattern exceeding it (e.g. by catastrophic backtracking)
+ * is treated as not matching and quarantined, so it is skipped until the rules are compiled again.
+ * </p>
+ */
+public class PatternRule {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PatternRule.class);
+
+    public static final long DEFAULT_STEP_BUDGET = 100_000L;
+    private static final Pattern NAMED_GROUP = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
+    private static final String QUANTIFIERS = "*+?{";
+    private static final String REGEX_META = "\\.[]()^$|" + QUANTIFIERS;
+
+    private final String _identifier;
+    private final String _path;
+    private final String _pattern;
+    private final int _priority;
+    private final Pattern _regex;
+    private final CompiledPattern _compiled;
+    private final List<String> _groupNames;
+    private final String _literalPrefix;
+    private final String _literalSuffix;
+    private final long _stepBudget;
+    private final QueryRule _queryRule;
+    private final LongAdder _hits = new LongAdder();
+    private volatile boolean _quarantined;
+
+    private int _rank;
+    private PatternRule[] _conflicts;
+
+    /**
+     * Compiles a pattern redirect.
+     *
+     * @param identifier node identifier of the redirect
+     * @param path       node path of the redirect, used as deterministic tie breaker
+     * @param pattern    redirect pattern (wildcards, path parameters or regex)
+     * @param priority   rules with higher priority are matched first
+     */
+    public PatternRule(final String identifier, final String path, final String pattern, final int priority) {
+        this(identifier, path, pattern, priority, DEFAULT_STEP_BUDGET);
+    }
+
+    /**
+     * Compiles a pattern redirect with a custom step budget.
+     *
+     * @param identifier node identifier of the redirect
+     * @param path       node path of the redirect, used as deterministic tie breaker
+     * @param pattern    redirect pattern (wildcards, path parameters or regex)
+     * @param priority   rules with higher priority are matched first
+     * @param stepBudget maximum number of input reads of one regex evaluation
+     */
+    public PatternRule(final String identifier, final String path, final String pattern, final int priority, final long stepBudget) {
+        this(identifier, path, pattern, priority, stepBudget, null);
+    }
+
+    /**
+     * Compiles a pattern redirect with query conditions.
+     *
+     * @param identifier node identifier of the redirect
+     * @param path       node path of the redirect, used as deterministic tie breaker
+     * @param pattern    redirect pattern (wildcards, path parameters or regex)
+     * @param priority   rules with higher priority are matched first
+     * @param stepBudget maximum number of input reads of one regex evaluation
+     * @param queryRule  query conditions and rewriting, may be null
+     */
+    public PatternRule(final String identifier, final String path, final String pattern, final int priority, final long stepBudget, final QueryRule queryRule) {
+        this(identifier, path, pattern, priority, stepBudget, queryRule, false);
+    }
+
+    /**
+     * Compiles a pattern redirect for lower case request urls.
+     *
+     * @param identifier node identifier of the redirect
+     * @param path       node path of the redirect, used as deterministic tie breaker
+     * @param pattern    redirect pattern (wildcards, path parameters or regex)
+     * @param priority   rules with higher priority are matched first
+     * @param stepBudget maximum number of input reads of one regex evaluation
+     * @param queryRule  query conditions and rewriting, may be null
+     * @param ignoreCase true to match lower case request urls, the regex ignores the case and the literals are lower case
+     */
+    public PatternRule(final String identifier, final String path, final String pattern, final int priority, final long stepBudget, final QueryRule queryRule, final boolean ignoreCase) {
+        _identifier = identifier;
+        _path = path;
+        _pattern = pattern;
+        _priority = priority;
+        _stepBudget = stepBudget;
+        _queryRule = queryRule;
+        _regex = Pattern.compile(toRegex(pattern), ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+        _groupNames = extractGroupNames(_regex.pattern());
+        _compiled = CompiledPattern.compile(pattern, ignoreCase);
+        String literalPrefix;
+        String literalSuffix;
+        if (isRegex(pattern)) {
+            literalPrefix = regexLiteralPrefix(_regex.pattern());
+            literalSuffix = "";
+        } else {
+            literalPrefix = simpleLiteralPrefix(pattern);
+            literalSuffix = simpleLiteralSuffix(pattern);
+        }
+        _literalPrefix = ignoreCase ? literalPrefix.toLowerCase(Locale.ROOT) : literalPrefix;
+        _literalSuffix = ignoreCase ? literalSuffix.toLowerCase(Locale.ROOT) : literalSuffix;
+    }
+
+    /**
+     * Copies a compiled rule for another rule set. Rank, conflicts, hits and quarantine are not copied.
+     */
+    PatternRule(final PatternRule template) {
+        _identifier = template._identifier;
+        _path = template._path;
+        _pattern = template._pattern;
+        _priority = template._priority;
+        _stepBudget = template._stepBudget;
+        _queryRule = template._queryRule;
+        _regex = template._regex;
+        _compiled = template._compiled;
+        _groupNames = template._groupNames;
+        _literalPrefix = template._literalPrefix;
+        _literalSuffix = template._literalSuffix;
+    }
+
+    /**
+     * Checks if the pattern is already a regex (contains parentheses, brackets or anchors).
+     *
+     * @param pattern redirect pattern
+     * @return true for regex patterns
+     */
+    public static boolean isRegex(final String pattern) {
+        return pattern.contains("(") || pattern.contains("[") || pattern.contains("^") || pattern.contains("$");
+    }
+
+    /**
+     * Returns the characters every url matching the pattern starts with.
+     *
+     * @param pattern the redirect pattern
+     * @return literal prefix, empty if the pattern starts with a wildcard or regex construct
+     */
+    public static String literalPrefix(final String pattern) {
+        return isRegex(pattern) ? regexLiteralPrefix(toRegex(pattern)) : simpleLiteralPrefix(pattern);
+    }
+
+    /**
+     * Converts a redirect pattern to an anchored regex.
+     * Supports wildcards (*) and path parameters ({param}), regex patterns are used as they are.
+     *
+     * @param pattern the redirect pattern
+     * @return regex
+     */
+    public static String toRegex(final String pattern) {
+        String regex = pattern;
+        if (isRegex(pattern)) {
+            if (!regex.startsWith("^")) {
+                regex = "^" + regex;
+            }
+            if (!regex.endsWith("$")) {
+                regex = regex + "$";
+            }
+        } else {
+            // Escape special regex characters except * and {}
+            regex = regex.replaceAll("([.+?^$|\\\\\\[\\]()])", "\\\\$1");
+            // Replace {param} with named capture group
+            regex = regex.replaceAll("\\{([^}]+)\\}", "(?<$1>[^/]+)");
+            // Replace * with .* for wildcard matching
+            regex = regex.replaceAll("\\*", ".*");
+            regex = "^" + regex + "$";
+        }
+        return regex;
+    }
+
+    /**
+     * Matches a request url and extracts the parameters.
+     * Numbered groups are available as "1", "2", ..., named groups by their name.
+     *
+     * @param requestUrl request url
+     * @return extracted parameters or null, if the url does not match or the rule is quarantined
+     */
+    public Map<String, String> match(final String requestUrl) {
+        Map<String, String> params = null;
+        if (!_quarantined && requestUrl.startsWith(_literalPrefix) && requestUrl.endsWith(_literalSuffix)) {
+            params = _compiled != null ? matchCompiled(requestUrl) : matchRegex(requestUrl);
+        }
+        return params;
+    }
+
+    private Map<String, String> matchCompiled(final String requestUrl) {
+        Map<String, String> params = null;
+        try {
+            params = _compiled.match(requestUrl, _stepBudget);
+        } catch (PatternBudgetExceededException e) {
+            quarantine(requestUrl);
+        }
+        return params;
+    }
+
+    private Map<String, String> matchRegex(final String requestUrl) {
+        Map<String, String> params = null;
+        Matcher matcher = _regex.matcher(new BudgetedCharSequence(requestUrl, _stepBudget));
+        if (matches(matcher, requestUrl)) {
+            params = new HashMap<>();
+            for (int i = 1; i <= matcher.groupCount(); i++) {
+                String groupValue = matcher.group(i);
+                if (groupValue != null) {
+                    params.put(String.valueOf(i), groupValue);
+                }
+            }
+            for (String groupName : _groupNames) {
+                String groupValue = matcher.group(groupName);
+                if (groupValue != null) {
+                    params.put(groupName, groupValue);
+                }
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Matches a request url and its query. Parameters captured by the query conditions are added
+     * to the parameters of the url.
+     *
+     * @param requestUrl request url
+     * @param query      parsed request query
+     * @return extracted parameters or null, if the url or the query does not match
+     */
+    public Map<String, String> match(final String requestUrl, final ParsedQuery query) {
+        Map<String, String> params = null;
+        Map<String, String> queryParams = _queryRule != null ? _queryRule.match(query) : Collections.emptyMap();
+        if (queryParams != null) {
+            params = match(requestUrl);
+            if (params != null) {
+                params.putAll(queryParams);
+            }
+        }
+        return params;
+    }
+
+    private boolean matches(final Matcher matcher, final String requestUrl) {
+        boolean matches = false;
+        try {
+            matches = matcher.matches();
+        } catch (PatternBudgetExceededException e) {
+            quarantine(requestUrl);
+        }
+        return matches;
+    }
+
+    private void quarantine(final String requestUrl) {
+        if (!_quarantined) {
+            _quarantined = true;
+            LOGGER.error("Quarantined redirect {}: pattern {} exceeded {} steps on a request url of length {}. Please simplify the pattern.", _path, _pattern, _stepBudget, requestUrl.length());
+        }
+    }
+
+    /**
+     * @return true, if the pattern is evaluated by a {@link CompiledPattern} instead of the regex
+     */
+    public boolean isCompiled() {
+        return _compiled != null;
+    }
+
+    /**
+     * @return true, if the pattern exceeded its step budget and is skipped
+     */
+    public boolean isQuarantined() {
+        return _quarantined;
+    }
+
+    /**
+     * Two rules are disjoint, if no url can match both of them, because their literal prefixes or suffixes differ.
+     *
+     * @param other other rule
+     * @return true if the rules can't match the same url
+     */
+    public boolean isDisjoint(final PatternRule other) {
+        boolean prefixConflict = _literalPrefix.startsWith(other._literalPrefix) || other._literalPrefix.startsWith(_literalPrefix);
+        boolean suffixConflict = _literalSuffix.endsWith(other._literalSuffix) || other._literalSuffix.endsWith(_literalSuffix);
+        return !prefixConflict || !suffixConflict;
+    }
+
+    void hit() {
+        _hits.increment();
+    }
+
+    /**
+     * Returns the recent hit count and halves it, so old traffic loses weight.
+     */
+    long decayHits() {
+        long hits = _hits.sumThenReset();
+        _hits.add(hits / 2);
+        return hits;
+    }
+
+    public long getHits() {
+        return _hits.sum();
+    }
+
+    public String getIdentifier() {
+        return _identifier;
+    }
+
+    public String getPath() {
+        return _path;
+    }
+
+    public String getPattern() {
+        return _pattern;
+    }
+
+    public int getPriority() {
+        return _priority;
+    }
+
+    /**
+     * @return query conditions and rewriting or null
+     */
+    public QueryRule getQueryRule() {
+        return _queryRule;
+    }
+
+    public Pattern getRegex() {
+        return _regex;
+    }
+
+    public String getLiteralPrefix() {
+        return _literalPrefix;
+    }
+
+    public String getLiteralSuffix() {
+        return _literalSuffix;
+    }
+
+    /**
+     * @return position in the matching order of the rule set
+     */
+    public int getRank() {
+        return _rank;
+    }
+
+    void setRank(final int rank) {
+        _rank = rank;
+    }
+
+    /**
+     * @return rules of lower rank which may match the same urls, null if unknown
+     */
+    PatternRule[] getConflicts() {
+        return _conflicts;
+    }
+
+    void setConflicts(final PatternRule[] conflicts) {
+        _conflicts = conflicts;
+    }
+
+    private static List<String> extractGroupNames(final String regex) {
+        List<String> groupNames = new ArrayList<>();
+        Matcher groupMatcher = NAMED_GROUP.matcher(regex);
+        while (groupMatcher.find()) {
+            groupNames.add(groupMatcher.group(1));
+        }
+        return groupNames.isEmpty() ? Collections.emptyList() : groupNames;
+    }
+
+    private static String simpleLiteralPrefix(final String pattern) {
+        int end = pattern.length();
+        int wildcard = pattern.indexOf('*');
+        int parameter = pattern.indexOf('{');
+        if (wildcard >= 0) {
+            end = wildcard;
+        }
+        if (parameter >= 0) {
+            end = Math.min(end, parameter);
+        }
+        return pattern.substring(0, end);
+    }
+
+    private static String simpleLiteralSuffix(final String pattern) {
+        int start = Math.max(pattern.lastIndexOf('*'), pattern.lastIndexOf('}')) + 1;
+        return pattern.substring(start);
+    }
+
+    /**
+     * Collects the characters every match has to start with. Stops at the first regex construct
+     * and drops a character followed by a quantifier. Alternations disable the prefix.
+     */
+    private static String regexLiteralPrefix(final String regex) {
+        StringBuilder prefix = new StringBuilder();
+        if (regex.indexOf('|') < 0) {
+            int i = regex.startsWith("^") ? 1 : 0;
+            while (i < regex.length()) {
+                char current = regex.charAt(i);
+                int next = i + 1;
+                if (current == '\\' && next < regex.length() && !Character.isLetterOrDigit(regex.charAt(next))) {
+                    current = regex.charAt(next);
+                    next++;
+                } else if (REGEX_META.indexOf(current) >= 0) {
+                    break;
+                }
+                if (next < regex.length() && QUANTIFIERS.indexOf(regex.charAt(next)) >= 0) {
+                    break;
+                }
+                prefix.append(current);
+                i = next;
+            }
+        }
+        return prefix.toString();
+    }
+
+    @Override
+    public String toString() {
+        return _pattern + " (" + _path + ")";
+    }
+}
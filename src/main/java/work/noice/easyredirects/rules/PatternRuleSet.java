@@ -0,0 +1,303 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ordered set of pattern rules of a site.
+ * <p>
+ * The matching order is defined by the priority (highest first) and the node path, so the result of a lookup
+ * is always the first matching rule of this order. Within this semantics the rules are evaluated adaptively:
+ * frequently hit rules and rules with long literal prefixes are tried first. If such a rule matches, only its
+ * conflicting predecessors (rules of lower rank which may match the same urls) have to be checked.
+ * </p>
+ * <p>
+ * Huge rule sets can be evaluated in parallel instead: the rules are split into chunks in matching order, which are
+ * evaluated on a fork-join pool. A match cancels the evaluation of all later rules, the first matching rule wins.
+ * </p>
+ */
+public class PatternRuleSet {
+    public static final PatternRuleSet EMPTY = new PatternRuleSet(Collections.emptyList());
+
+    static final Comparator<PatternRule> MATCHING_ORDER = Comparator.comparingInt(PatternRule::getPriority).reversed().thenComparing(PatternRule::getPath);
+    private static final int REORDER_INTERVAL = 1024;
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 10000;
+
+    private static final int MAX_CONFLICTS = 64;
+    private static final int MIN_CHUNK_SIZE = 256;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final PatternRule[] _rules;
+    private final AtomicInteger _lookups = new AtomicInteger();
+    private final AtomicBoolean _reordering = new AtomicBoolean();
+    private final ForkJoinPool _pool;
+    private final int _chunkSize;
+    private volatile PatternRule[] _evaluationOrder;
+
+    public PatternRuleSet(final Collection<PatternRule> rules) {
+        this(rules, null);
+    }
+
+    /**
+     * @param rules pattern rules
+     * @param pool  pool for evaluating the rules in parallel, null for sequential evaluation
+     */
+    public PatternRuleSet(final Collection<PatternRule> rules, final ForkJoinPool pool) {
+        _pool = pool;
+        _chunkSize = pool != null ? Math.max(MIN_CHUNK_SIZE, rules.size() / (pool.getParallelism() * CHUNKS_PER_THREAD)) : 0;
+        _rules = rules.toArray(new PatternRule[0]);
+        Arrays.sort(_rules, MATCHING_ORDER);
+        for (int i = 0; i < _rules.length; i++) {
+            _rules[i].setRank(i);
+        }
+        computeConflicts();
+        _evaluationOrder = _rules.clone();
+        Arrays.sort(_evaluationOrder, evaluationOrder());
+    }
+
+    /**
+     * Finds the first matching rule.
+     *
+     * @param requestUrl request url
+     * @return match or null, if no rule matches
+     */
+    public PatternMatch match(final String requestUrl) {
+        return match(requestUrl, ParsedQuery.EMPTY);
+    }
+
+    /**
+     * Finds the first matching rule, including the query conditions of the rules.
+     *
+     * @param requestUrl request url
+     * @param query      parsed request query
+     * @return match or null, if no rule matches
+     */
+    public PatternMatch match(final String requestUrl, final ParsedQuery query) {
+        PatternMatch result = _pool != null ? matchParallel(requestUrl, query) : matchSequential(requestUrl, query);
+        if (result != null) {
+            result.getRule().hit();
+        }
+        if (_pool == null && _lookups.incrementAndGet() % REORDER_INTERVAL == 0) {
+            reorder();
+        }
+        return result;
+    }
+
+    private PatternMatch matchSequential(final String requestUrl, final ParsedQuery query) {
+        PatternMatch result = null;
+        for (PatternRule rule : _evaluationOrder) {
+            Map<String, String> params = rule.match(requestUrl, query);
+            if (params != null) {
+                result = resolveFirstMatch(new PatternMatch(rule, params), requestUrl, query);
+                break;
+            }
+        }
+        return result;
+    }
+
+    private PatternMatch matchParallel(final String requestUrl, final ParsedQuery query) {
+        PatternMatch result;
+        try {
+            result = _pool.invoke(new ParallelMatch(requestUrl, query, new AtomicInteger(Integer.MAX_VALUE), 0, _rules.length));
+        } catch (RejectedExecutionException e) {
+            // pool shut down, e.g. replaced after a configuration change
+            result = matchSequential(requestUrl, query);
+        }
+        return result;
+    }
+
+    /**
+     * Checks the predecessors of the candidate, which may match the same url, in matching order.
+     * A matching predecessor becomes the new candidate, until no predecessor matches.
+     */
+    private PatternMatch resolveFirstMatch(final PatternMatch candidate, final String requestUrl, final ParsedQuery query) {
+        PatternMatch winner = candidate;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            PatternRule[] predecessors = winner.getRule().getConflicts();
+            int count = predecessors != null ? predecessors.length : winner.getRule().getRank();
+            for (int i = 0; i < count && !changed; i++) {
+                PatternRule predecessor = predecessors != null ? predecessors[i] : _rules[i];
+                Map<String, String> params = predecessor.match(requestUrl, query);
+                if (params != null) {
+                    winner = new PatternMatch(predecessor, params);
+                    changed = true;
+                }
+            }
+        }
+        return winner;
+    }
+
+    /**
+     * Sorts the evaluation order by recent hits. Only one thread reorders, lookups continue with the old order.
+     */
+    private void reorder() {
+        if (_reordering.compareAndSet(false, true)) {
+            try {
+                long[] hits = new long[_rules.length];
+                for (PatternRule rule : _rules) {
+                    hits[rule.getRank()] = rule.decayHits();
+                }
+                PatternRule[] evaluationOrder = _rules.clone();
+                Arrays.sort(evaluationOrder, Comparator.<PatternRule>comparingLong(rule -> hits[rule.getRank()]).reversed().thenComparing(evaluationOrder()));
+                _evaluationOrder = evaluationOrder;
+            } finally {
+                _reordering.set(false);
+            }
+        }
+    }
+
+    /**
+     * Collects the conflicting predecessors of every rule by its literal prefix. Rules with too many conflicts
+     * keep null and check all predecessors.
+     */
+    private void computeConflicts() {
+        NavigableMap<String, List<PatternRule>> byPrefix = new TreeMap<>();
+        for (PatternRule rule : _rules) {
+            byPrefix.computeIfAbsent(rule.getLiteralPrefix(), key -> new ArrayList<>()).add(rule);
+        }
+        for (PatternRule rule : _rules) {
+            String prefix = rule.getLiteralPrefix();
+            List<PatternRule> conflicts = new ArrayList<>();
+            boolean bounded = true;
+            for (int length = 0; length < prefix.length() && bounded; length++) {
+                bounded = collectConflicts(rule, byPrefix.get(prefix.substring(0, length)), conflicts);
+            }
+            for (List<PatternRule> candidates : byPrefix.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+                if (bounded) {
+                    bounded = collectConflicts(rule, candidates, conflicts);
+                }
+            }
+            if (bounded) {
+                conflicts.sort(Comparator.comparingInt(PatternRule::getRank));
+                rule.setConflicts(conflicts.toArray(new PatternRule[0]));
+            }
+        }
+    }
+
+    private static boolean collectConflicts(final PatternRule rule, final List<PatternRule> candidates, final List<PatternRule> conflicts) {
+        if (candidates != null) {
+            for (PatternRule candidate : candidates) {
+                if (candidate.getRank() < rule.getRank() && !candidate.isDisjoint(rule)) {
+                    conflicts.add(candidate);
+                }
+            }
+        }
+        return conflicts.size() <= MAX_CONFLICTS;
+    }
+
+    /**
+     * Cheap rules first: long literal prefixes reject non-matching urls without regex evaluation.
+     */
+    private static Comparator<PatternRule> evaluationOrder() {
+        return Comparator.<PatternRule>comparingInt(rule -> rule.getLiteralPrefix().length() + rule.getLiteralSuffix().length()).reversed().thenComparingInt(PatternRule::getRank);
+    }
+
+    /**
+     * @return true, if the rules are evaluated in parallel
+     */
+    public boolean isParallel() {
+        return _pool != null;
+    }
+
+    /**
+     * @return rules in matching order
+     */
+    public List<PatternRule> getRules() {
+        return Collections.unmodifiableList(Arrays.asList(_rules));
+    }
+
+    /**
+     * @return rules skipped because they exceeded their step budget
+     */
+    public List<PatternRule> getQuarantinedRules() {
+        List<PatternRule> quarantined = new ArrayList<>();
+        for (PatternRule rule : _rules) {
+            if (rule.isQuarantined()) {
+                quarantined.add(rule);
+            }
+        }
+        return quarantined;
+    }
+
+    public int size() {
+        return _rules.length;
+    }
+
+    /**
+     * Evaluates a range of rules in matching order: splits it in halves, the right half is forked. The rank of the
+     * first match found so far is shared, rules behind it are skipped.
+     */
+    private final class ParallelMatch extends RecursiveTask<PatternMatch> {
+        private static final long serialVersionUID = 1L;
+
+        private final String _requestUrl;
+        private final transient ParsedQuery _query;
+        private final AtomicInteger _firstMatch;
+        private final int _from;
+        private final int _to;
+
+        private ParallelMatch(final String requestUrl, final ParsedQuery query, final AtomicInteger firstMatch, final int from, final int to) {
+            _requestUrl = requestUrl;
+            _query = query;
+            _firstMatch = firstMatch;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected PatternMatch compute() {
+            PatternMatch result = null;
+            if (_to - _from <= _chunkSize) {
+                for (int i = _from; i < _to && i < _firstMatch.get() && result == null; i++) {
+                    Map<String, String> params = _rules[i].match(_requestUrl, _query);
+                    if (params != null) {
+                        _firstMatch.accumulateAndGet(i, Math::min);
+                        result = new PatternMatch(_rules[i], params);
+                    }
+                }
+            } else if (_from < _firstMatch.get()) {
+                int middle = (_from + _to) >>> 1;
+                ParallelMatch right = new ParallelMatch(_requestUrl, _query, _firstMatch, middle, _to);
+                right.fork();
+                PatternMatch left = new ParallelMatch(_requestUrl, _query, _firstMatch, _from, middle).compute();
+                PatternMatch rightResult = right.join();
+                result = left != null ? left : rightResult;
+            }
+            return result;
+        }
+    }
+}
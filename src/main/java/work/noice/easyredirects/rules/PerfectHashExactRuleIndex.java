@@ -0,0 +1,93 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exact redirects of static redirect sets in a {@link MinimalPerfectHash}, e.g. of an archive domain: one probe per
+ * lookup and no keys on the heap. The hash function is reused from the previous index, as long as the urls of the
+ * partition stay the same, so only changed partitions search new seeds.
+ */
+final class PerfectHashExactRuleIndex implements ExactRuleIndex {
+    private final MinimalPerfectHash _hash;
+    private final int[] _offsets;
+    private final ExactRuleArrays _candidates;
+
+    PerfectHashExactRuleIndex(final Map<String, ExactRule[]> rules, final MinimalPerfectHash hash) {
+        _hash = hash;
+        ExactRule[][] slots = new ExactRule[hash.size()][];
+        for (Map.Entry<String, ExactRule[]> entry : rules.entrySet()) {
+            slots[hash.indexOf(entry.getKey())] = entry.getValue();
+        }
+        List<ExactRule> candidates = new ArrayList<>();
+        _offsets = new int[slots.length + 1];
+        for (int slot = 0; slot < slots.length; slot++) {
+            _offsets[slot] = candidates.size();
+            candidates.addAll(List.of(slots[slot]));
+        }
+        _offsets[slots.length] = candidates.size();
+        _candidates = new ExactRuleArrays(candidates);
+    }
+
+    /**
+     * @param rules    candidates by lookup key
+     * @param previous index of the partition in the previous table, may be null
+     * @return index or null, if no perfect hash function was found for the keys
+     */
+    static PerfectHashExactRuleIndex create(final Map<String, ExactRule[]> rules, final ExactRuleIndex previous) {
+        MinimalPerfectHash hash = null;
+        if (previous instanceof PerfectHashExactRuleIndex && ((PerfectHashExactRuleIndex) previous)._hash.covers(rules.keySet())) {
+            hash = ((PerfectHashExactRuleIndex) previous)._hash;
+        }
+        if (hash == null) {
+            hash = MinimalPerfectHash.build(rules.keySet());
+        }
+        return hash != null ? new PerfectHashExactRuleIndex(rules, hash) : null;
+    }
+
+    MinimalPerfectHash getHash() {
+        return _hash;
+    }
+
+    @Override
+    public ExactRule[] get(final String key) {
+        int slot = _hash.indexOf(key);
+        return slot != MinimalPerfectHash.NOT_FOUND ? _candidates.get(_offsets[slot], _offsets[slot + 1]) : null;
+    }
+
+    @Override
+    public int size() {
+        return _hash.size();
+    }
+
+    @Override
+    public long estimateBytes() {
+        return _hash.estimateBytes() + 16L + 4L * _offsets.length + _candidates.estimateBytes();
+    }
+
+    @Override
+    public long estimateOffHeapBytes() {
+        return 0;
+    }
+}
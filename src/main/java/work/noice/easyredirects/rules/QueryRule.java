@@ -0,0 +1,139 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled query conditions and rewriting of a redirect.
+ * <p>
+ * The conditions are written like a query string, e.g. {@code campaign=spring&id={id}&ref=*&preview}:
+ * a literal value has to be equal, * requires any value, {name} captures the value as placeholder for the target url
+ * and a name without value only requires the parameter. Captured parameters are removed from the forwarded query,
+ * like the parameters of the drop list. If a keep list is set, only these parameters are forwarded.
+ * </p>
+ */
+public final class QueryRule {
+    private final Condition[] _conditions;
+    private final ParameterFilter _drop;
+    private final ParameterFilter _keep;
+    private final Set<String> _captured;
+
+    private QueryRule(final List<Condition> conditions, final ParameterFilter drop, final ParameterFilter keep) {
+        _conditions = conditions.toArray(new Condition[0]);
+        _drop = drop;
+        _keep = keep;
+        _captured = new HashSet<>();
+        for (Condition condition : _conditions) {
+            if (condition._captureName != null) {
+                _captured.add(condition._parameter);
+            }
+        }
+    }
+
+    /**
+     * Compiles the query settings of a redirect.
+     *
+     * @param conditions query conditions, may be null
+     * @param drop       comma separated parameters to drop, may be null
+     * @param keep       comma separated parameters to keep, may be null
+     * @return query rule or null, if the redirect has no query settings
+     */
+    public static QueryRule compile(final String conditions, final String drop, final String keep) {
+        List<Condition> parsedConditions = parseConditions(conditions);
+        ParameterFilter dropFilter = ParameterFilter.parse(drop);
+        ParameterFilter keepFilter = ParameterFilter.parse(keep);
+        return parsedConditions.isEmpty() && dropFilter.isEmpty() && keepFilter.isEmpty() ? null : new QueryRule(parsedConditions, dropFilter, keepFilter);
+    }
+
+    /**
+     * Checks the conditions.
+     *
+     * @param query parsed request query
+     * @return captured parameters or null, if a condition is not met
+     */
+    public Map<String, String> match(final ParsedQuery query) {
+        Map<String, String> captured = _captured.isEmpty() ? Collections.emptyMap() : new HashMap<>();
+        for (int i = 0; i < _conditions.length && captured != null; i++) {
+            Condition condition = _conditions[i];
+            String value = query.get(condition._parameter);
+            if (value == null || (condition._value != null && !condition._value.equals(value))) {
+                captured = null;
+            } else if (condition._captureName != null) {
+                captured.put(condition._captureName, value);
+            }
+        }
+        return captured;
+    }
+
+    /**
+     * Rewrites the query for the target url.
+     *
+     * @param query      parsed request query
+     * @param globalDrop parameters dropped for all redirects
+     * @return raw query string without question mark, empty if no parameter is kept
+     */
+    public String rewrite(final ParsedQuery query, final ParameterFilter globalDrop) {
+        return query.format(name -> !globalDrop.matches(name) && !_drop.matches(name) && !_captured.contains(name) && (_keep.isEmpty() || _keep.matches(name)));
+    }
+
+    public boolean hasConditions() {
+        return _conditions.length > 0;
+    }
+
+    private static List<Condition> parseConditions(final String conditions) {
+        List<Condition> parsed = new ArrayList<>();
+        if (conditions != null) {
+            for (String condition : conditions.trim().replaceFirst("^\\?", "").split("&")) {
+                if (!condition.isBlank()) {
+                    int separator = condition.indexOf('=');
+                    String parameter = (separator < 0 ? condition : condition.substring(0, separator)).trim();
+                    String value = separator < 0 ? "*" : condition.substring(separator + 1).trim();
+                    parsed.add(new Condition(parameter, value));
+                }
+            }
+        }
+        return parsed;
+    }
+
+    private static final class Condition {
+        private final String _parameter;
+        private final String _value;
+        private final String _captureName;
+
+        private Condition(final String parameter, final String value) {
+            _parameter = parameter;
+            if (value.length() > 2 && value.startsWith("{") && value.endsWith("}")) {
+                _value = null;
+                _captureName = value.substring(1, value.length() - 1);
+            } else {
+                _value = "*".equals(value) ? null : value;
+                _captureName = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compiled redirects of the workspace, partitioned by request host and site.
+ * <p>
+ * Rules with a host are only matched for requests to this host. Rules without host are partitioned by their site,
+ * and additionally collected in the partition of all sites, which is used for requests without site. A lookup
+ * picks the host partition and the site partition by hash lookup and only searches these two partitions.
+ * Within a partition exact rules are matched before pattern rules, and exact rules with query conditions before
+ * exact rules without.
+ * </p>
+ * <p>
+ * The from urls are canonicalized when they are added and the request path once per lookup,
+ * see {@link UrlCanonicalizer}, so every variant of an url is found by a single hash lookup.
+ * </p>
+ */
+public class RedirectTable {
+    public static final int DEFAULT_COMPACT_THRESHOLD = 100000;
+    public static final RedirectTable EMPTY = new Builder(PatternRule.DEFAULT_STEP_BUDGET).build();
+
+    private static final int KILOBYTE = 1024;
+    private static final int REPORTED_PARTITIONS = 5;
+
+    private final Map<String, Partition> _hosts;
+    private final Map<String, Partition> _sites;
+    private final Partition _allSites;
+    private final Map<String, String> _domainSites;
+    private final UrlCanonicalizer _canonicalizer;
+
+    private RedirectTable(final Map<String, Partition> hosts, final Map<String, Partition> sites, final Partition allSites, final Map<String, String> domainSites, final UrlCanonicalizer canonicalizer) {
+        _hosts = hosts;
+        _sites = sites;
+        _allSites = allSites;
+        _domainSites = domainSites;
+        _canonicalizer = canonicalizer;
+    }
+
+    /**
+     * Finds the redirect of a request: first in the partition of the host, then in the partition of the site.
+     * Requests without site use the site configured for the host domain, or the partition of all sites.
+     *
+     * @param host     request host, may be null
+     * @param siteName site name, null for requests without site
+     * @param path     request path
+     * @return match or null, if no redirect matches
+     */
+    public RuleMatch lookup(final String host, final String siteName, final String path) {
+        return lookup(host, siteName, path, ParsedQuery.EMPTY);
+    }
+
+    /**
+     * Finds the redirect of a request including the query conditions of the redirects.
+     * The path is canonicalized like the from urls of the redirects, without decoding it again.
+     *
+     * @param host     request host, may be null
+     * @param siteName site name, null for requests without site
+     * @param path     percent decoded request path
+     * @param query    parsed request query
+     * @return match or null, if no redirect matches
+     */
+    public RuleMatch lookup(final String host, final String siteName, final String path, final ParsedQuery query) {
+        RuleMatch match = null;
+        String canonicalPath = _canonicalizer.canonicalizeDecoded(path);
+        String key = _canonicalizer.toKey(canonicalPath);
+        String hostKey = normalizeHost(host);
+        if (hostKey != null) {
+            Partition hostPartition = _hosts.get(hostKey);
+            if (hostPartition != null) {
+                match = hostPartition.lookup(key, canonicalPath, query);
+            }
+        }
+        if (match == null) {
+            Partition sitePartition = getSitePartition(hostKey, siteName);
+            if (sitePartition != null) {
+                match = sitePartition.lookup(key, canonicalPath, query);
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Finds the exact redirects without query conditions, which have the same lookup key as an url.
+     * Used to detect duplicates, which differ only in the variant of the url.
+     *
+     * @param host     host of the redirect, may be null
+     * @param siteName site of the redirect, may be null for all sites
+     * @param url      from url
+     * @return identifiers of the redirects
+     */
+    public List<String> findExactDuplicates(final String host, final String siteName, final String url) {
+        List<String> identifiers = new ArrayList<>();
+        String hostKey = normalizeHost(host);
+        Partition partition = hostKey != null ? _hosts.get(hostKey) : getSitePartition(null, siteName);
+        ExactRule[] candidates = partition != null ? partition._exact.get(_canonicalizer.toKey(_canonicalizer.canonicalize(url))) : null;
+        for (int i = 0; candidates != null && i < candidates.length; i++) {
+            if (!candidates[i].hasConditions()) {
+                identifiers.add(candidates[i].getIdentifier());
+            }
+        }
+        return identifiers;
+    }
+
+    /**
+     * @param siteName site name, null for all sites
+     * @return pattern rules of the site partition
+     */
+    public PatternRuleSet getPatternRules(final String siteName) {
+        Partition partition = getSitePartition(null, siteName);
+        return partition != null ? partition._patterns : PatternRuleSet.EMPTY;
+    }
+
+    /**
+     * @return pattern rules of all partitions, which exceeded their step budget
+     */
+    public List<PatternRule> getQuarantinedRules() {
+        List<PatternRule> quarantined = new ArrayList<>(_allSites._patterns.getQuarantinedRules());
+        for (Partition partition : _sites.values()) {
+            quarantined.addAll(partition._patterns.getQuarantinedRules());
+        }
+        for (Partition partition : _hosts.values()) {
+            quarantined.addAll(partition._patterns.getQuarantinedRules());
+        }
+        return quarantined;
+    }
+
+    /**
+     * @return number of rules in the host and site partitions
+     */
+    public int size() {
+        int size = 0;
+        for (Partition partition : _sites.values()) {
+            size += partition.size();
+        }
+        for (Partition partition : _hosts.values()) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    /**
+     * Estimated heap of the exact redirects, for planning the heap of very large redirect sets.
+     * The pattern redirects are not included, their compiled regex dominate and are shared between partitions.
+     *
+     * @return report with the estimated size of all partitions and of the largest partitions
+     */
+    public String getFootprintReport() {
+        Map<String, ExactRuleIndex> indexes = new HashMap<>();
+        indexes.put("all sites", _allSites._exact);
+        _sites.forEach((site, partition) -> indexes.put("site " + site, partition._exact));
+        _hosts.forEach((host, partition) -> indexes.put("host " + host, partition._exact));
+
+        long total = 0;
+        long offHeap = 0;
+        int keys = 0;
+        for (ExactRuleIndex index : indexes.values()) {
+            total += index.estimateBytes();
+            offHeap += index.estimateOffHeapBytes();
+            keys += index.size();
+        }
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%d exact urls in %d partitions, about %d KB", keys, indexes.size(), total / KILOBYTE));
+        if (offHeap > 0) {
+            report.append(String.format(Locale.ROOT, " and %d KB off-heap", offHeap / KILOBYTE));
+        }
+        indexes.entrySet().stream()
+            .sorted((first, second) -> Integer.compare(second.getValue().size(), first.getValue().size()))
+            .limit(REPORTED_PARTITIONS)
+            .forEach(entry -> report.append(String.format(Locale.ROOT, "%n  %s: %d urls, about %d KB%s", entry.getKey(), entry.getValue().size(),
+                (entry.getValue().estimateBytes() + entry.getValue().estimateOffHeapBytes()) / KILOBYTE, describe(entry.getValue()))));
+        return report.toString();
+    }
+
+    private static String describe(final ExactRuleIndex index) {
+        String description = "";
+        if (index instanceof OffHeapExactRuleIndex) {
+            description = ", off-heap";
+        } else if (index instanceof CompactExactRuleIndex) {
+            description = ", compact";
+        } else if (index instanceof PerfectHashExactRuleIndex) {
+            description = ", perfect hash";
+        }
+        return description;
+    }
+
+    private Partition getSitePartition(final String hostKey, final String siteName) {
+        String site = siteName;
+        if (site == null && hostKey != null) {
+            site = _domainSites.get(hostKey);
+        }
+        return site == null ? _allSites : _sites.get(site);
+    }
+
+    static String normalizeHost(final String host) {
+        return host == null || host.isEmpty() ? null : host.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Rules of one host or site.
+     */
+    private static final class Partition {
+        private final ExactRuleIndex _exact;
+        private final PatternRuleSet _patterns;
+
+        private Partition(final ExactRuleIndex exact, final PatternRuleSet patterns) {
+            _exact = exact;
+            _patterns = patterns;
+        }
+
+        private RuleMatch lookup(final String key, final String path, final ParsedQuery query) {
+            RuleMatch match = null;
+            ExactRule[] candidates = _exact.get(key);
+            for (int i = 0; candidates != null && i < candidates.length && match == null; i++) {
+                match = candidates[i].match(query);
+            }
+            if (match == null) {
+                PatternMatch patternMatch = _patterns.match(path, query);
+                if (patternMatch != null) {
+                    PatternRule rule = patternMatch.getRule();
+                    match = new RuleMatch(rule.getIdentifier(), patternMatch.getParameters(), rule.getQueryRule(), true);
+                }
+            }
+            return match;
+        }
+
+        private int size() {
+            return _exact.size() + _patterns.size();
+        }
+    }
+
+    /**
+     * Collects the rules of the table. Exact rules keep the first identifier added for an url.
+     */
+    public static class Builder {
+        private final long _stepBudget;
+        private final UrlCanonicalizer _canonicalizer;
+        private final Map<String, PartitionBuilder> _hosts = new HashMap<>();
+        private final Map<String, PartitionBuilder> _sites = new HashMap<>();
+        private final PartitionBuilder _allSites = new PartitionBuilder();
+        private final Map<String, String> _domainSites = new HashMap<>();
+        private int _compactThreshold = DEFAULT_COMPACT_THRESHOLD;
+        private boolean _offHeap;
+        private final Set<String> _perfectHashPartitions = new HashSet<>();
+        private RedirectTable _previous;
+        private ForkJoinPool _patternPool;
+        private int _parallelThreshold;
+
+        /**
+         * @param stepBudget step budget of the pattern rules
+         */
+        public Builder(final long stepBudget) {
+            this(stepBudget, new UrlCanonicalizer());
+        }
+
+        /**
+         * @param stepBudget    step budget of the pattern rules
+         * @param canonicalizer canonicalization of the from urls and request paths
+         */
+        public Builder(final long stepBudget, final UrlCanonicalizer canonicalizer) {
+            _stepBudget = stepBudget;
+            _canonicalizer = canonicalizer;
+        }
+
+        /**
+         * Assigns a domain of the site configuration to a site.
+         *
+         * @param host     domain name
+         * @param siteName site name
+         * @return this builder
+         */
+        public Builder addDomain(final String host, final String siteName) {
+            String hostKey = normalizeHost(host);
+            if (hostKey != null) {
+                _domainSites.putIfAbsent(hostKey, siteName);
+            }
+            return this;
+        }
+
+        /**
+         * Adds an exact redirect.
+         *
+         * @param host       host of the redirect, may be null
+         * @param siteName   site of the redirect, may be null
+         * @param url        from url
+         * @param identifier node identifier
+         * @return this builder
+         */
+        public Builder addExact(final String host, final String siteName, final String url, final String identifier) {
+            return addExact(host, siteName, url, identifier, null);
+        }
+
+        /**
+         * Adds an exact redirect with query conditions.
+         *
+         * @param host       host of the redirect, may be null
+         * @param siteName   site of the redirect, may be null
+         * @param url        from url
+         * @param identifier node identifier
+         * @param queryRule  query conditions and rewriting, may be null
+         * @return this builder
+         */
+        public Builder addExact(final String host, final String siteName, final String url, final String identifier, final QueryRule queryRule) {
+            ExactRule rule = new ExactRule(identifier, queryRule);
+            String lookupKey = _canonicalizer.toKey(_canonicalizer.canonicalize(url));
+            for (PartitionBuilder partition : partitions(host, siteName)) {
+                partition._exact.computeIfAbsent(lookupKey, key -> new ArrayList<>()).add(rule);
+            }
+            return this;
+        }
+
+        /**
+         * Adds a pattern redirect.
+         *
+         * @param host       host of the redirect, may be null
+         * @param siteName   site of the redirect, may be null
+         * @param identifier node identifier
+         * @param path       node path
+         * @param pattern    redirect pattern
+         * @param priority   priority
+         * @return this builder
+         * @throws java.util.regex.PatternSyntaxException for invalid patterns
+         */
+        public Builder addPattern(final String host, final String siteName, final String identifier, final String path, final String pattern, final int priority) {
+            return addPattern(host, siteName, identifier, path, pattern, priority, null);
+        }
+
+        /**
+         * Adds a pattern redirect with query conditions.
+         *
+         * @param host       host of the redirect, may be null
+         * @param siteName   site of the redirect, may be null
+         * @param identifier node identifier
+         * @param path       node path
+         * @param pattern    redirect pattern
+         * @param priority   priority
+         * @param queryRule  query conditions and rewriting, may be null
+         * @return this builder
+         * @throws java.util.regex.PatternSyntaxException for invalid patterns
+         */
+        public Builder addPattern(final String host, final String siteName, final String identifier, final String path, final String pattern, final int priority, final QueryRule queryRule) {
+            // every rule set ranks its own rule instances, the compiled regex is shared
+            PatternRule rule = new PatternRule(identifier, path, pattern, priority, _stepBudget, queryRule, _canonicalizer.isLowerCase());
+            PatternRule instance = rule;
+            for (PartitionBuilder partition : partitions(host, siteName)) {
+                partition._patterns.add(instance);
+                instance = new PatternRule(rule);
+            }
+            return this;
+        }
+
+        /**
+         * Partitions with more exact redirects are stored in a compact index, which needs less heap than a hash map,
+         * but is slower.
+         *
+         * @param compactThreshold number of exact urls of a partition
+         * @return this builder
+         */
+        public Builder withCompactThreshold(final int compactThreshold) {
+            _compactThreshold = compactThreshold;
+            return this;
+        }
+
+        /**
+         * Stores the partitions above the compact threshold outside of the heap instead of compactly on the heap.
+         *
+         * @param offHeap true for off-heap partitions
+         * @return this builder
+         */
+        public Builder withOffHeap(final boolean offHeap) {
+            _offHeap = offHeap;
+            return this;
+        }
+
+        /**
+         * Stores the exact redirects of these sites and hosts in a minimal perfect hash, e.g. of archives with rarely
+         * changing redirects. The hash function of a partition is taken over from the previous table, if its urls
+         * didn't change.
+         *
+         * @param partitions site names and host names
+         * @return this builder
+         */
+        public Builder withPerfectHash(final Collection<String> partitions) {
+            for (String partition : partitions) {
+                _perfectHashPartitions.add(partition);
+                String hostKey = normalizeHost(partition);
+                if (hostKey != null) {
+                    _perfectHashPartitions.add(hostKey);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @param previous table of the last compile, its perfect hash functions are reused, may be null
+         * @return this builder
+         */
+        public Builder withPrevious(final RedirectTable previous) {
+            _previous = previous;
+            return this;
+        }
+
+        /**
+         * Evaluates the pattern rules of large partitions in parallel.
+         *
+         * @param pool      pool for the evaluation, null for sequential evaluation only
+         * @param threshold minimum number of pattern rules of a partition for the parallel evaluation
+         * @return this builder
+         */
+        public Builder withParallelPatterns(final ForkJoinPool pool, final int threshold) {
+            _patternPool = pool;
+            _parallelThreshold = threshold;
+            return this;
+        }
+
+        public RedirectTable build() {
+            return new RedirectTable(
+                build(_hosts, _previous != null ? _previous._hosts : Map.of()),
+                build(_sites, _previous != null ? _previous._sites : Map.of()),
+                _allSites.build(_compactThreshold, _offHeap, false, null, patternPool(_allSites)),
+                new HashMap<>(_domainSites), _canonicalizer
+            );
+        }
+
+        private List<PartitionBuilder> partitions(final String host, final String siteName) {
+            List<PartitionBuilder> partitions = new ArrayList<>(2);
+            String hostKey = normalizeHost(host);
+            if (hostKey != null) {
+                partitions.add(_hosts.computeIfAbsent(hostKey, key -> new PartitionBuilder()));
+            } else {
+                if (siteName != null) {
+                    partitions.add(_sites.computeIfAbsent(siteName, key -> new PartitionBuilder()));
+                }
+                partitions.add(_allSites);
+            }
+            return partitions;
+        }
+
+        private Map<String, Partition> build(final Map<String, PartitionBuilder> builders, final Map<String, Partition> previous) {
+            Map<String, Partition> partitions = new HashMap<>();
+            for (Map.Entry<String, PartitionBuilder> entry : builders.entrySet()) {
+                Partition previousPartition = previous.get(entry.getKey());
+                partitions.put(entry.getKey(), entry.getValue().build(_compactThreshold, _offHeap,
+                    _perfectHashPartitions.contains(entry.getKey()), previousPartition != null ? previousPartition._exact : null,
+                    patternPool(entry.getValue())));
+            }
+            return partitions;
+        }
+
+        private ForkJoinPool patternPool(final PartitionBuilder builder) {
+            return _patternPool != null && builder._patterns.size() >= _parallelThreshold ? _patternPool : null;
+        }
+    }
+
+    private static final class PartitionBuilder {
+        private final Map<String, List<ExactRule>> _exact = new HashMap<>();
+        private final Collection<PatternRule> _patterns = new ArrayList<>();
+
+        private Partition build(final int compactThreshold, final boolean offHeap, final boolean perfectHash, final ExactRuleIndex previous,
+                                final ForkJoinPool patternPool) {
+            Map<String, ExactRule[]> exact = new HashMap<>();
+            for (Map.Entry<String, List<ExactRule>> entry : _exact.entrySet()) {
+                List<ExactRule> candidates = new ArrayList<>();
+                ExactRule fallback = null;
+                for (ExactRule rule : entry.getValue()) {
+                    if (rule.hasConditions()) {
+                        candidates.add(rule);
+                    } else if (fallback == null) {
+                        fallback = rule;
+                    }
+                }
+                if (fallback != null) {
+                    candidates.add(fallback);
+                }
+                exact.put(entry.getKey(), candidates.toArray(new ExactRule[0]));
+            }
+            // without perfect hash function, e.g. on a 64-bit hash collision, the partition is stored as usual
+            ExactRuleIndex index = perfectHash ? PerfectHashExactRuleIndex.create(exact, previous) : null;
+            if (index == null && exact.size() > compactThreshold) {
+                index = offHeap ? new OffHeapExactRuleIndex(exact) : new CompactExactRuleIndex(exact);
+            }
+            if (index == null) {
+                index = new HashExactRuleIndex(exact);
+            }
+            return new Partition(index, new PatternRuleSet(_patterns, patternPool));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Steps of a redirect decision with the nanoseconds spent since the previous step, e.g. for the debug header of a
+ * request or the url test in the redirects app. The {@link #NONE} trace records nothing.
+ */
+public class RedirectTrace {
+    public static final RedirectTrace NONE = new RedirectTrace(false, false, null, false);
+
+    private final boolean _enabled;
+    private final boolean _dryRun;
+    private final String _host;
+    private final boolean _exposed;
+    private final List<Step> _steps = new ArrayList<>();
+    private long _last = System.nanoTime();
+
+    /**
+     * @param dryRun true for a test without side effects like cache headers and statistics
+     * @param host   host of a test, null for the host of the request
+     */
+    public RedirectTrace(final boolean dryRun, final String host) {
+        this(true, dryRun, host, false);
+    }
+
+    /**
+     * @param dryRun  true for a test without side effects like cache headers and statistics
+     * @param host    host of a test, null for the host of the request
+     * @param exposed true, if the trace is sent with the response, which must not be cached then
+     */
+    public RedirectTrace(final boolean dryRun, final String host, final boolean exposed) {
+        this(true, dryRun, host, exposed);
+    }
+
+    private RedirectTrace(final boolean enabled, final boolean dryRun, final String host, final boolean exposed) {
+        _enabled = enabled;
+        _dryRun = dryRun;
+        _host = host;
+        _exposed = exposed;
+    }
+
+    /**
+     * Records a step of the decision.
+     *
+     * @param phase  phase name, e.g. exclude, site, exact or pattern
+     * @param detail result of the phase
+     */
+    public void record(final String phase, final String detail) {
+        if (_enabled) {
+            long now = System.nanoTime();
+            _steps.add(new Step(phase, detail, now - _last));
+            _last = now;
+        }
+    }
+
+    /**
+     * Records a match with its redirect identifier and extracted parameters.
+     *
+     * @param phase      phase name
+     * @param identifier redirect identifier
+     * @param parameters extracted parameters, may be null
+     */
+    public void recordMatch(final String phase, final String identifier, final Map<String, String> parameters) {
+        if (_enabled) {
+            record(phase, parameters == null || parameters.isEmpty() ? identifier : identifier + " " + parameters);
+        }
+    }
+
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    public boolean isDryRun() {
+        return _dryRun;
+    }
+
+    public boolean isExposed() {
+        return _exposed;
+    }
+
+    public String getHost() {
+        return _host;
+    }
+
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(_steps);
+    }
+
+    /**
+     * Formats the steps for a response header, e.g. {@code exclude[2100ns]=candidate; site[800ns]=travel; exact[5300ns]=miss}.
+     * Control and non-ASCII characters are replaced.
+     *
+     * @return steps in one line
+     */
+    public String toHeaderValue() {
+        StringBuilder value = new StringBuilder();
+        for (Step step : _steps) {
+            if (value.length() > 0) {
+                value.append("; ");
+            }
+            value.append(step.getPhase()).append('[').append(step.getNanos()).append("ns]=").append(step.getDetail());
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < ' ' || c > '~') {
+                value.setCharAt(i, '?');
+            }
+        }
+        return value.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toHeaderValue();
+    }
+
+    /**
+     * Step of a redirect decision.
+     */
+    public static final class Step {
+        private final String _phase;
+        private final String _detail;
+        private final long _nanos;
+
+        private Step(final String phase, final String detail, final long nanos) {
+            _phase = phase;
+            _detail = detail;
+            _nanos = nanos;
+        }
+
+        public String getPhase() {
+            return _phase;
+        }
+
+        public String getDetail() {
+            return _detail;
+        }
+
+        /**
+         * @return nanoseconds since the previous step or the start of the trace
+         */
+        public long getNanos() {
+            return _nanos;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Map;
+
+/**
+ * Result of a {@link RedirectTable} lookup: the identifier of the redirect node, the extracted parameters and
+ * whether an exact or a pattern rule matched.
+ */
+public class RuleMatch {
+    private final String _identifier;
+    private final Map<String, String> _parameters;
+    private final QueryRule _queryRule;
+    private final boolean _pattern;
+
+    public RuleMatch(final String identifier, final Map<String, String> parameters, final QueryRule queryRule) {
+        this(identifier, parameters, queryRule, false);
+    }
+
+    public RuleMatch(final String identifier, final Map<String, String> parameters, final QueryRule queryRule, final boolean pattern) {
+        _identifier = identifier;
+        _parameters = parameters;
+        _queryRule = queryRule;
+        _pattern = pattern;
+    }
+
+    public String getIdentifier() {
+        return _identifier;
+    }
+
+    /**
+     * @return parameters of a pattern match or the query conditions, null for exact matches without parameters
+     */
+    public Map<String, String> getParameters() {
+        return _parameters;
+    }
+
+    /**
+     * @return query rewriting of the matched redirect or null
+     */
+    public QueryRule getQueryRule() {
+        return _queryRule;
+    }
+
+    /**
+     * @return true, if a pattern rule matched, false for exact rules
+     */
+    public boolean isPattern() {
+        return _pattern;
+    }
+}
@@ -0,0 +1,232 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Versioned binary file of the redirects compiled into the {@link RedirectTable}, so a restarted instance can
+ * compile the table without querying the workspace. The file is memory mapped for reading and verified by a
+ * checksum. The {@link #stamp(Collection)} of the redirects tells, if the snapshot is still up to date.
+ * <p>
+ * Format: magic, version, number of redirects, the redirects with their properties as length prefixed UTF-8,
+ * CRC32 of all bytes before.
+ * </p>
+ */
+public final class RuleSnapshot {
+    static final int MAGIC = 0x45525453;
+    static final int VERSION = 1;
+    private static final int NULL_LENGTH = -1;
+
+    private RuleSnapshot() {
+    }
+
+    /**
+     * Writes the snapshot by moving a temporary file, so a crash never leaves a partial snapshot.
+     *
+     * @param file    snapshot file
+     * @param sources redirects
+     * @throws IOException on write errors
+     */
+    public static void write(final Path file, final Collection<RuleSource> sources) throws IOException {
+        // a relative file name has no parent
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            CRC32 checksum = new CRC32();
+            try (OutputStream stream = Files.newOutputStream(temp)) {
+                DataOutputStream data = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(stream), checksum));
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeInt(sources.size());
+                for (RuleSource source : sources) {
+                    writeSource(data, source);
+                }
+                data.flush();
+                // the checksum itself is not part of the checksum
+                new DataOutputStream(stream).writeLong(checksum.getValue());
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a snapshot.
+     *
+     * @param file snapshot file
+     * @return redirects or null, if the file doesn't exist, has another version or an invalid checksum
+     * @throws IOException on read errors or invalid content
+     */
+    public static List<RuleSource> read(final Path file) throws IOException {
+        List<RuleSource> sources = null;
+        if (Files.isRegularFile(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                sources = read(buffer);
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Order independent fingerprint of the redirects, their paths and modification dates.
+     * Added, removed, moved and changed redirects change the stamp.
+     *
+     * @param sources redirects
+     * @return stamp
+     */
+    public static long stamp(final Collection<RuleSource> sources) {
+        long stamp = sources.size();
+        for (RuleSource source : sources) {
+            long hash = source.getIdentifier().hashCode() * 0x9E3779B97F4A7C15L + Objects.hashCode(source.getPath()) * 0xC2B2AE3D27D4EB4FL
+                + source.getLastModified();
+            hash ^= hash >>> 33;
+            hash *= 0xFF51AFD7ED558CCDL;
+            stamp += hash ^ (hash >>> 33);
+        }
+        return stamp;
+    }
+
+    private static List<RuleSource> read(final ByteBuffer buffer) throws IOException {
+        List<RuleSource> sources = null;
+        if (buffer.limit() >= 3 * Integer.BYTES + Long.BYTES && buffer.getInt() == MAGIC && buffer.getInt() == VERSION
+            && hasValidChecksum(buffer)) {
+            buffer.limit(buffer.limit() - Long.BYTES);
+            try {
+                int size = buffer.getInt();
+                if (size < 0 || size > buffer.remaining()) {
+                    throw new IOException("Invalid number of redirects " + size);
+                }
+                sources = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    sources.add(readSource(buffer));
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated redirects snapshot", e);
+            }
+        }
+        return sources;
+    }
+
+    private static boolean hasValidChecksum(final ByteBuffer buffer) {
+        int end = buffer.limit() - Long.BYTES;
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.duplicate().position(0).limit(end));
+        return checksum.getValue() == buffer.getLong(end);
+    }
+
+    private static void writeSource(final DataOutputStream data, final RuleSource source) throws IOException {
+        writeString(data, source.getIdentifier());
+        writeString(data, source.getPath());
+        writeString(data, source.getHost());
+        writeString(data, source.getSite());
+        writeString(data, source.getRedirect());
+        writeString(data, source.getFromUrl());
+        data.writeBoolean(source.isUsePattern());
+        data.writeInt(source.getPriority());
+        writeString(data, source.getQueryMatch());
+        writeString(data, source.getQueryDrop());
+        writeString(data, source.getQueryKeep());
+        writeTime(data, source.getValidFrom());
+        writeTime(data, source.getValidTo());
+        data.writeLong(source.getLastModified());
+    }
+
+    private static RuleSource readSource(final ByteBuffer buffer) throws IOException {
+        RuleSource source = new RuleSource();
+        source.setIdentifier(readString(buffer));
+        source.setPath(readString(buffer));
+        source.setHost(readString(buffer));
+        source.setSite(readString(buffer));
+        source.setRedirect(readString(buffer));
+        source.setFromUrl(readString(buffer));
+        source.setUsePattern(buffer.get() != 0);
+        source.setPriority(buffer.getInt());
+        source.setQueryMatch(readString(buffer));
+        source.setQueryDrop(readString(buffer));
+        source.setQueryKeep(readString(buffer));
+        source.setValidFrom(readTime(buffer));
+        source.setValidTo(readTime(buffer));
+        source.setLastModified(buffer.getLong());
+        return source;
+    }
+
+    private static void writeString(final DataOutputStream data, final String value) throws IOException {
+        if (value == null) {
+            data.writeInt(NULL_LENGTH);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    private static String readString(final ByteBuffer buffer) throws IOException {
+        String value = null;
+        int length = buffer.getInt();
+        if (length < NULL_LENGTH || length > buffer.remaining()) {
+            throw new IOException("Invalid string length " + length + " at " + (buffer.position() - Integer.BYTES));
+        }
+        if (length != NULL_LENGTH) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static void writeTime(final DataOutputStream data, final Long time) throws IOException {
+        data.writeBoolean(time != null);
+        data.writeLong(time != null ? time : 0L);
+    }
+
+    private static Long readTime(final ByteBuffer buffer) {
+        boolean present = buffer.get() != 0;
+        long time = buffer.getLong();
+        return present ? time : null;
+    }
+}
@@ -0,0 +1,163 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+/**
+ * Properties of a redirect node, which are compiled into the {@link RedirectTable}.
+ * Read from the workspace or from a {@link RuleSnapshot} after a restart.
+ */
+public class RuleSource {
+    private String _identifier;
+    private String _path;
+    private String _host;
+    private String _site;
+    private String _redirect;
+    private String _fromUrl;
+    private boolean _usePattern;
+    private int _priority;
+    private String _queryMatch;
+    private String _queryDrop;
+    private String _queryKeep;
+    private Long _validFrom;
+    private Long _validTo;
+    private long _lastModified;
+
+    /**
+     * @return query conditions and rewriting of the redirect or null
+     */
+    public QueryRule createQueryRule() {
+        return QueryRule.compile(_queryMatch, _queryDrop, _queryKeep);
+    }
+
+    public String getIdentifier() {
+        return _identifier;
+    }
+
+    public void setIdentifier(String identifier) {
+        _identifier = identifier;
+    }
+
+    public String getPath() {
+        return _path;
+    }
+
+    public void setPath(String path) {
+        _path = path;
+    }
+
+    public String getHost() {
+        return _host;
+    }
+
+    public void setHost(String host) {
+        _host = host;
+    }
+
+    public String getSite() {
+        return _site;
+    }
+
+    public void setSite(String site) {
+        _site = site;
+    }
+
+    public String getRedirect() {
+        return _redirect;
+    }
+
+    public void setRedirect(String redirect) {
+        _redirect = redirect;
+    }
+
+    public String getFromUrl() {
+        return _fromUrl;
+    }
+
+    public void setFromUrl(String fromUrl) {
+        _fromUrl = fromUrl;
+    }
+
+    public boolean isUsePattern() {
+        return _usePattern;
+    }
+
+    public void setUsePattern(boolean usePattern) {
+        _usePattern = usePattern;
+    }
+
+    public int getPriority() {
+        return _priority;
+    }
+
+    public void setPriority(int priority) {
+        _priority = priority;
+    }
+
+    public String getQueryMatch() {
+        return _queryMatch;
+    }
+
+    public void setQueryMatch(String queryMatch) {
+        _queryMatch = queryMatch;
+    }
+
+    public String getQueryDrop() {
+        return _queryDrop;
+    }
+
+    public void setQueryDrop(String queryDrop) {
+        _queryDrop = queryDrop;
+    }
+
+    public String getQueryKeep() {
+        return _queryKeep;
+    }
+
+    public void setQueryKeep(String queryKeep) {
+        _queryKeep = queryKeep;
+    }
+
+    public Long getValidFrom() {
+        return _validFrom;
+    }
+
+    public void setValidFrom(Long validFrom) {
+        _validFrom = validFrom;
+    }
+
+    public Long getValidTo() {
+        return _validTo;
+    }
+
+    public void setValidTo(Long validTo) {
+        _validTo = validTo;
+    }
+
+    /**
+     * @return last modification of the node in milliseconds, 0 if unknown
+     */
+    public long getLastModified() {
+        return _lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        _lastModified = lastModified;
+    }
+}
@@ -0,0 +1,144 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first thread loads, the others wait for its result. Results are
+ * not kept, a load after the completion starts a new one. The number of concurrent loads over all keys can be limited.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> _flights = new ConcurrentHashMap<>();
+    private final Semaphore _permits;
+    private final int _maxConcurrent;
+    private final LongAdder _coalesced = new LongAdder();
+
+    /**
+     * @param maxConcurrent maximum number of concurrent loads, 0 for no limit
+     */
+    public SingleFlight(final int maxConcurrent) {
+        _maxConcurrent = maxConcurrent;
+        _permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+    }
+
+    /**
+     * Loads the value of the key or waits for the running load of the key. Exceptions of the loader are thrown
+     * in all waiting threads. If the loading thread is interrupted, a waiting thread takes over the load.
+     *
+     * @param key    key
+     * @param loader loader of the value
+     * @return loaded value
+     * @throws InterruptedException if interrupted while waiting for the load or a permit
+     */
+    public V load(final K key, final Supplier<V> loader) throws InterruptedException {
+        V value = null;
+        boolean loaded = false;
+        while (!loaded) {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> running = _flights.putIfAbsent(key, flight);
+            if (running == null) {
+                value = lead(key, flight, loader);
+                loaded = true;
+            } else {
+                _coalesced.increment();
+                try {
+                    value = running.get();
+                    loaded = true;
+                } catch (CancellationException e) {
+                    // loading thread interrupted, try again
+                } catch (ExecutionException e) {
+                    throw rethrow(e.getCause());
+                }
+            }
+        }
+        return value;
+    }
+
+    private V lead(final K key, final CompletableFuture<V> flight, final Supplier<V> loader) throws InterruptedException {
+        try {
+            if (_permits != null) {
+                _permits.acquire();
+            }
+            try {
+                V value = loader.get();
+                flight.complete(value);
+                return value;
+            } finally {
+                if (_permits != null) {
+                    _permits.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            flight.cancel(false);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            _flights.remove(key, flight);
+        }
+    }
+
+    private static RuntimeException rethrow(final Throwable cause) {
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+    }
+
+    /**
+     * @return maximum number of concurrent loads, 0 for no limit
+     */
+    public int getMaxConcurrent() {
+        return _maxConcurrent;
+    }
+
+    /**
+     * @return number of loads waiting for a permit
+     */
+    public int getQueued() {
+        return _permits != null ? _permits.getQueueLength() : 0;
+    }
+
+    /**
+     * @return number of keys loading at the moment
+     */
+    public int size() {
+        return _flights.size();
+    }
+
+    /**
+     * @return number of loads served by the load of another thread
+     */
+    public long getCoalesced() {
+        return _coalesced.sum();
+    }
+}
@@ -0,0 +1,193 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+
+/**
+ * Canonicalization policy of request paths and from urls. The from urls are canonicalized when the redirects
+ * are compiled and the request path once per lookup, so all variants of an url share one lookup key.
+ * Request paths are already percent decoded by the servlet container and {@link java.net.URI#getPath()},
+ * so they are not decoded again.
+ * <ul>
+ *     <li>percent decoding: /caf%C3%A9 is /caf&eacute;</li>
+ *     <li>dot segments: /a/./b/../c is /a/c</li>
+ *     <li>case folding (off by default): /Foo is /foo, pattern redirects ignore the case</li>
+ *     <li>trailing slash: /foo/ is /foo for exact redirects</li>
+ * </ul>
+ */
+public class UrlCanonicalizer {
+    private boolean _percentDecode = true;
+    private boolean _removeDotSegments = true;
+    private boolean _lowerCase;
+    private boolean _stripTrailingSlash = true;
+
+    /**
+     * Canonical form of a path for pattern matching: decoded, without dot segments and optionally lower case.
+     *
+     * @param path request path or from url
+     * @return canonical path
+     */
+    public String canonicalize(final String path) {
+        return canonicalize(path, _percentDecode, _lowerCase);
+    }
+
+    /**
+     * Canonical form of a percent decoded request path. Decoding it again would turn an encoded percent sign
+     * into an escape, e.g. /a%2525b into /a%b.
+     *
+     * @param path decoded request path
+     * @return canonical path
+     */
+    public String canonicalizeDecoded(final String path) {
+        return canonicalize(path, false, _lowerCase);
+    }
+
+    /**
+     * Checks if the case folding changes the canonical form of a path, i.e. the canonical form doesn't match
+     * the path in case-sensitive comparisons like the ones of nginx.
+     *
+     * @param path from url
+     * @return true, if case folding is enabled and the path has upper case characters
+     */
+    public boolean isCaseFolded(final String path) {
+        return _lowerCase && !canonicalize(path, _percentDecode, false).equals(canonicalize(path));
+    }
+
+    private String canonicalize(final String path, final boolean percentDecode, final boolean lowerCase) {
+        String canonical = path;
+        if (percentDecode && canonical.indexOf('%') >= 0) {
+            canonical = percentDecode(canonical);
+        }
+        if (_removeDotSegments && canonical.contains("/.")) {
+            canonical = removeDotSegments(canonical);
+        }
+        if (lowerCase) {
+            canonical = canonical.toLowerCase(Locale.ROOT);
+        }
+        return canonical;
+    }
+
+    /**
+     * Lookup key of exact redirects: the canonical path without trailing slash.
+     *
+     * @param canonicalPath result of {@link #canonicalize(String)}
+     * @return lookup key
+     */
+    public String toKey(final String canonicalPath) {
+        String key = canonicalPath;
+        if (_stripTrailingSlash) {
+            int end = key.length();
+            while (end > 1 && key.charAt(end - 1) == '/') {
+                end--;
+            }
+            key = key.substring(0, end);
+        }
+        return key;
+    }
+
+    /**
+     * Decodes percent escapes as UTF-8. Unlike form decoding, a plus stays a plus. Malformed escapes are kept.
+     */
+    static String percentDecode(final String value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char current = value.charAt(i);
+            int high = i + 2 < value.length() ? Character.digit(value.charAt(i + 1), 16) : -1;
+            int low = high >= 0 ? Character.digit(value.charAt(i + 2), 16) : -1;
+            if (current == '%' && low >= 0) {
+                bytes.write((high << 4) + low);
+                i += 3;
+            } else {
+                byte[] encoded = String.valueOf(current).getBytes(StandardCharsets.UTF_8);
+                if (Character.isHighSurrogate(current) && i + 1 < value.length()) {
+                    encoded = value.substring(i, i + 2).getBytes(StandardCharsets.UTF_8);
+                    i++;
+                }
+                bytes.write(encoded, 0, encoded.length);
+                i++;
+            }
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Removes . and .. segments of an absolute path, see RFC 3986 section 5.2.4.
+     */
+    static String removeDotSegments(final String path) {
+        Deque<String> segments = new ArrayDeque<>();
+        String[] parts = path.split("/", -1);
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i];
+            boolean last = i == parts.length - 1;
+            if ("..".equals(part)) {
+                segments.pollLast();
+                if (last) {
+                    segments.addLast("");
+                }
+            } else if (".".equals(part)) {
+                if (last) {
+                    segments.addLast("");
+                }
+            } else {
+                segments.addLast(part);
+            }
+        }
+        return (path.startsWith("/") ? "/" : parts[0] + "/") + String.join("/", segments);
+    }
+
+    public boolean isPercentDecode() {
+        return _percentDecode;
+    }
+
+    public void setPercentDecode(boolean percentDecode) {
+        _percentDecode = percentDecode;
+    }
+
+    public boolean isRemoveDotSegments() {
+        return _removeDotSegments;
+    }
+
+    public void setRemoveDotSegments(boolean removeDotSegments) {
+        _removeDotSegments = removeDotSegments;
+    }
+
+    public boolean isLowerCase() {
+        return _lowerCase;
+    }
+
+    public void setLowerCase(boolean lowerCase) {
+        _lowerCase = lowerCase;
+    }
+
+    public boolean isStripTrailingSlash() {
+        return _stripTrailingSlash;
+    }
+
+    public void setStripTrailingSlash(boolean stripTrailingSlash) {
+        _stripTrailingSlash = stripTrailingSlash;
+    }
+}
@@ -23,10 +23,14 @@ package work.noice.easyredirects.setup;
 import info.magnolia.jcr.nodebuilder.task.NodeBuilderTask;
 import info.magnolia.module.DefaultModuleVersionHandler;
 import info.magnolia.module.InstallContext;
+import info.magnolia.module.delta.ArrayDelegateTask;
 import info.magnolia.module.delta.DeltaBuilder;
+import info.magnolia.module.delta.FilterOrderingTask;
 import info.magnolia.module.delta.NodeExistsDelegateTask;
+import info.magnolia.module.delta.RegisterModuleServletsTask;
 import info.magnolia.module.delta.RemoveNodeTask;
 import info.magnolia.module.delta.Task;
+import work.noice.easyredirects.RedirectsFilter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -45,10 +49,26 @@ import static info.magnolia.repository.RepositoryConstants.CONFIG;
  */
 public class RedirectsModuleVersionHandler extends DefaultModuleVersionHandler {
 
+    private static final String FILTER_NAME = "easyredirects";
+    private static final String FILTER_PATH = "/server/filters/" + FILTER_NAME;
+
     private final RemoveNodeTask _removeOldModuleConfig = new RemoveNodeTask("Remove old module config", "/modules/magnolia-vanity-url");
 
+    private final Task _addRedirectsFilter = new NodeExistsDelegateTask("Check redirects filter", "Add the disabled redirects filter if missing.", CONFIG, FILTER_PATH, null,
+        new ArrayDelegateTask("Add redirects filter", "",
+            new NodeBuilderTask("Add redirects filter", "", logging, CONFIG, "/server/filters",
+                addNode(FILTER_NAME, ContentNode.NAME).then(
+                    addProperty("class", (Object) RedirectsFilter.class.getName()),
+                    addProperty("enabled", (Object) Boolean.FALSE)
+                )
+            ),
+            new FilterOrderingTask(FILTER_NAME, "Answer redirects right after setting up the context.", new String[]{"context"})
+        )
+    );
+
     public RedirectsModuleVersionHandler() {
         register(DeltaBuilder.update("1.6.4", "Update for version 1.6.4").addTask(_removeOldModuleConfig));
+        register(DeltaBuilder.update("2.1.0", "Update for version 2.1.0").addTask(_addRedirectsFilter).addTask(new RegisterModuleServletsTask()));
     }
 
     private final Task _addUriRepositoryMapping = new NodeExistsDelegateTask("Check repository mapping", "Add uri to repository mapping for redirects if missing.", CONFIG, "/server/URI2RepositoryMapping/mappings/" + WORKSPACE, null,
@@ -66,6 +86,7 @@ public class RedirectsModuleVersionHandler extends DefaultModuleVersionHandler {
         List<Task> tasks = new ArrayList<>();
         tasks.add(_addUriRepositoryMapping);
         tasks.add(_removeOldModuleConfig);
+        tasks.add(_addRedirectsFilter);
         return tasks;
     }
 }
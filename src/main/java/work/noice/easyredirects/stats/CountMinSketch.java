@@ -0,0 +1,99 @@
+package work.noice.easyredirects.stats;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Count-min sketch with periodic aging. All counters are halved after a fixed number of additions,
+ * so old traffic fades out and the estimates don't saturate under long scans. Not thread safe.
+ */
+class CountMinSketch {
+    private static final int DEPTH = 4;
+    private static final int SAMPLE_FACTOR = 10;
+
+    private final int[] _table;
+    private final int _mask;
+    private final int _sampleSize;
+    private int _additions;
+
+    CountMinSketch(final int expectedKeys) {
+        int width = Integer.highestOneBit(Math.max(16, expectedKeys) - 1) << 1;
+        _table = new int[width * DEPTH];
+        _mask = width - 1;
+        _sampleSize = width * SAMPLE_FACTOR;
+    }
+
+    /**
+     * Adds one occurrence of the key.
+     *
+     * @param key key to count
+     * @return estimated count of the key including this occurrence
+     */
+    int add(final String key) {
+        int hash = spread(key.hashCode());
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = row * (_mask + 1) + indexOf(hash, row);
+            if (_table[index] < Integer.MAX_VALUE) {
+                _table[index]++;
+            }
+            estimate = Math.min(estimate, _table[index]);
+        }
+        if (++_additions >= _sampleSize) {
+            age();
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates the recent count of the key without adding an occurrence.
+     *
+     * @param key key to look up
+     * @return estimated count
+     */
+    int estimate(final String key) {
+        int hash = spread(key.hashCode());
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, _table[row * (_mask + 1) + indexOf(hash, row)]);
+        }
+        return estimate;
+    }
+
+    private void age() {
+        for (int i = 0; i < _table.length; i++) {
+            _table[i] >>>= 1;
+        }
+        _additions = 0;
+    }
+
+    private int indexOf(final int hash, final int row) {
+        int h = hash + row * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h & _mask;
+    }
+
+    private static int spread(final int hash) {
+        int h = hash * 0xC2B2AE35;
+        return h ^ (h >>> 15);
+    }
+}
@@ -0,0 +1,104 @@
+package work.noice.easyredirects.stats;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import work.noice.easyredirects.stats.MissingUrlTracker.MissingUrl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text format of the missing urls exchanged between the instances: one line per url with site, path, hits, error
+ * and last seen, separated by tabs. Percent signs, tabs and line breaks of site and path are percent encoded.
+ */
+public final class MissingUrlFormat {
+    public static final String CONTENT_TYPE = "text/tab-separated-values";
+
+    private static final int COLUMNS = 5;
+
+    private MissingUrlFormat() {
+    }
+
+    /**
+     * @param missingUrls missing urls
+     * @return lines of the missing urls
+     */
+    public static String format(final List<MissingUrl> missingUrls) {
+        StringBuilder text = new StringBuilder();
+        for (MissingUrl missingUrl : missingUrls) {
+            text.append(escape(missingUrl.getSiteName())).append('\t')
+                .append(escape(missingUrl.getPath())).append('\t')
+                .append(missingUrl.getCount()).append('\t')
+                .append(missingUrl.getError()).append('\t')
+                .append(missingUrl.getLastSeen()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * @param text lines of missing urls
+     * @return missing urls
+     * @throws IllegalArgumentException on malformed lines
+     */
+    public static List<MissingUrl> parse(final String text) {
+        List<MissingUrl> missingUrls = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            if (!line.isEmpty()) {
+                String[] columns = line.split("\t", -1);
+                if (columns.length != COLUMNS) {
+                    throw new IllegalArgumentException("Invalid missing url line: " + line);
+                }
+                missingUrls.add(new MissingUrl(unescape(columns[0]), new TopKSketch.Entry(
+                    unescape(columns[1]), Long.parseLong(columns[2]), Long.parseLong(columns[3]), Long.parseLong(columns[4])
+                )));
+            }
+        }
+        return missingUrls;
+    }
+
+    private static String escape(final String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char current : value.toCharArray()) {
+            if (current == '%' || current == '\t' || current == '\n' || current == '\r') {
+                escaped.append(String.format("%%%02X", (int) current));
+            } else {
+                escaped.append(current);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape(final String value) {
+        StringBuilder unescaped = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char current = value.charAt(i);
+            if (current == '%' && i + 2 < value.length()) {
+                unescaped.append((char) Integer.parseInt(value.substring(i + 1, i + 3), 16));
+                i += 3;
+            } else {
+                unescaped.append(current);
+                i++;
+            }
+        }
+        return unescaped.toString();
+    }
+}
@@ -0,0 +1,234 @@
+package work.noice.easyredirects.stats;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import work.noice.easyredirects.RedirectsModule;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+import jakarta.inject.Singleton;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import static work.noice.easyredirects.RedirectsService.DEF_SITE;
+import static org.apache.commons.lang3.StringUtils.defaultIfEmpty;
+import static org.apache.commons.lang3.StringUtils.defaultString;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+/**
+ * Tracks the most frequent request urls without a matching redirect per site.
+ * Every site gets a {@link StripedTopKSketch} of the configured capacity, so crawler scans can't grow the memory
+ * and concurrent misses of different urls don't contend for one lock.
+ * The redirects app of the author merges the missing urls of the publics, which serve the requests, from their
+ * missing urls endpoints.
+ */
+@Singleton
+public class MissingUrlTracker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MissingUrlTracker.class);
+
+    /**
+     * Request header with the missing url token of the module.
+     */
+    public static final String HEADER_TOKEN = "X-Redirect-Token";
+
+    private static final Duration SOURCE_TIMEOUT = Duration.ofSeconds(5);
+
+    private final ConcurrentMap<String, StripedTopKSketch> _sketches = new ConcurrentHashMap<>();
+    private volatile HttpClient _client;
+
+    private Provider<RedirectsModule> _redirectsModule;
+
+    /**
+     * Counts a request url without redirect.
+     *
+     * @param siteName site name of the request
+     * @param path     request path without site prefix
+     */
+    public void record(final String siteName, final String path) {
+        RedirectsModule redirectsModule = _redirectsModule.get();
+        if (redirectsModule.isTrackMissingUrls() && !isEmpty(path) && path.length() <= redirectsModule.getMissingUrlMaxLength()) {
+            _sketches.computeIfAbsent(defaultIfEmpty(siteName, DEF_SITE), key -> new StripedTopKSketch(redirectsModule.getMissingUrlCapacity())).offer(path);
+        }
+    }
+
+    /**
+     * Returns the most frequent missing urls over all sites.
+     *
+     * @param limit maximum number of entries
+     * @return missing urls ordered by descending hit count
+     */
+    public List<MissingUrl> getTopMissingUrls(final int limit) {
+        List<MissingUrl> missingUrls = new ArrayList<>();
+        for (Map.Entry<String, StripedTopKSketch> sketch : _sketches.entrySet()) {
+            for (TopKSketch.Entry entry : sketch.getValue().top(limit)) {
+                missingUrls.add(new MissingUrl(sketch.getKey(), entry));
+            }
+        }
+        missingUrls.sort(Comparator.comparingLong(MissingUrl::getCount).reversed());
+        return missingUrls.size() > limit ? new ArrayList<>(missingUrls.subList(0, limit)) : missingUrls;
+    }
+
+    /**
+     * Returns the most frequent missing urls of this instance and of the configured missing url sources, e.g. the
+     * publics. The hits of the same url are added up. Sources failing to answer are left out.
+     *
+     * @param limit maximum number of entries
+     * @return missing urls ordered by descending hit count
+     */
+    public List<MissingUrl> collectTopMissingUrls(final int limit) {
+        RedirectsModule module = _redirectsModule.get();
+        Map<String, CompletableFuture<HttpResponse<String>>> responses = new LinkedHashMap<>();
+        for (Map.Entry<String, String> source : module.getMissingUrlSources().entrySet()) {
+            try {
+                String url = source.getValue() + (source.getValue().contains("?") ? "&" : "?") + "limit=" + limit;
+                HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(SOURCE_TIMEOUT)
+                    .header(HEADER_TOKEN, defaultString(module.getMissingUrlToken()))
+                    .GET()
+                    .build();
+                responses.put(source.getKey(), getClient().sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Invalid missing url source {}.", source.getKey(), e);
+            }
+        }
+
+        List<List<MissingUrl>> lists = new ArrayList<>();
+        lists.add(getTopMissingUrls(limit));
+        for (Map.Entry<String, CompletableFuture<HttpResponse<String>>> response : responses.entrySet()) {
+            try {
+                HttpResponse<String> result = response.getValue().get();
+                if (result.statusCode() == 200) {
+                    lists.add(MissingUrlFormat.parse(result.body()));
+                } else {
+                    LOGGER.warn("Missing url source {} answered with status {}.", response.getKey(), result.statusCode());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | IllegalArgumentException e) {
+                LOGGER.warn("Error on reading the missing urls of source {}.", response.getKey(), e);
+            }
+        }
+        return merge(lists, limit);
+    }
+
+    /**
+     * Adds up the hits of the same url of several instances.
+     *
+     * @param lists missing urls of the instances
+     * @param limit maximum number of entries
+     * @return missing urls ordered by descending hit count
+     */
+    static List<MissingUrl> merge(final Collection<List<MissingUrl>> lists, final int limit) {
+        Map<String, MissingUrl> merged = new HashMap<>();
+        for (List<MissingUrl> list : lists) {
+            for (MissingUrl missingUrl : list) {
+                merged.merge(missingUrl.getSiteName() + '\n' + missingUrl.getPath(), missingUrl, MissingUrl::add);
+            }
+        }
+        List<MissingUrl> missingUrls = new ArrayList<>(merged.values());
+        missingUrls.sort(Comparator.comparingLong(MissingUrl::getCount).reversed().thenComparing(MissingUrl::getPath));
+        return missingUrls.size() > limit ? new ArrayList<>(missingUrls.subList(0, limit)) : missingUrls;
+    }
+
+    private HttpClient getClient() {
+        if (_client == null) {
+            _client = HttpClient.newBuilder().connectTimeout(SOURCE_TIMEOUT).build();
+        }
+        return _client;
+    }
+
+    /**
+     * Stops reporting a missing url, e.g. after a redirect has been created for it.
+     *
+     * @param siteName site name
+     * @param path     request path
+     */
+    public void remove(final String siteName, final String path) {
+        StripedTopKSketch sketch = _sketches.get(defaultIfEmpty(siteName, DEF_SITE));
+        if (sketch != null) {
+            sketch.remove(path);
+        }
+    }
+
+    public void clear() {
+        _sketches.clear();
+    }
+
+    @Inject
+    public void setRedirectsModule(final Provider<RedirectsModule> redirectsModule) {
+        _redirectsModule = redirectsModule;
+    }
+
+    /**
+     * Missing url entry of a site.
+     */
+    public static class MissingUrl {
+        private final String _siteName;
+        private final TopKSketch.Entry _entry;
+
+        public MissingUrl(final String siteName, final TopKSketch.Entry entry) {
+            _siteName = siteName;
+            _entry = entry;
+        }
+
+        public String getSiteName() {
+            return _siteName;
+        }
+
+        public String getPath() {
+            return _entry.getKey();
+        }
+
+        public long getCount() {
+            return _entry.getCount();
+        }
+
+        public long getError() {
+            return _entry.getError();
+        }
+
+        public long getLastSeen() {
+            return _entry.getLastSeen();
+        }
+
+        private MissingUrl add(final MissingUrl other) {
+            return new MissingUrl(_siteName, new TopKSketch.Entry(
+                getPath(), getCount() + other.getCount(), getError() + other.getError(), Math.max(getLastSeen(), other.getLastSeen())
+            ));
+        }
+    }
+}
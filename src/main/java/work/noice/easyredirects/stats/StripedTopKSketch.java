@@ -0,0 +1,111 @@
+package work.noice.easyredirects.stats;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@link TopKSketch} split into stripes by key hash, so concurrent offers of different keys rarely wait for the
+ * same lock. A key always lands in the same stripe, so its count is the one of a single sketch. Every stripe holds
+ * an equal share of the capacity.
+ */
+public class StripedTopKSketch {
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    private final TopKSketch[] _stripes;
+    private final int _mask;
+
+    public StripedTopKSketch(final int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors());
+    }
+
+    public StripedTopKSketch(final int capacity, final int concurrency) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int stripes = Integer.highestOneBit(Math.max(1, Math.min(concurrency, capacity / MIN_STRIPE_CAPACITY)));
+        _stripes = new TopKSketch[stripes];
+        for (int i = 0; i < stripes; i++) {
+            _stripes[i] = new TopKSketch((capacity + stripes - 1) / stripes);
+        }
+        _mask = stripes - 1;
+    }
+
+    /**
+     * Counts one occurrence of the given key in its stripe.
+     *
+     * @param key key to count
+     */
+    public void offer(final String key) {
+        stripeOf(key).offer(key);
+    }
+
+    /**
+     * Removes the counter of the given key.
+     *
+     * @param key key to remove
+     */
+    public void remove(final String key) {
+        stripeOf(key).remove(key);
+    }
+
+    /**
+     * Returns the most frequent keys of all stripes, highest count first.
+     *
+     * @param limit maximum number of entries
+     * @return entries ordered by descending count
+     */
+    public List<TopKSketch.Entry> top(final int limit) {
+        List<TopKSketch.Entry> entries = new ArrayList<>();
+        for (TopKSketch stripe : _stripes) {
+            entries.addAll(stripe.top(limit));
+        }
+        entries.sort(Comparator.comparingLong(TopKSketch.Entry::getCount).reversed().thenComparing(TopKSketch.Entry::getKey));
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+
+    public int size() {
+        int size = 0;
+        for (TopKSketch stripe : _stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    public long getTotal() {
+        long total = 0L;
+        for (TopKSketch stripe : _stripes) {
+            total += stripe.getTotal();
+        }
+        return total;
+    }
+
+    public int getStripes() {
+        return _stripes.length;
+    }
+
+    private TopKSketch stripeOf(final String key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return _stripes[(hash ^ (hash >>> 16)) & _mask];
+    }
+}
@@ -0,0 +1,227 @@
+package work.noice.easyredirects.stats;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed-memory heavy hitters sketch based on the space-saving algorithm.
+ * Holds at most <code>capacity</code> counters, so the memory stays bounded even if every offered key is unique.
+ * A {@link CountMinSketch} acts as admission filter: an untracked key only replaces the least frequent counter
+ * if its recent frequency is higher than the one of the evicted key, so one-off keys of a crawler scan
+ * can't push out the real heavy hitters.
+ */
+public class TopKSketch {
+
+    private final int _capacity;
+    private final Map<String, Counter> _counters;
+    private final Counter[] _heap;
+    private final CountMinSketch _admission;
+    private int _size;
+    private long _total;
+
+    public TopKSketch(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        _capacity = capacity;
+        _counters = new HashMap<>(capacity * 2);
+        _heap = new Counter[capacity];
+        _admission = new CountMinSketch(capacity * 8);
+    }
+
+    /**
+     * Counts one occurrence of the given key. If the sketch is full, the least frequent key is replaced
+     * as soon as the recent frequency of the new key exceeds the recent frequency of that key.
+     *
+     * @param key key to count
+     */
+    public synchronized void offer(final String key) {
+        _total++;
+        long now = System.currentTimeMillis();
+        int estimate = _admission.add(key);
+        Counter counter = _counters.get(key);
+        if (counter != null) {
+            counter._count++;
+            counter._lastSeen = now;
+            siftDown(counter._index);
+        } else if (_size < _capacity) {
+            counter = new Counter(key, 0);
+            counter._count = 1;
+            counter._lastSeen = now;
+            counter._index = _size;
+            _heap[_size++] = counter;
+            _counters.put(key, counter);
+            siftUp(counter._index);
+        } else if (estimate > _admission.estimate(_heap[0]._key)) {
+            counter = _heap[0];
+            _counters.remove(counter._key);
+            counter._key = key;
+            counter._error = estimate - 1L;
+            counter._count = estimate;
+            counter._lastSeen = now;
+            _counters.put(key, counter);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Removes the counter of the given key, e.g. after a redirect was created for it.
+     *
+     * @param key key to remove
+     */
+    public synchronized void remove(final String key) {
+        Counter counter = _counters.remove(key);
+        if (counter != null) {
+            int index = counter._index;
+            Counter last = _heap[--_size];
+            _heap[_size] = null;
+            if (index < _size) {
+                _heap[index] = last;
+                last._index = index;
+                siftDown(index);
+                siftUp(last._index);
+            }
+        }
+    }
+
+    /**
+     * Returns the most frequent keys, highest count first.
+     *
+     * @param limit maximum number of entries
+     * @return entries ordered by descending count
+     */
+    public synchronized List<Entry> top(final int limit) {
+        List<Entry> entries = new ArrayList<>(_size);
+        for (int i = 0; i < _size; i++) {
+            Counter counter = _heap[i];
+            entries.add(new Entry(counter._key, counter._count, counter._error, counter._lastSeen));
+        }
+        entries.sort(Comparator.comparingLong(Entry::getCount).reversed().thenComparing(Entry::getKey));
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+
+    public synchronized int size() {
+        return _size;
+    }
+
+    public synchronized long getTotal() {
+        return _total;
+    }
+
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    private void siftUp(final int start) {
+        int index = start;
+        Counter counter = _heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (_heap[parent]._count <= counter._count) {
+                break;
+            }
+            place(_heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(final int start) {
+        int index = start;
+        Counter counter = _heap[index];
+        int half = _size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < _size && _heap[right]._count < _heap[child]._count) {
+                child = right;
+            }
+            if (counter._count <= _heap[child]._count) {
+                break;
+            }
+            place(_heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(final Counter counter, final int index) {
+        _heap[index] = counter;
+        counter._index = index;
+    }
+
+    private static final class Counter {
+        private String _key;
+        private long _count;
+        private long _error;
+        private long _lastSeen;
+        private int _index;
+
+        private Counter(final String key, final long error) {
+            _key = key;
+            _error = error;
+        }
+    }
+
+    /**
+     * Snapshot of a tracked key.
+     */
+    public static class Entry {
+        private final String _key;
+        private final long _count;
+        private final long _error;
+        private final long _lastSeen;
+
+        public Entry(final String key, final long count, final long error, final long lastSeen) {
+            _key = key;
+            _count = count;
+            _error = error;
+            _lastSeen = lastSeen;
+        }
+
+        public String getKey() {
+            return _key;
+        }
+
+        /**
+         * @return estimated count
+         */
+        public long getCount() {
+            return _count;
+        }
+
+        /**
+         * @return part of the count estimated by the admission filter before the key was tracked
+         */
+        public long getError() {
+            return _error;
+        }
+
+        public long getLastSeen() {
+            return _lastSeen;
+        }
+    }
+}
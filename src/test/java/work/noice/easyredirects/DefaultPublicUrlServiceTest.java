@@ -25,11 +25,17 @@ import info.magnolia.test.mock.jcr.MockNode;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import static work.noice.easyredirects.RedirectsService.PN_LINK;
 import static work.noice.easyredirects.RedirectsService.PN_REDIRECT;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -40,6 +46,8 @@ import static org.mockito.Mockito.when;
  */
 public class DefaultPublicUrlServiceTest {
     private DefaultPublicUrlService _service;
+    private List<String> _resolvedIds;
+    private ServerConfiguration _serverConfiguration;
 
     @Test
     public void testExternalTarget() throws Exception {
@@ -83,18 +91,54 @@ public class DefaultPublicUrlServiceTest {
         assertThat(_service.createRedirectUrl(mockNode), equalTo("http://www.noice.work/public/noice"));
     }
 
+    @Test
+    public void testBatchTargetUrls() throws Exception {
+        MockNode first = new MockNode("first");
+        first.setIdentifier("1");
+        first.setProperty(PN_LINK, "123-456-789");
+        MockNode second = new MockNode("second");
+        second.setIdentifier("2");
+        second.setProperty(PN_LINK, "123-456-789");
+        MockNode external = new MockNode("external");
+        external.setIdentifier("3");
+        external.setProperty(PN_LINK, "http://www.noice.work");
+
+        Map<String, String> urls = _service.createTargetUrls(List.of(first, second, external));
+        assertThat(urls.get("1"), equalTo("http://www.noice.work/context/page.html"));
+        assertThat(urls.get("2"), equalTo("http://www.noice.work/context/page.html"));
+        assertThat(urls.get("3"), equalTo("http://www.noice.work"));
+        assertThat(_resolvedIds, equalTo(List.of("123-456-789")));
+    }
+
+    @Test
+    public void testBaseUrlIsMemoized() throws Exception {
+        MockNode first = new MockNode("first");
+        first.setProperty(PN_REDIRECT, "/first");
+        MockNode second = new MockNode("second");
+        second.setProperty(PN_REDIRECT, "/second");
+
+        assertThat(_service.createRedirectUrl(first), equalTo("http://www.noice.work/first"));
+        assertThat(_service.createRedirectUrl(second), equalTo("http://www.noice.work/second"));
+        verify(_serverConfiguration, times(1)).getDefaultBaseUrl();
+
+        _service.setTargetContextPath("/public");
+        assertThat(_service.createRedirectUrl(first), equalTo("http://www.noice.work/public/first"));
+    }
+
     @Before
     public void setUp() {
+        _resolvedIds = new ArrayList<>();
         _service = new DefaultPublicUrlService() {
             @Override
             public String getExternalLinkFromId(final String nodeId) {
+                _resolvedIds.add(nodeId);
                 return "http://www.noice.work/context/page.html";
             }
         };
 
-        ServerConfiguration serverConfiguration = mock(ServerConfiguration.class);
-        when(serverConfiguration.getDefaultBaseUrl()).thenReturn("http://www.noice.work/author");
-        _service.setServerConfiguration(serverConfiguration);
+        _serverConfiguration = mock(ServerConfiguration.class);
+        when(_serverConfiguration.getDefaultBaseUrl()).thenReturn("http://www.noice.work/author");
+        _service.setServerConfiguration(_serverConfiguration);
         _service.setContextPath("/author");
     }
 }
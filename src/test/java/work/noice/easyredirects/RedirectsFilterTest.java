@@ -0,0 +1,101 @@
+package work.noice.easyredirects;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ * 
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import info.magnolia.virtualuri.VirtualUriMapping;
+import org.junit.Before;
+import org.junit.Test;
+
+import jakarta.inject.Provider;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.net.URI;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the early redirects filter.
+ */
+public class RedirectsFilterTest {
+    private RedirectsFilter _filter;
+    private VirtualRedirectsUriMapping _uriMapping;
+    private HttpServletRequest _request;
+    private HttpServletResponse _response;
+    private FilterChain _chain;
+
+    @Test
+    public void testRedirectIsAnswered() throws Exception {
+        when(_uriMapping.mapUri(URI.create("/xmas?id=1"))).thenReturn(Optional.of(new VirtualUriMapping.Result("permanent:/christmas", 5, _uriMapping)));
+
+        _filter.doFilter(_request, _response, _chain);
+        verify(_response).setStatus(HttpServletResponse.SC_MOVED_PERMANENTLY);
+        verify(_chain, never()).doFilter(any(), any());
+    }
+
+    @Test
+    public void testForwardContinues() throws Exception {
+        when(_uriMapping.mapUri(URI.create("/xmas?id=1"))).thenReturn(Optional.of(new VirtualUriMapping.Result("forward:/christmas", 5, _uriMapping)));
+
+        _filter.doFilter(_request, _response, _chain);
+        verify(_chain).doFilter(_request, _response);
+        verify(_request, never()).setAttribute(any(), any());
+    }
+
+    @Test
+    public void testMissIsMarked() throws Exception {
+        when(_uriMapping.mapUri(URI.create("/xmas?id=1"))).thenReturn(Optional.empty());
+
+        _filter.doFilter(_request, _response, _chain);
+        verify(_request).setAttribute(RedirectsFilter.ATTR_CHECKED_PATH, "/xmas");
+        verify(_chain).doFilter(_request, _response);
+    }
+
+    @Before
+    public void setUp() {
+        _uriMapping = mock(VirtualRedirectsUriMapping.class);
+        _filter = new RedirectsFilter() {
+            @Override
+            protected VirtualRedirectsUriMapping getUriMapping() {
+                return _uriMapping;
+            }
+        };
+
+        RedirectsService redirectsService = mock(RedirectsService.class);
+        when(redirectsService.isRuleTableReady()).thenReturn(true);
+        @SuppressWarnings("unchecked")
+        Provider<RedirectsService> serviceProvider = mock(Provider.class);
+        when(serviceProvider.get()).thenReturn(redirectsService);
+        _filter.setRedirectsService(serviceProvider);
+
+        _request = mock(HttpServletRequest.class);
+        when(_request.getContextPath()).thenReturn("/author");
+        when(_request.getRequestURI()).thenReturn("/author/xmas");
+        when(_request.getQueryString()).thenReturn("id=1");
+        _response = mock(HttpServletResponse.class);
+        _chain = mock(FilterChain.class);
+    }
+}
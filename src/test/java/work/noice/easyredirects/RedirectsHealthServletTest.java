@@ -0,0 +1,95 @@
+package work.noice.easyredirects;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ * 
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+import work.noice.easyredirects.rules.RedirectTable;
+
+import jakarta.inject.Provider;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the readiness of the compiled redirects.
+ */
+public class RedirectsHealthServletTest {
+    private RedirectsHealthServlet _servlet;
+    private RedirectRuleRegistry _ruleRegistry;
+    private HttpServletResponse _response;
+    private StringWriter _body;
+
+    @Test
+    public void testReady() throws Exception {
+        RedirectTable table = mock(RedirectTable.class);
+        when(table.size()).thenReturn(42);
+        when(_ruleRegistry.getCompiledTable()).thenReturn(table);
+
+        _servlet.doGet(null, _response);
+        verify(_response).setStatus(HttpServletResponse.SC_OK);
+        verify(_ruleRegistry, never()).warmUp();
+        assertThat(_body.toString(), equalTo("{\"ready\":true,\"redirects\":42,\"staleness\":0,\"compileDuration\":0,\"compileFailures\":0}"));
+    }
+
+    @Test
+    public void testStaleTableIsServed() throws Exception {
+        RedirectTable table = mock(RedirectTable.class);
+        when(table.size()).thenReturn(42);
+        when(_ruleRegistry.getCompiledTable()).thenReturn(table);
+        when(_ruleRegistry.getStaleness()).thenReturn(1500L);
+        when(_ruleRegistry.getCompileDuration()).thenReturn(3200L);
+        when(_ruleRegistry.getCompileFailures()).thenReturn(1L);
+
+        _servlet.doGet(null, _response);
+        verify(_response).setStatus(HttpServletResponse.SC_OK);
+        assertThat(_body.toString(), equalTo("{\"ready\":true,\"redirects\":42,\"staleness\":1500,\"compileDuration\":3200,\"compileFailures\":1}"));
+    }
+
+    @Test
+    public void testNotReady() throws Exception {
+        _servlet.doGet(null, _response);
+        verify(_response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        verify(_ruleRegistry).warmUp();
+        assertThat(_body.toString(), equalTo("{\"ready\":false,\"staleness\":0,\"compileDuration\":0,\"compileFailures\":0}"));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        _ruleRegistry = mock(RedirectRuleRegistry.class);
+        @SuppressWarnings("unchecked")
+        Provider<RedirectRuleRegistry> registryProvider = mock(Provider.class);
+        when(registryProvider.get()).thenReturn(_ruleRegistry);
+        _servlet = new RedirectsHealthServlet();
+        _servlet.setRuleRegistry(registryProvider);
+
+        _body = new StringWriter();
+        _response = mock(HttpServletResponse.class);
+        when(_response.getWriter()).thenReturn(new PrintWriter(_body, true));
+    }
+}
@@ -131,6 +131,18 @@ public class RedirectsServiceTest {
         assertThat(_service.createRedirectUrl(null), equalTo("http://www.noice.work/redirect"));
     }
 
+    @Test
+    public void testFromUrl() throws Exception {
+        MockNode mockNode = new MockNode("node");
+        mockNode.setProperty("redirect", "/old");
+        assertThat(RedirectsService.getFromUrl(mockNode), equalTo("/old"));
+
+        // the duplicate check of the save action is keyed on the from url variant, not on the redirect property
+        mockNode.setProperty("fromUrl", "/Foo/");
+        assertThat(RedirectsService.getFromUrl(mockNode), equalTo("/Foo/"));
+        assertThat(RedirectsService.getFromUrl(new MockNode("empty")), nullValue());
+    }
+
 
     @Test
     public void testWildcardPatternMatching() {
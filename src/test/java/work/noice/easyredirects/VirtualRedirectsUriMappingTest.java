@@ -33,10 +33,16 @@ import info.magnolia.virtualuri.VirtualUriMapping;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import work.noice.easyredirects.rules.CachePolicy;
+import work.noice.easyredirects.rules.RedirectTrace;
 
 import jakarta.inject.Provider;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -44,7 +50,11 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.hamcrest.core.IsNull.notNullValue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -56,7 +66,11 @@ import static org.mockito.Mockito.when;
 public class VirtualRedirectsUriMappingTest {
 
     private VirtualRedirectsUriMapping _uriMapping;
+    private RedirectsModule _redirectsModule;
     private RedirectsService _redirectsService;
+    private MockNode _xmasNode;
+    private SiteManager _siteManager;
+    private Site _dotmarSite;
 
     @Test
     public void testRootRequest() throws Exception {
@@ -125,6 +139,95 @@ public class VirtualRedirectsUriMappingTest {
         assertThat(mappingResult, is(Optional.empty()));
     }
 
+    @Test
+    public void testSiteAssignedWithoutAggregationStateSite() throws Exception {
+        // the early filter runs before the site of the request is in the aggregation state
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getServerName()).thenReturn("www.dotmar.com");
+        when(((WebContext) MgnlContext.getInstance()).getRequest()).thenReturn(request);
+        when(_siteManager.getAssignedSite("www.dotmar.com", "/test")).thenReturn(_dotmarSite);
+
+        Optional<VirtualUriMapping.Result> mappingResult = _uriMapping.mapUri(new URI("/test"));
+        assertThat(mappingResult.isPresent() ? mappingResult.get().getToUri() : "", equalTo("redirect:/products.html"));
+
+        when(request.getServerName()).thenReturn("www.other.com");
+        assertThat(_uriMapping.mapUri(new URI("/test")), is(Optional.empty()));
+    }
+
+    @Test
+    public void testCacheHeaders() throws Exception {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(((WebContext) MgnlContext.getInstance()).getResponse()).thenReturn(response);
+        CachePolicy policy = new CachePolicy();
+        policy.setMaxAge(3600L);
+        when(_redirectsService.getCachePolicy(_xmasNode)).thenReturn(policy);
+
+        assertThat(_uriMapping.mapUri(new URI("/xmas")).isPresent(), is(true));
+        verify(response).setHeader("Cache-Control", "public, max-age=3600");
+        verify(response).setHeader("Surrogate-Key", "redirects redirect-" + _xmasNode.getIdentifier());
+    }
+
+    @Test
+    public void testTraceHeaderForRequestWithToken() throws Exception {
+        _redirectsModule.setTraceToken("secret");
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader(VirtualRedirectsUriMapping.HEADER_TRACE)).thenReturn("secret");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(((WebContext) MgnlContext.getInstance()).getRequest()).thenReturn(request);
+        when(((WebContext) MgnlContext.getInstance()).getResponse()).thenReturn(response);
+
+        assertThat(_uriMapping.mapUri(new URI("/xmas")).isPresent(), is(true));
+        ArgumentCaptor<String> trace = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq(VirtualRedirectsUriMapping.HEADER_TRACE), trace.capture());
+        assertThat(trace.getValue().startsWith("exclude["), is(true));
+        assertThat(trace.getValue().endsWith("]=redirect:/internal/page.html"), is(true));
+
+        when(request.getHeader(VirtualRedirectsUriMapping.HEADER_TRACE)).thenReturn("guess");
+        HttpServletResponse otherResponse = mock(HttpServletResponse.class);
+        when(((WebContext) MgnlContext.getInstance()).getResponse()).thenReturn(otherResponse);
+        assertThat(_uriMapping.mapUri(new URI("/xmas")).isPresent(), is(true));
+        verify(otherResponse, never()).setHeader(eq(VirtualRedirectsUriMapping.HEADER_TRACE), anyString());
+    }
+
+    @Test
+    public void testTracedResponseIsNotCached() throws Exception {
+        _redirectsModule.setTraceToken("secret");
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader(VirtualRedirectsUriMapping.HEADER_TRACE)).thenReturn("secret");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(((WebContext) MgnlContext.getInstance()).getRequest()).thenReturn(request);
+        when(((WebContext) MgnlContext.getInstance()).getResponse()).thenReturn(response);
+        CachePolicy policy = new CachePolicy();
+        policy.setMaxAge(3600L);
+        when(_redirectsService.getCachePolicy(_xmasNode)).thenReturn(policy);
+
+        assertThat(_uriMapping.mapUri(new URI("/xmas")).isPresent(), is(true));
+        verify(response).setHeader("Cache-Control", "private, no-store");
+        verify(response, never()).setHeader("Cache-Control", "public, max-age=3600");
+        verify(response, never()).setHeader(eq("Surrogate-Key"), anyString());
+    }
+
+    @Test
+    public void testTestUriWithoutSideEffects() throws Exception {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(((WebContext) MgnlContext.getInstance()).getResponse()).thenReturn(response);
+        CachePolicy policy = new CachePolicy();
+        policy.setMaxAge(3600L);
+        when(_redirectsService.getCachePolicy(_xmasNode)).thenReturn(policy);
+
+        List<RedirectTrace.Step> steps = _uriMapping.testUri(new URI("/xmas"), null).getSteps();
+        assertThat(steps.size(), equalTo(4));
+        assertThat(steps.get(0).getDetail(), equalTo("candidate"));
+        assertThat(steps.get(1).getDetail(), equalTo(NullSite.SITE_NAME));
+        assertThat(steps.get(2).getPhase(), equalTo("exact"));
+        assertThat(steps.get(3).getDetail(), equalTo("redirect:/internal/page.html"));
+        verify(response, never()).setHeader(eq("Cache-Control"), anyString());
+
+        steps = _uriMapping.testUri(new URI("/logo.png"), null).getSteps();
+        assertThat(steps.size(), equalTo(1));
+        assertThat(steps.get(0).getDetail(), equalTo("excluded"));
+    }
+
     @Before
     public void setUp() {
         _uriMapping = new VirtualRedirectsUriMapping();
@@ -132,6 +235,7 @@ public class VirtualRedirectsUriMappingTest {
         @SuppressWarnings("unchecked")
         Provider<RedirectsModule> moduleProvider = mock(Provider.class);
         RedirectsModule module = new RedirectsModule();
+        _redirectsModule = module;
         Map<String, String> excludes = new HashMap<>();
         excludes.put("pages", "(?i).*\\.(css|js|png|gif|jpe?g|ico|svg|webp|avif|woff2?|ttf|otf|eot|map|json|xml|html?|jsp|jspx|asp|aspx|pdf|docx?|xlsx?|pptx?|txt|csv|zip|gz|tar|mp4|mp3|webm|ogg)$");
         module.setExcludes(excludes);
@@ -144,6 +248,7 @@ public class VirtualRedirectsUriMappingTest {
         when(_redirectsService.queryForRedirectNode("/home", NullSite.SITE_NAME)).thenReturn(null);
 
         MockNode mockNode = new MockNode("xmas");
+        _xmasNode = mockNode;
         when(_redirectsService.queryForRedirectNode("/xmas", NullSite.SITE_NAME)).thenReturn(mockNode);
         
         // Mock site-specific redirect URL
@@ -161,12 +266,12 @@ public class VirtualRedirectsUriMappingTest {
         // Mock SiteManager
         @SuppressWarnings("unchecked")
         Provider<SiteManager> siteManagerProvider = mock(Provider.class);
-        SiteManager siteManager = mock(SiteManager.class);
-        Site dotmarSite = mock(Site.class);
-        when(dotmarSite.getName()).thenReturn("Dotmar");
-        when(siteManager.getSite("Dotmar")).thenReturn(dotmarSite);
-        when(siteManager.getSite("NonExistentSite")).thenReturn(null);
-        when(siteManagerProvider.get()).thenReturn(siteManager);
+        _siteManager = mock(SiteManager.class);
+        _dotmarSite = mock(Site.class);
+        when(_dotmarSite.getName()).thenReturn("Dotmar");
+        when(_siteManager.getSite("Dotmar")).thenReturn(_dotmarSite);
+        when(_siteManager.getSite("NonExistentSite")).thenReturn(null);
+        when(siteManagerProvider.get()).thenReturn(_siteManager);
         _uriMapping.setSiteManager(siteManagerProvider);
 
         initWebContext();
@@ -0,0 +1,89 @@
+package work.noice.easyredirects.export;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Test for the web server map formats ({@link RedirectMapWriter}).
+ */
+public class RedirectMapWriterTest {
+    private static final List<RedirectMapEntry> ENTRIES = List.of(
+        new RedirectMapEntry("/old/", "/new/", true, true),
+        new RedirectMapEntry("/c", "/$uri", true, false),
+        new RedirectMapEntry("/b", "https://www.noice.work/b", true, false),
+        new RedirectMapEntry("/a \"quoted\"", "/target", true, false),
+        new RedirectMapEntry("/b", "/ignored", true, false)
+    );
+
+    private Path _directory;
+
+    @Test
+    public void testNginxMap() {
+        assertThat(RedirectMapWriter.toNginxMap(ENTRIES), equalTo(RedirectMapWriter.HEADER
+            + "\"/a \\\"quoted\\\"\" \"/target\";\n"
+            + "\"/b\" \"https://www.noice.work/b\";\n"
+            + "\"~^/old/\" \"/new/\";\n"));
+    }
+
+    @Test
+    public void testApacheMap() {
+        assertThat(RedirectMapWriter.toApacheMap(ENTRIES), equalTo(RedirectMapWriter.HEADER + "/b https://www.noice.work/b\n/c /$uri\n"));
+    }
+
+    @Test
+    public void testWriteAtomically() throws Exception {
+        Path file = _directory.resolve("site-301.map");
+
+        assertThat(RedirectMapWriter.writeAtomically(file, "first"), equalTo(true));
+        assertThat(RedirectMapWriter.writeAtomically(file, "first"), equalTo(false));
+        assertThat(RedirectMapWriter.writeAtomically(file, "second"), equalTo(true));
+        assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), equalTo("second"));
+        try (var files = Files.list(_directory)) {
+            assertThat(files.count(), equalTo(1L));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (var files = Files.list(_directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(_directory);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        _directory = Files.createTempDirectory("redirect-maps");
+    }
+}
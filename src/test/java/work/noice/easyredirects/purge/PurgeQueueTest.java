@@ -0,0 +1,91 @@
+package work.noice.easyredirects.purge;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Test for deduplication, batching and retries of purges.
+ */
+public class PurgeQueueTest {
+    private PurgeQueue _queue;
+
+    @Test
+    public void testDeduplication() {
+        _queue.add(List.of("redirect-1", "redirect-2"), List.of("/old"));
+        _queue.add(List.of("redirect-2"), List.of("/old"));
+
+        PurgeBatch batch = _queue.drain(10, 100);
+        assertThat(batch.getSurrogateKeys(), equalTo(Set.of("redirect-1", "redirect-2")));
+        assertThat(batch.getPaths(), equalTo(Set.of("/old")));
+        assertThat(_queue.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testBatches() {
+        _queue.add(List.of("redirect-1", "redirect-2"), List.of("/a", "/b"));
+
+        assertThat(_queue.drain(3, 100).toString(), equalTo("2 keys and 1 paths"));
+        assertThat(_queue.drain(3, 100).getPaths(), equalTo(Set.of("/b")));
+        assertThat(_queue.drain(3, 100).isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testPurgeAllAboveThreshold() {
+        _queue.add(List.of("redirect-1", "redirect-2", "redirect-3"), List.of("/a"));
+
+        PurgeBatch batch = _queue.drain(2, 3);
+        assertThat(batch.isAll(), equalTo(true));
+        assertThat(_queue.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testRetry() {
+        _queue.add(List.of("redirect-1"), List.of());
+        PurgeBatch failed = _queue.drain(10, 100);
+        _queue.add(List.of("redirect-2"), List.of());
+
+        assertThat(_queue.retry(failed), equalTo(1));
+        PurgeBatch retry = _queue.drain(10, 100);
+        assertThat(retry.getSurrogateKeys(), equalTo(Set.of("redirect-1", "redirect-2")));
+        assertThat(retry.getAttempt(), equalTo(1));
+        assertThat(_queue.retry(retry), equalTo(2));
+    }
+
+    @Test
+    public void testJson() {
+        PurgeBatch batch = new PurgeBatch(Set.of("redirect-1"), Set.of("/a \"b\""), false, 0);
+        assertThat(HttpCdnPurger.toJson(batch), equalTo("{\"all\":false,\"surrogateKeys\":[\"redirect-1\"],\"paths\":[\"/a \\\"b\\\"\"]}"));
+        assertThat(HttpCdnPurger.toJson(new PurgeBatch(Set.of(), Set.of(), true, 0)), equalTo("{\"all\":true,\"surrogateKeys\":[\"redirects\"],\"paths\":[]}"));
+    }
+
+    @Before
+    public void setUp() {
+        _queue = new PurgeQueue();
+    }
+}
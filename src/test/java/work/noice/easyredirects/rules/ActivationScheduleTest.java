@@ -0,0 +1,63 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Test for the validity windows ({@link ActivationSchedule}).
+ */
+public class ActivationScheduleTest {
+    private static final long NOW = 1_000_000L;
+
+    @Test
+    public void testActive() {
+        ActivationSchedule schedule = new ActivationSchedule(NOW);
+
+        assertThat(schedule.add(null, null), equalTo(true));
+        assertThat(schedule.add(NOW, null), equalTo(true));
+        assertThat(schedule.add(NOW - 10, NOW + 50), equalTo(true));
+        assertThat(schedule.add(NOW + 20, NOW + 30), equalTo(false));
+        assertThat(schedule.add(null, NOW), equalTo(false));
+        assertThat(schedule.getNextBoundary(), equalTo(NOW + 20));
+    }
+
+    @Test
+    public void testNoBoundary() {
+        ActivationSchedule schedule = new ActivationSchedule(NOW);
+
+        schedule.add(NOW - 20, NOW - 10);
+        schedule.add(NOW + 30, NOW + 10);
+        assertThat(schedule.getNextBoundary(), equalTo(NOW + 10));
+        assertThat(new ActivationSchedule(NOW).getNextBoundary(), equalTo(ActivationSchedule.NONE));
+    }
+
+    @Test
+    public void testOverlaps() {
+        assertThat(ActivationSchedule.overlaps(null, null, NOW, NOW + 10), equalTo(true));
+        assertThat(ActivationSchedule.overlaps(NOW, NOW + 10, NOW + 5, null), equalTo(true));
+        assertThat(ActivationSchedule.overlaps(NOW, NOW + 10, NOW + 10, NOW + 20), equalTo(false));
+        assertThat(ActivationSchedule.overlaps(null, NOW, NOW, null), equalTo(false));
+    }
+}
@@ -0,0 +1,65 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * Test for the cache headers of redirect responses.
+ */
+public class CachePolicyTest {
+    private CachePolicy _policy;
+
+    @Test
+    public void testEmptyPolicy() {
+        assertThat(new CachePolicy().toCacheControl(null), nullValue());
+    }
+
+    @Test
+    public void testCacheControl() {
+        assertThat(_policy.toCacheControl(null), equalTo("public, max-age=3600, s-maxage=86400, stale-while-revalidate=60"));
+    }
+
+    @Test
+    public void testOverride() {
+        assertThat(_policy.override(0L, null).toCacheControl(null), equalTo("public, max-age=0, s-maxage=86400, stale-while-revalidate=60"));
+        assertThat(new CachePolicy().override(null, 600L).toCacheControl(null), equalTo("public, s-maxage=600"));
+    }
+
+    @Test
+    public void testLimitedToValidity() {
+        assertThat(_policy.toCacheControl(7200L), equalTo("public, max-age=3600, s-maxage=7200"));
+        assertThat(_policy.toCacheControl(-5L), equalTo("public, max-age=0, s-maxage=0"));
+    }
+
+    @Before
+    public void setUp() {
+        _policy = new CachePolicy();
+        _policy.setMaxAge(3600L);
+        _policy.setSharedMaxAge(86400L);
+        _policy.setStaleWhileRevalidate(60L);
+    }
+}
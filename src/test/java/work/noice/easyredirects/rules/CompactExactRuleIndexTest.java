@@ -0,0 +1,168 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * Test for the compact, off-heap and perfect hash indexes of very large redirect sets.
+ */
+public class CompactExactRuleIndexTest {
+    private Map<String, ExactRule[]> _rules;
+    private List<String> _keys;
+    private ExactRuleIndex _hash;
+
+    @Test
+    public void testFrontCodedKeys() {
+        TreeSet<String> keys = new TreeSet<>();
+        Random random = new Random(42);
+        while (keys.size() < 1000) {
+            keys.add("/products/category-" + random.nextInt(50) + "/item-" + random.nextInt(100000));
+        }
+        keys.add("/caf\u00e9");
+        keys.add("/emoji/\ud83d\ude00");
+        keys.add("/emoji/\ud83d\ude01");
+        FrontCodedKeys dictionary = new FrontCodedKeys(new ArrayList<>(keys));
+
+        int ordinal = 0;
+        for (String key : keys) {
+            assertThat(dictionary.indexOf(key), equalTo(ordinal++));
+        }
+        assertThat(dictionary.indexOf("/"), equalTo(-1));
+        assertThat(dictionary.indexOf("/products/category-1/item-"), equalTo(-1));
+        assertThat(dictionary.indexOf("/zzz"), equalTo(-1));
+    }
+
+    @Test
+    public void testSameCandidatesAsHashIndex() {
+        ExactRuleIndex compact = new CompactExactRuleIndex(_rules);
+
+        assertSameCandidates(compact);
+        assertThat(compact.estimateBytes() < _hash.estimateBytes() / 2, equalTo(true));
+    }
+
+    @Test
+    public void testOffHeapSameCandidatesAsHashIndex() {
+        ExactRuleIndex offHeap = new OffHeapExactRuleIndex(_rules);
+
+        assertSameCandidates(offHeap);
+        assertThat(offHeap.estimateBytes() < 1024, equalTo(true));
+        assertThat(offHeap.estimateOffHeapBytes() > 0, equalTo(true));
+    }
+
+    @Test
+    public void testPerfectHashSameCandidatesAsHashIndex() {
+        ExactRuleIndex perfectHash = PerfectHashExactRuleIndex.create(_rules, null);
+
+        assertSameCandidates(perfectHash);
+        assertThat(perfectHash.estimateBytes() < _hash.estimateBytes() / 2, equalTo(true));
+    }
+
+    @Test
+    public void testMinimalPerfectHash() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            keys.add("/archive/" + i + ".html");
+        }
+        MinimalPerfectHash hash = MinimalPerfectHash.build(keys);
+
+        boolean[] slots = new boolean[keys.size()];
+        for (String key : keys) {
+            int slot = hash.indexOf(key);
+            assertThat(slots[slot], equalTo(false));
+            slots[slot] = true;
+        }
+        assertThat(hash.indexOf("/archive/50000.html"), equalTo(MinimalPerfectHash.NOT_FOUND));
+        assertThat(hash.covers(keys), equalTo(true));
+        assertThat(hash.covers(keys.subList(1, keys.size())), equalTo(false));
+        assertThat(hash.estimateBytes() < 14L * keys.size(), equalTo(true));
+        assertThat(MinimalPerfectHash.build(List.of()).indexOf("/"), equalTo(MinimalPerfectHash.NOT_FOUND));
+    }
+
+    @Test
+    public void testPerfectHashIsReused() {
+        PerfectHashExactRuleIndex previous = PerfectHashExactRuleIndex.create(_rules, null);
+        Map<String, ExactRule[]> changedTargets = new HashMap<>(_rules);
+        changedTargets.put("/old/page-1", new ExactRule[]{new ExactRule("changed", null)});
+        PerfectHashExactRuleIndex same = PerfectHashExactRuleIndex.create(changedTargets, previous);
+        assertThat(same.getHash() == previous.getHash(), equalTo(true));
+        assertThat(same.get("/old/page-1")[0].getIdentifier(), equalTo("changed"));
+
+        Map<String, ExactRule[]> changedUrls = new HashMap<>(_rules);
+        changedUrls.put("/old/page-500", changedUrls.remove("/old/page-1"));
+        PerfectHashExactRuleIndex rebuilt = PerfectHashExactRuleIndex.create(changedUrls, previous);
+        assertThat(rebuilt.getHash() == previous.getHash(), equalTo(false));
+        assertThat(rebuilt.get("/old/page-1"), nullValue());
+        assertThat(rebuilt.get("/old/page-500")[0].getIdentifier(), equalTo(_rules.get("/old/page-1")[0].getIdentifier()));
+    }
+
+    @Test
+    public void testIdentifiersWithoutUuid() {
+        Map<String, ExactRule[]> rules = Map.of("/a", new ExactRule[]{new ExactRule("first", null)}, "/b", new ExactRule[]{new ExactRule("ABCDEF00-0000-0000-0000-000000000000", null)});
+        for (ExactRuleIndex index : List.of(new CompactExactRuleIndex(rules), new OffHeapExactRuleIndex(rules), PerfectHashExactRuleIndex.create(rules, null))) {
+            assertThat(index.get("/a")[0].getIdentifier(), equalTo("first"));
+            assertThat(index.get("/b")[0].getIdentifier(), equalTo("ABCDEF00-0000-0000-0000-000000000000"));
+            assertThat(index.get("/c"), nullValue());
+        }
+    }
+
+    private void assertSameCandidates(final ExactRuleIndex index) {
+        assertThat(index.size(), equalTo(_hash.size()));
+        for (String key : _keys) {
+            ExactRule[] expected = _hash.get(key);
+            ExactRule[] actual = index.get(key);
+            assertThat(actual.length, equalTo(expected.length));
+            for (int i = 0; i < expected.length; i++) {
+                assertThat(actual[i].getIdentifier(), equalTo(expected[i].getIdentifier()));
+                assertThat(actual[i].getQueryRule(), equalTo(expected[i].getQueryRule()));
+            }
+        }
+        assertThat(index.get("/old/page-500"), nullValue());
+        assertThat(index.get("/old/page-\u00e9"), nullValue());
+    }
+
+    @Before
+    public void setUp() {
+        QueryRule queryRule = QueryRule.compile("campaign=spring", null, null);
+        _rules = new HashMap<>();
+        _keys = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String key = "/old/page-" + i;
+            _keys.add(key);
+            ExactRule fallback = new ExactRule(UUID.randomUUID().toString(), null);
+            _rules.put(key, i % 10 == 0 ? new ExactRule[]{new ExactRule(UUID.randomUUID().toString(), queryRule), fallback} : new ExactRule[]{fallback});
+        }
+        _hash = new HashExactRuleIndex(_rules);
+    }
+}
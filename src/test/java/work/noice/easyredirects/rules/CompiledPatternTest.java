@@ -0,0 +1,121 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * Test for the specialized matchers of simple patterns.
+ */
+public class CompiledPatternTest {
+    private static final String[] PATTERN_TOKENS = {"/", "a", "b", ".", "-", "}", "*", "{x}", "{y}", "{z}", "/old/"};
+    private static final char[] URL_CHARS = {'/', 'a', 'b', '.', '-', '}', '\n'};
+
+    @Test
+    public void testParameters() {
+        CompiledPattern pattern = CompiledPattern.compile("/products/{category}/{id}.html", false);
+
+        Map<String, String> params = pattern.match("/products/shoes/a.b.html", 100);
+        assertThat(params.get("category"), equalTo("shoes"));
+        assertThat(params.get("id"), equalTo("a.b"));
+        assertThat(params.get("1"), equalTo("shoes"));
+        assertThat(params.get("2"), equalTo("a.b"));
+        assertThat(pattern.match("/products/shoes/.html", 100), nullValue());
+        assertThat(pattern.match("/products/shoes/x/y.html", 100), nullValue());
+    }
+
+    @Test
+    public void testWildcards() {
+        assertThat(CompiledPattern.compile("/old/*", false).match("/old/a/b", 100).isEmpty(), equalTo(true));
+        assertThat(CompiledPattern.compile("/old/*", false).match("/old/a\nb", 100), nullValue());
+        assertThat(CompiledPattern.compile("/*/{page}", false).match("/a/b/c", 100).get("page"), equalTo("c"));
+        assertThat(CompiledPattern.compile("/*.pdf", false).match("/docs/a.pdf", 100).isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        assertThat(CompiledPattern.compile("/shop/{id}", true).match("/SHOP/Item", 100).get("id"), equalTo("Item"));
+        assertThat(CompiledPattern.compile("/caf\u00e9/*", true), nullValue());
+        assertThat(CompiledPattern.compile("/caf\u00e9/*", false).match("/caf\u00e9/x", 100).isEmpty(), equalTo(true));
+        assertThat(CompiledPattern.compile("^/shop/(.*)$", false), nullValue());
+    }
+
+    @Test
+    public void testBudget() {
+        PatternRule rule = new PatternRule("1", "/a", "/{x}a{y}a{z}b{w}", 0, 1000);
+
+        assertThat(rule.isCompiled(), equalTo(true));
+        assertThat(rule.match("/" + "a".repeat(200)), nullValue());
+        assertThat(rule.isQuarantined(), equalTo(true));
+    }
+
+    @Test
+    public void testSameMatchesAsRegex() {
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder pattern = new StringBuilder();
+            int parameter = 0;
+            for (int token = random.nextInt(6); token >= 0; token--) {
+                String next = PATTERN_TOKENS[random.nextInt(PATTERN_TOKENS.length)];
+                if (next.startsWith("{")) {
+                    // unique group names in order
+                    next = "{" + "xyz".charAt(parameter++ % 3) + parameter + "}";
+                }
+                pattern.append(next);
+            }
+            CompiledPattern compiled = CompiledPattern.compile(pattern.toString(), false);
+            Pattern regex = Pattern.compile(PatternRule.toRegex(pattern.toString()));
+            for (int j = 0; j < 50; j++) {
+                StringBuilder url = new StringBuilder();
+                for (int length = random.nextInt(12); length > 0; length--) {
+                    url.append(URL_CHARS[random.nextInt(URL_CHARS.length)]);
+                }
+                assertThat(pattern + " " + url, compiled.match(url.toString(), Long.MAX_VALUE), equalTo(matchRegex(regex, url.toString())));
+            }
+        }
+    }
+
+    private static Map<String, String> matchRegex(final Pattern regex, final String url) {
+        Map<String, String> params = null;
+        Matcher matcher = regex.matcher(url);
+        if (matcher.matches()) {
+            params = new HashMap<>();
+            for (int i = 1; i <= matcher.groupCount(); i++) {
+                params.put(String.valueOf(i), matcher.group(i));
+            }
+            Matcher names = Pattern.compile("\\(\\?<([a-z0-9]+)>").matcher(regex.pattern());
+            while (names.find()) {
+                params.put(names.group(1), matcher.group(names.group(1)));
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,114 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Test for the save time pattern analysis ({@link PatternAnalyzer}).
+ */
+public class PatternAnalyzerTest {
+    private PatternAnalyzer _analyzer;
+
+    @Test
+    public void testInvalidRegexIsError() {
+        PatternAnalysis analysis = analyze("^/products/(\\d+$");
+
+        assertThat(keys(analysis.getErrors()), equalTo(Collections.singletonList(PatternAnalyzer.ERROR_INVALID)));
+    }
+
+    @Test
+    public void testSimplePatternsAreCheap() {
+        assertThat(analyze("/products/*").getWarnings().isEmpty(), equalTo(true));
+        assertThat(analyze("/blog/{year}/{month}").getWarnings().isEmpty(), equalTo(true));
+        assertThat(analyze("^/product-(\\d+)\\.html$").getWarnings().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testNestedQuantifiers() {
+        assertThat(keys(analyze("^/(a+)+$").getWarnings()).contains(PatternAnalyzer.WARNING_NESTED_QUANTIFIER), equalTo(true));
+        assertThat(keys(analyze("^/(?:\\w+/)*$").getWarnings()).contains(PatternAnalyzer.WARNING_NESTED_QUANTIFIER), equalTo(true));
+        assertThat(keys(analyze("^/(a++)+$").getWarnings()).contains(PatternAnalyzer.WARNING_NESTED_QUANTIFIER), equalTo(false));
+        assertThat(keys(analyze("^/(?>a+)+$").getWarnings()).contains(PatternAnalyzer.WARNING_NESTED_QUANTIFIER), equalTo(false));
+        assertThat(keys(analyze("^/(a+)?[b+]{2}$").getWarnings()).contains(PatternAnalyzer.WARNING_NESTED_QUANTIFIER), equalTo(false));
+    }
+
+    @Test
+    public void testBackreference() {
+        assertThat(keys(analyze("^/(\\w+)/\\1$").getWarnings()).contains(PatternAnalyzer.WARNING_BACKREFERENCE), equalTo(true));
+    }
+
+    @Test
+    public void testCatastrophicPatternExceedsBudget() {
+        PatternAnalysis analysis = analyze("^/(.*a){12}$");
+
+        assertThat(keys(analysis.getErrors()), equalTo(Collections.singletonList(PatternAnalyzer.ERROR_BUDGET)));
+        assertThat(analysis.getEstimatedSteps(), equalTo(PatternRule.DEFAULT_STEP_BUDGET));
+    }
+
+    @Test
+    public void testShadowedByEarlierPattern() {
+        List<PatternRule> rules = Arrays.asList(
+            new PatternRule("1", "/a", "/shop/*", 10),
+            new PatternRule("2", "/b", "/news/{id}", 0)
+        );
+
+        assertThat(keys(_analyzer.analyze("/shop/sale/*", 0, "/c", rules, Collections.emptyList()).getWarnings()), equalTo(Collections.singletonList(PatternAnalyzer.WARNING_SHADOWED)));
+        assertThat(_analyzer.analyze("/shop/sale/*", 20, "/c", rules, Collections.emptyList()).getWarnings().isEmpty(), equalTo(true));
+        assertThat(keys(_analyzer.analyze("/news/*", 0, "/a", rules, Collections.emptyList()).getWarnings()).isEmpty(), equalTo(true));
+        assertThat(keys(_analyzer.analyze("/news/{slug}", 0, "/c", rules, Collections.emptyList()).getWarnings()), equalTo(Collections.singletonList(PatternAnalyzer.WARNING_SHADOWED)));
+    }
+
+    @Test
+    public void testShadowsExactRedirects() {
+        PatternAnalysis analysis = _analyzer.analyze("/old/*", 0, "/a", Collections.emptyList(), Arrays.asList("/new/page", "/old/page", "/old/other"));
+
+        assertThat(keys(analysis.getWarnings()), equalTo(Collections.singletonList(PatternAnalyzer.WARNING_SHADOWS_EXACT)));
+        assertThat(analysis.getWarnings().get(0).getArguments()[0], equalTo(2));
+        assertThat(analysis.getWarnings().get(0).getArguments()[1], equalTo("/old/page"));
+    }
+
+    private PatternAnalysis analyze(final String pattern) {
+        return _analyzer.analyze(pattern, 0, "/a", Collections.emptyList(), Collections.emptyList());
+    }
+
+    private static List<String> keys(final List<PatternAnalysis.Finding> findings) {
+        List<String> keys = new ArrayList<>();
+        for (PatternAnalysis.Finding finding : findings) {
+            keys.add(finding.getKey());
+        }
+        return keys;
+    }
+
+    @Before
+    public void setUp() {
+        _analyzer = new PatternAnalyzer(PatternRule.DEFAULT_STEP_BUDGET);
+    }
+}
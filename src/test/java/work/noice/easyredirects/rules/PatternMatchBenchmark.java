@@ -0,0 +1,110 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the specialized matchers of simple patterns with the regex evaluation of the same patterns.
+ * Not a unit test, run the main method with the test classpath, e.g. from the IDE.
+ */
+public final class PatternMatchBenchmark {
+    private static final int RULES = 200;
+    private static final int URLS = 10_000;
+    private static final int ROUNDS = 30;
+
+    private PatternMatchBenchmark() {
+    }
+
+    public static void main(final String[] args) {
+        Random random = new Random(42);
+        List<PatternRule> compiled = new ArrayList<>();
+        List<PatternRule> regex = new ArrayList<>();
+        for (int i = 0; i < RULES; i++) {
+            String pattern;
+            switch (i % 4) {
+                case 0:
+                    pattern = "/shop-" + i + "/*";
+                    break;
+                case 1:
+                    pattern = "/blog-" + i + "/{year}/{month}/{slug}";
+                    break;
+                case 2:
+                    pattern = "/docs-" + i + "/*/{page}.html";
+                    break;
+                default:
+                    pattern = "/products-" + i + "/{category}/{id}";
+                    break;
+            }
+            compiled.add(new PatternRule(String.valueOf(i), "/" + i, pattern, 0));
+            // the anchored regex of the same pattern is evaluated by the regex engine
+            regex.add(new PatternRule(String.valueOf(i), "/" + i, PatternRule.toRegex(pattern), 0));
+        }
+        List<String> urls = new ArrayList<>();
+        int[] urlRules = new int[URLS];
+        for (int i = 0; i < URLS; i++) {
+            int rule = random.nextInt(RULES);
+            urlRules[i] = rule;
+            switch (rule % 4) {
+                case 0:
+                    urls.add("/shop-" + rule + "/category/item-" + i);
+                    break;
+                case 1:
+                    urls.add("/blog-" + rule + "/2024/0" + (i % 9 + 1) + "/post-" + i);
+                    break;
+                case 2:
+                    urls.add("/docs-" + rule + "/v" + (i % 3) + "/guide/page-" + i + (i % 2 == 0 ? ".html" : ".pdf"));
+                    break;
+                default:
+                    urls.add("/products-" + rule + "/shoes/" + i + (i % 5 == 0 ? "/reviews" : ""));
+                    break;
+            }
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long regexNanos = run(regex, urls, urlRules);
+            long compiledNanos = run(compiled, urls, urlRules);
+            System.out.printf(Locale.ROOT, "round %2d: regex %6.1f ns/url, compiled %6.1f ns/url%n", round,
+                (double) regexNanos / urls.size(), (double) compiledNanos / urls.size());
+        }
+    }
+
+    /**
+     * Evaluates the rule of every url, the literal prefix check of the other rules is the same for both.
+     */
+    private static long run(final List<PatternRule> rules, final List<String> urls, final int[] urlRules) {
+        long start = System.nanoTime();
+        int matches = 0;
+        for (int i = 0; i < urls.size(); i++) {
+            if (rules.get(urlRules[i]).match(urls.get(i)) != null) {
+                matches++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        if (matches == 0) {
+            throw new IllegalStateException("No url matched.");
+        }
+        return nanos;
+    }
+}
@@ -0,0 +1,154 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * Test for the ordered pattern rules ({@link PatternRuleSet}).
+ */
+public class PatternRuleSetTest {
+
+    @Test
+    public void testLiteralPrefixAndSuffix() {
+        assertThat(new PatternRule("1", "/a", "/products/*", 0).getLiteralPrefix(), equalTo("/products/"));
+        assertThat(new PatternRule("1", "/a", "/docs/*.pdf", 0).getLiteralSuffix(), equalTo(".pdf"));
+        assertThat(new PatternRule("1", "/a", "/blog/{year}/{month}", 0).getLiteralPrefix(), equalTo("/blog/"));
+        assertThat(new PatternRule("1", "/a", "^/product-(\\d+)$", 0).getLiteralPrefix(), equalTo("/product-"));
+        assertThat(new PatternRule("1", "/a", "/items?/(.*)", 0).getLiteralPrefix(), equalTo("/item"));
+        assertThat(new PatternRule("1", "/a", "/a\\.html(.*)", 0).getLiteralPrefix(), equalTo("/a.html"));
+        assertThat(new PatternRule("1", "/a", "/(a|b)/x|/c", 0).getLiteralPrefix(), equalTo(""));
+        assertThat(PatternRule.literalPrefix("/blog/{year}/{month}"), equalTo("/blog/"));
+        assertThat(PatternRule.literalPrefix("^/product-(\\d+)$"), equalTo("/product-"));
+    }
+
+    @Test
+    public void testPriorityDefinesMatchingOrder() {
+        PatternRuleSet ruleSet = new PatternRuleSet(Arrays.asList(
+            new PatternRule("generic", "/a", "/products/*", 0),
+            new PatternRule("specific", "/b", "/products/{id}", 10)
+        ));
+
+        assertThat(ruleSet.match("/products/42").getRule().getIdentifier(), equalTo("specific"));
+        assertThat(ruleSet.match("/products/42").getParameters().get("id"), equalTo("42"));
+        assertThat(ruleSet.match("/products/42/details").getRule().getIdentifier(), equalTo("generic"));
+        assertThat(ruleSet.match("/other"), nullValue());
+    }
+
+    @Test
+    public void testPathBreaksTies() {
+        PatternRuleSet ruleSet = new PatternRuleSet(Arrays.asList(
+            new PatternRule("second", "/z", "/news/*", 0),
+            new PatternRule("first", "/m", "*", 0)
+        ));
+
+        assertThat(ruleSet.match("/news/today").getRule().getIdentifier(), equalTo("first"));
+    }
+
+    @Test
+    public void testAdaptiveOrderKeepsFirstMatchSemantics() {
+        List<PatternRule> rules = new ArrayList<>();
+        rules.add(new PatternRule("catchAll", "/0", "/*", 0));
+        for (int i = 0; i < 50; i++) {
+            rules.add(new PatternRule("section" + i, "/" + (i + 10), "/section" + i + "/*", 1));
+        }
+        rules.add(new PatternRule("hot", "/9", "/hot/*", 1));
+        PatternRuleSet ruleSet = new PatternRuleSet(rules);
+
+        for (int i = 0; i < 5000; i++) {
+            assertThat(ruleSet.match("/hot/" + i).getRule().getIdentifier(), equalTo("hot"));
+        }
+        assertThat(ruleSet.match("/section7/page").getRule().getIdentifier(), equalTo("section7"));
+        assertThat(ruleSet.match("/unknown").getRule().getIdentifier(), equalTo("catchAll"));
+    }
+
+    @Test
+    public void testConflictingPredecessorWinsOverHotRule() {
+        PatternRuleSet ruleSet = new PatternRuleSet(Arrays.asList(
+            new PatternRule("hot", "/b", "/shop/*", 0),
+            new PatternRule("special", "/a", "/shop/sale/*", 0)
+        ));
+
+        for (int i = 0; i < 3000; i++) {
+            ruleSet.match("/shop/item" + i);
+        }
+        assertThat(ruleSet.match("/shop/sale/shoes").getRule().getIdentifier(), equalTo("special"));
+        assertThat(ruleSet.match("/shop/shoes").getRule().getIdentifier(), equalTo("hot"));
+    }
+
+    @Test
+    public void testCatastrophicPatternIsQuarantined() {
+        PatternRuleSet ruleSet = new PatternRuleSet(Arrays.asList(
+            new PatternRule("evil", "/a", "^/(.*a){12}$", 10),
+            new PatternRule("fallback", "/b", "/*", 0)
+        ));
+        String attack = "/" + "a".repeat(30) + "!";
+
+        long start = System.nanoTime();
+        assertThat(ruleSet.match(attack).getRule().getIdentifier(), equalTo("fallback"));
+        assertThat((System.nanoTime() - start) < 1_000_000_000L, equalTo(true));
+        assertThat(ruleSet.getQuarantinedRules().size(), equalTo(1));
+        assertThat(ruleSet.match("/aaa").getRule().getIdentifier(), equalTo("fallback"));
+    }
+
+    @Test
+    public void testParallelEvaluationKeepsFirstMatch() {
+        List<PatternRule> rules = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            rules.add(new PatternRule("section" + i, "/" + (10000 + i), "/section" + i + "/*", 0));
+        }
+        rules.add(new PatternRule("early", "/0500", "/section2999/early/*", 0));
+        rules.add(new PatternRule("catchAll", "/99999", "/*", 0));
+        PatternRuleSet sequential = new PatternRuleSet(rules);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            PatternRuleSet parallel = new PatternRuleSet(rules, pool);
+
+            assertThat(parallel.isParallel(), equalTo(true));
+            for (String url : new String[]{"/section0/a", "/section1500/a", "/section2999/a", "/section2999/early/a", "/unknown"}) {
+                assertThat(url, parallel.match(url).getRule().getIdentifier(), equalTo(sequential.match(url).getRule().getIdentifier()));
+            }
+            assertThat(parallel.match("/section2999/early/a").getRule().getIdentifier(), equalTo("early"));
+            pool.shutdown();
+            assertThat(parallel.match("/section42/a").getRule().getIdentifier(), equalTo("section42"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBudgetAllowsRegularMatches() {
+        PatternRule rule = new PatternRule("1", "/a", "^/(.*a){12}$", 0);
+
+        assertThat(rule.match("/" + "a".repeat(30)), notNullValue());
+        assertThat(rule.isQuarantined(), equalTo(false));
+    }
+}
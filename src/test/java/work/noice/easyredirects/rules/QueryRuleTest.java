@@ -0,0 +1,88 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * Test for the query conditions and rewriting ({@link QueryRule}, {@link ParsedQuery}).
+ */
+public class QueryRuleTest {
+
+    @Test
+    public void testParsedQuery() {
+        ParsedQuery query = ParsedQuery.parse("?a=1&b=x%20y&&flag&a=2");
+
+        assertThat(query.get("a"), equalTo("1"));
+        assertThat(query.get("b"), equalTo("x y"));
+        assertThat(query.get("flag"), equalTo(""));
+        assertThat(query.get("missing"), nullValue());
+        assertThat(query.format(name -> !"a".equals(name)), equalTo("b=x%20y&flag"));
+        assertThat(ParsedQuery.parse(null).isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testNoSettings() {
+        assertThat(QueryRule.compile(null, " ", ""), nullValue());
+    }
+
+    @Test
+    public void testConditions() {
+        QueryRule rule = QueryRule.compile("campaign=spring&id={id}&ref=*&preview", null, null);
+
+        Map<String, String> params = rule.match(ParsedQuery.parse("campaign=spring&id=42&ref=mail&preview"));
+        assertThat(params.get("id"), equalTo("42"));
+        assertThat(rule.match(ParsedQuery.parse("campaign=fall&id=42&ref=mail&preview")), nullValue());
+        assertThat(rule.match(ParsedQuery.parse("campaign=spring&id=42&preview")), nullValue());
+        assertThat(rule.match(ParsedQuery.EMPTY), nullValue());
+    }
+
+    @Test
+    public void testRewrite() {
+        ParsedQuery query = ParsedQuery.parse("id=42&utm_source=news&page=2&sort=asc&fbclid=x");
+        ParameterFilter globalDrop = ParameterFilter.parse("fbclid");
+
+        assertThat(QueryRule.compile("id={id}", "utm_*", null).rewrite(query, globalDrop), equalTo("page=2&sort=asc"));
+        assertThat(QueryRule.compile(null, null, "page, utm_*").rewrite(query, globalDrop), equalTo("utm_source=news&page=2"));
+    }
+
+    @Test
+    public void testExactCandidates() {
+        RedirectTable table = new RedirectTable.Builder(PatternRule.DEFAULT_STEP_BUDGET)
+            .addExact(null, "shop", "/landing", "plain")
+            .addExact(null, "shop", "/landing", "spring", QueryRule.compile("campaign=spring", null, null))
+            .addExact(null, "shop", "/landing", "product", QueryRule.compile("product={id}", null, null))
+            .addPattern(null, "shop", "search", "/s", "/search/*", 0, QueryRule.compile("q={term}", null, null))
+            .build();
+
+        assertThat(table.lookup(null, "shop", "/landing", ParsedQuery.parse("campaign=spring")).getIdentifier(), equalTo("spring"));
+        assertThat(table.lookup(null, "shop", "/landing", ParsedQuery.parse("product=7")).getParameters().get("id"), equalTo("7"));
+        assertThat(table.lookup(null, "shop", "/landing", ParsedQuery.parse("campaign=fall")).getIdentifier(), equalTo("plain"));
+        assertThat(table.lookup(null, "shop", "/search/all", ParsedQuery.parse("q=shoes")).getParameters().get("term"), equalTo("shoes"));
+        assertThat(table.lookup(null, "shop", "/search/all", ParsedQuery.EMPTY), nullValue());
+    }
+}
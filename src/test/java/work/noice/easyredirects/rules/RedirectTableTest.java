@@ -0,0 +1,123 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * Test for the host and site partitioned rules ({@link RedirectTable}).
+ */
+public class RedirectTableTest {
+    private RedirectTable _table;
+
+    @Test
+    public void testSitePartition() {
+        assertThat(_table.lookup(null, "shop", "/sale").getIdentifier(), equalTo("shopSale"));
+        assertThat(_table.lookup(null, "blog", "/sale"), nullValue());
+        assertThat(_table.lookup(null, "blog", "/2020/05").getParameters().get("year"), equalTo("2020"));
+    }
+
+    @Test
+    public void testMatchKind() {
+        assertThat(_table.lookup(null, "shop", "/sale").isPattern(), equalTo(false));
+        assertThat(_table.lookup(null, "blog", "/2020/05").isPattern(), equalTo(true));
+    }
+
+    @Test
+    public void testWithoutSiteUsesAllSites() {
+        assertThat(_table.lookup(null, null, "/sale").getIdentifier(), equalTo("shopSale"));
+        assertThat(_table.lookup(null, null, "/2020/05").getIdentifier(), equalTo("blogArchive"));
+    }
+
+    @Test
+    public void testHostPartitionComesFirst() {
+        assertThat(_table.lookup("WWW.Shop.example", "shop", "/sale").getIdentifier(), equalTo("hostSale"));
+        assertThat(_table.lookup("www.shop.example", "shop", "/old/x").getIdentifier(), equalTo("hostPattern"));
+        assertThat(_table.lookup("other.example", "shop", "/sale").getIdentifier(), equalTo("shopSale"));
+        assertThat(_table.lookup("other.example", "shop", "/old/x"), nullValue());
+    }
+
+    @Test
+    public void testDomainSelectsSite() {
+        assertThat(_table.lookup("blog.example", null, "/sale"), nullValue());
+        assertThat(_table.lookup("blog.example", null, "/2020/05").getIdentifier(), equalTo("blogArchive"));
+    }
+
+    @Test
+    public void testPatternRulesOfSite() {
+        assertThat(_table.getPatternRules("blog").size(), equalTo(1));
+        assertThat(_table.getPatternRules("shop").size(), equalTo(0));
+        assertThat(_table.getPatternRules(null).size(), equalTo(1));
+        assertThat(_table.getPatternRules("unknown").size(), equalTo(0));
+    }
+
+    @Test
+    public void testCompactPartitions() {
+        RedirectTable table = new RedirectTable.Builder(PatternRule.DEFAULT_STEP_BUDGET)
+            .withCompactThreshold(0)
+            .addExact(null, "shop", "/sale", "shopSale")
+            .addExact(null, "shop", "/sale", "duplicate")
+            .addExact("www.shop.example", "shop", "/sale/", "hostSale")
+            .build();
+
+        assertThat(table.lookup(null, "shop", "/sale").getIdentifier(), equalTo("shopSale"));
+        assertThat(table.lookup("www.shop.example", "shop", "/sale").getIdentifier(), equalTo("hostSale"));
+        assertThat(table.lookup(null, "shop", "/sales"), nullValue());
+        assertThat(table.getFootprintReport().startsWith("3 exact urls in 3 partitions"), equalTo(true));
+    }
+
+    @Test
+    public void testPerfectHashPartitions() {
+        RedirectTable.Builder builder = new RedirectTable.Builder(PatternRule.DEFAULT_STEP_BUDGET)
+            .withPerfectHash(List.of("archive", "WWW.Shop.Example"))
+            .addExact(null, "archive", "/2001/index.html", "archive2001")
+            .addExact("www.shop.example", "shop", "/sale", "hostSale")
+            .addExact(null, "shop", "/sale", "shopSale");
+        RedirectTable table = builder.build();
+
+        assertThat(table.lookup(null, "archive", "/2001/index.html").getIdentifier(), equalTo("archive2001"));
+        assertThat(table.lookup("www.shop.example", "shop", "/sale").getIdentifier(), equalTo("hostSale"));
+        assertThat(table.lookup(null, "archive", "/2002/index.html"), nullValue());
+        assertThat(table.getFootprintReport().contains("site archive: 1 urls, about 0 KB, perfect hash"), equalTo(true));
+
+        RedirectTable next = builder.withPrevious(table).build();
+        assertThat(next.lookup(null, "archive", "/2001/index.html").getIdentifier(), equalTo("archive2001"));
+    }
+
+    @Before
+    public void setUp() {
+        _table = new RedirectTable.Builder(PatternRule.DEFAULT_STEP_BUDGET)
+            .addDomain("blog.example", "blog")
+            .addExact(null, "shop", "/sale", "shopSale")
+            .addExact(null, "shop", "/sale", "duplicate")
+            .addPattern(null, "blog", "blogArchive", "/b", "/{year}/{month}", 0)
+            .addExact("www.shop.example", "shop", "/sale", "hostSale")
+            .addPattern("www.shop.example", "shop", "hostPattern", "/h", "/old/*", 0)
+            .build();
+    }
+}
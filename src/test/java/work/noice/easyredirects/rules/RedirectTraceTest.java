@@ -0,0 +1,67 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Test for the trace of redirect decisions ({@link RedirectTrace}).
+ */
+public class RedirectTraceTest {
+
+    @Test
+    public void testSteps() {
+        RedirectTrace trace = new RedirectTrace(false, null);
+        trace.record("exclude", "candidate");
+        trace.recordMatch("pattern", "/redirects/blog", Map.of("year", "2024"));
+        trace.recordMatch("exact", "/redirects/home", null);
+
+        assertThat(trace.getSteps().size(), equalTo(3));
+        assertThat(trace.getSteps().get(1).getPhase(), equalTo("pattern"));
+        assertThat(trace.getSteps().get(1).getDetail(), equalTo("/redirects/blog {year=2024}"));
+        assertThat(trace.getSteps().get(2).getDetail(), equalTo("/redirects/home"));
+        assertThat(trace.getSteps().get(0).getNanos() >= 0L, equalTo(true));
+    }
+
+    @Test
+    public void testHeaderValue() {
+        RedirectTrace trace = new RedirectTrace(false, null);
+        trace.record("site", "travel");
+        trace.record("target", "redirect:/caf\u00e9\r\nSet-Cookie: x");
+
+        String value = trace.toHeaderValue();
+        assertThat(value.matches("site\\[\\d+ns]=travel; target\\[\\d+ns]=redirect:/caf\\?\\?\\?Set-Cookie: x"), equalTo(true));
+    }
+
+    @Test
+    public void testNoneRecordsNothing() {
+        RedirectTrace.NONE.record("exclude", "candidate");
+        RedirectTrace.NONE.recordMatch("exact", "/redirects/home", null);
+
+        assertThat(RedirectTrace.NONE.getSteps().size(), equalTo(0));
+        assertThat(RedirectTrace.NONE.isDryRun(), equalTo(false));
+    }
+}
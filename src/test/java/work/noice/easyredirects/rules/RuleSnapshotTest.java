@@ -0,0 +1,158 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * Test for the persisted redirects snapshot.
+ */
+public class RuleSnapshotTest {
+    private Path _directory;
+    private Path _file;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        RuleSource pattern = createSource("1", null, "/old/(.*)", 1000L);
+        pattern.setUsePattern(true);
+        pattern.setPriority(-5);
+        pattern.setHost("www.example.com");
+        pattern.setQueryDrop("utm_*");
+        pattern.setValidFrom(1L);
+        RuleSource exact = createSource("2", "/caf\u00e9", "/shop", 2000L);
+        exact.setValidTo(5000L);
+
+        RuleSnapshot.write(_file, Arrays.asList(pattern, exact));
+        List<RuleSource> read = RuleSnapshot.read(_file);
+
+        assertThat(read.size(), equalTo(2));
+        RuleSource readPattern = read.get(0);
+        assertThat(readPattern.getIdentifier(), equalTo("1"));
+        assertThat(readPattern.getPath(), equalTo("/redirects/1"));
+        assertThat(readPattern.getSite(), equalTo("default"));
+        assertThat(readPattern.getRedirect(), nullValue());
+        assertThat(readPattern.getFromUrl(), equalTo("/old/(.*)"));
+        assertThat(readPattern.isUsePattern(), equalTo(true));
+        assertThat(readPattern.getPriority(), equalTo(-5));
+        assertThat(readPattern.getHost(), equalTo("www.example.com"));
+        assertThat(readPattern.getQueryMatch(), nullValue());
+        assertThat(readPattern.getQueryDrop(), equalTo("utm_*"));
+        assertThat(readPattern.getValidFrom(), equalTo(1L));
+        assertThat(readPattern.getValidTo(), nullValue());
+        assertThat(readPattern.getLastModified(), equalTo(1000L));
+        RuleSource readExact = read.get(1);
+        assertThat(readExact.getRedirect(), equalTo("/caf\u00e9"));
+        assertThat(readExact.isUsePattern(), equalTo(false));
+        assertThat(readExact.getValidFrom(), nullValue());
+        assertThat(readExact.getValidTo(), equalTo(5000L));
+        assertThat(RuleSnapshot.stamp(read), equalTo(RuleSnapshot.stamp(Arrays.asList(pattern, exact))));
+    }
+
+    @Test
+    public void testInvalidFiles() throws IOException {
+        assertThat(RuleSnapshot.read(_file), nullValue());
+
+        RuleSnapshot.write(_file, Collections.singletonList(createSource("1", "/a", "/b", 1L)));
+        byte[] bytes = Files.readAllBytes(_file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(_file, bytes);
+        assertThat(RuleSnapshot.read(_file), nullValue());
+
+        Files.write(_file, Arrays.copyOf(bytes, 10));
+        assertThat(RuleSnapshot.read(_file), nullValue());
+
+        Files.write(_file, new byte[0]);
+        assertThat(RuleSnapshot.read(_file), nullValue());
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidLength() throws IOException {
+        RuleSnapshot.write(_file, Collections.singletonList(createSource("1", "/a", "/b", 1L)));
+        byte[] bytes = Files.readAllBytes(_file);
+        // length of the identifier, with a valid checksum
+        ByteBuffer.wrap(bytes).putInt(3 * Integer.BYTES, -7);
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, bytes.length - Long.BYTES);
+        ByteBuffer.wrap(bytes).putLong(bytes.length - Long.BYTES, checksum.getValue());
+        Files.write(_file, bytes);
+
+        RuleSnapshot.read(_file);
+    }
+
+    @Test
+    public void testStamp() {
+        RuleSource first = createSource("1", "/a", "/b", 1L);
+        RuleSource second = createSource("2", "/c", "/d", 2L);
+        List<RuleSource> sources = new ArrayList<>(Arrays.asList(first, second));
+        long stamp = RuleSnapshot.stamp(sources);
+
+        assertThat(RuleSnapshot.stamp(Arrays.asList(second, first)), equalTo(stamp));
+        assertThat(RuleSnapshot.stamp(Collections.singletonList(first)) == stamp, equalTo(false));
+        second.setLastModified(3L);
+        assertThat(RuleSnapshot.stamp(sources) == stamp, equalTo(false));
+        second.setLastModified(2L);
+        second.setIdentifier("3");
+        assertThat(RuleSnapshot.stamp(sources) == stamp, equalTo(false));
+        second.setIdentifier("2");
+        second.setPath("/moved/2");
+        assertThat(RuleSnapshot.stamp(sources) == stamp, equalTo(false));
+    }
+
+    private static RuleSource createSource(final String identifier, final String redirect, final String fromUrl, final long lastModified) {
+        RuleSource source = new RuleSource();
+        source.setIdentifier(identifier);
+        source.setPath("/redirects/" + identifier);
+        source.setSite("default");
+        source.setRedirect(redirect);
+        source.setFromUrl(fromUrl);
+        source.setLastModified(lastModified);
+        return source;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        _directory = Files.createTempDirectory("easyredirects");
+        _file = _directory.resolve("snapshot").resolve("redirect-table.snapshot");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (var paths = Files.walk(_directory)) {
+            paths.sorted(Collections.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
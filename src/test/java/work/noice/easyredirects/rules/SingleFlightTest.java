@@ -0,0 +1,135 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Test for the coalesced loading ({@link SingleFlight}).
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentLoadsAreCoalesced() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(0);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> flight.load("/hot", () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return "node-1";
+                })));
+            }
+            waitFor(() -> flight.getCoalesced() == 7);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS), equalTo("node-1"));
+            }
+            assertThat(loads.get(), equalTo(1));
+            assertThat(flight.size(), equalTo(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCompletedLoadsAreNotKept() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(0);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(flight.load("/a", loads::incrementAndGet), equalTo(1));
+        assertThat(flight.load("/a", loads::incrementAndGet), equalTo(2));
+        String message = null;
+        try {
+            flight.load("/a", () -> {
+                throw new IllegalStateException("broken");
+            });
+        } catch (IllegalStateException e) {
+            message = e.getMessage();
+        }
+        assertThat(message, equalTo("broken"));
+        assertThat(flight.load("/a", loads::incrementAndGet), equalTo(3));
+    }
+
+    @Test
+    public void testConcurrentLoadsAreLimited() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                String key = "/page" + i;
+                results.add(executor.submit(() -> flight.load(key, () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    await(release);
+                    running.decrementAndGet();
+                    return key;
+                })));
+            }
+            waitFor(() -> flight.getQueued() == 2);
+            release.countDown();
+
+            for (int i = 0; i < 3; i++) {
+                assertThat(results.get(i).get(5, TimeUnit.SECONDS), equalTo("/page" + i));
+            }
+            assertThat(maxRunning.get(), equalTo(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(final BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000L;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < end) {
+            Thread.sleep(5L);
+        }
+        assertThat(condition.getAsBoolean(), equalTo(true));
+    }
+}
@@ -0,0 +1,116 @@
+package work.noice.easyredirects.rules;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * Test for the canonicalization of urls ({@link UrlCanonicalizer}) and the canonical lookup of the {@link RedirectTable}.
+ */
+public class UrlCanonicalizerTest {
+    private UrlCanonicalizer _canonicalizer;
+
+    @Test
+    public void testDefaults() {
+        assertThat(_canonicalizer.canonicalize("/caf%C3%A9/a+b"), equalTo("/caf\u00e9/a+b"));
+        assertThat(_canonicalizer.canonicalize("/100%/%zz"), equalTo("/100%/%zz"));
+        assertThat(_canonicalizer.canonicalize("/a/./b/../c"), equalTo("/a/c"));
+        assertThat(_canonicalizer.canonicalize("/a/b/.."), equalTo("/a/"));
+        assertThat(_canonicalizer.canonicalize("/../a"), equalTo("/a"));
+        assertThat(_canonicalizer.canonicalize("/Foo"), equalTo("/Foo"));
+        assertThat(_canonicalizer.toKey("/foo//"), equalTo("/foo"));
+        assertThat(_canonicalizer.toKey("/"), equalTo("/"));
+    }
+
+    @Test
+    public void testDisabled() {
+        _canonicalizer.setPercentDecode(false);
+        _canonicalizer.setRemoveDotSegments(false);
+        _canonicalizer.setStripTrailingSlash(false);
+
+        assertThat(_canonicalizer.canonicalize("/caf%C3%A9/./x"), equalTo("/caf%C3%A9/./x"));
+        assertThat(_canonicalizer.toKey("/foo/"), equalTo("/foo/"));
+    }
+
+    @Test
+    public void testExactVariants() {
+        _canonicalizer.setLowerCase(true);
+        RedirectTable table = new RedirectTable.Builder(PatternRule.DEFAULT_STEP_BUDGET, _canonicalizer)
+            .addExact(null, "shop", "/Foo/", "foo")
+            .addExact(null, "shop", "/caf%C3%A9", "cafe")
+            .build();
+
+        assertThat(table.lookup(null, "shop", "/foo").getIdentifier(), equalTo("foo"));
+        assertThat(table.lookup(null, "shop", "/FOO/").getIdentifier(), equalTo("foo"));
+        assertThat(table.lookup(null, "shop", "/bar/../Foo").getIdentifier(), equalTo("foo"));
+        assertThat(table.lookup(null, "shop", "/Caf\u00e9").getIdentifier(), equalTo("cafe"));
+        assertThat(table.findExactDuplicates(null, "shop", "/foo/").get(0), equalTo("foo"));
+        assertThat(table.findExactDuplicates(null, "other", "/foo").isEmpty(), equalTo(true));
+        // a saved from url variant finds the redirect of the other variant
+        assertThat(table.findExactDuplicates(null, "shop", "/FOO").get(0), equalTo("foo"));
+    }
+
+    @Test
+    public void testDoubleEncodedRequest() {
+        RedirectTable table = new RedirectTable.Builder(PatternRule.DEFAULT_STEP_BUDGET, _canonicalizer)
+            .addExact(null, "shop", "/a%25b", "percent")
+            .addExact(null, "shop", "/a%2525b", "encodedPercent")
+            .addExact(null, "shop", "/x", "parent")
+            .build();
+
+        // the request path of /a%2525b is decoded once by the uri
+        assertThat(table.lookup(null, "shop", URI.create("/a%2525b").getPath()).getIdentifier(), equalTo("encodedPercent"));
+        assertThat(table.lookup(null, "shop", URI.create("/a%25b").getPath()).getIdentifier(), equalTo("percent"));
+        // an encoded slash is no path separator for dot segments
+        assertThat(table.lookup(null, "shop", URI.create("/x/a%252F..").getPath()), nullValue());
+    }
+
+    @Test
+    public void testPatternIgnoresCase() {
+        _canonicalizer.setLowerCase(true);
+        RedirectTable table = new RedirectTable.Builder(PatternRule.DEFAULT_STEP_BUDGET, _canonicalizer)
+            .addPattern(null, "shop", "news", "/news", "/News/{year}/*", 0)
+            .build();
+
+        assertThat(table.lookup(null, "shop", "/NEWS/2024/Spring").getParameters().get("year"), equalTo("2024"));
+        assertThat(table.lookup(null, "shop", "/blog/2024/spring"), nullValue());
+    }
+
+    @Test
+    public void testCaseFolded() {
+        assertThat(_canonicalizer.isCaseFolded("/Foo"), equalTo(false));
+        _canonicalizer.setLowerCase(true);
+        assertThat(_canonicalizer.isCaseFolded("/Foo"), equalTo(true));
+        assertThat(_canonicalizer.isCaseFolded("/caf%C3%A9/./bar"), equalTo(false));
+    }
+
+    @Before
+    public void setUp() {
+        _canonicalizer = new UrlCanonicalizer();
+    }
+}
@@ -0,0 +1,78 @@
+package work.noice.easyredirects.stats;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+import work.noice.easyredirects.stats.MissingUrlTracker.MissingUrl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Test for the exchange and merging of the missing urls of several instances.
+ */
+public class MissingUrlFormatTest {
+
+    @Test
+    public void testRoundTrip() {
+        List<MissingUrl> missingUrls = Arrays.asList(
+            createMissingUrl("shop", "/old/products", 12L, 1000L),
+            createMissingUrl("default", "/100%\tsale\n", 3L, 2000L)
+        );
+
+        String text = MissingUrlFormat.format(missingUrls);
+        assertThat(text.split("\n").length, equalTo(2));
+        List<MissingUrl> parsed = MissingUrlFormat.parse(text);
+        assertThat(parsed.size(), equalTo(2));
+        assertThat(parsed.get(0).getSiteName(), equalTo("shop"));
+        assertThat(parsed.get(0).getPath(), equalTo("/old/products"));
+        assertThat(parsed.get(0).getCount(), equalTo(12L));
+        assertThat(parsed.get(1).getPath(), equalTo("/100%\tsale\n"));
+        assertThat(parsed.get(1).getLastSeen(), equalTo(2000L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedLine() {
+        MissingUrlFormat.parse("shop\t/old\tmany\t0\t0\n");
+    }
+
+    @Test
+    public void testMergeAddsHitsOfInstances() {
+        List<MissingUrl> author = Arrays.asList(createMissingUrl("shop", "/old", 1L, 1000L));
+        List<MissingUrl> public1 = Arrays.asList(createMissingUrl("shop", "/old", 5L, 3000L), createMissingUrl("shop", "/legacy", 4L, 1000L));
+        List<MissingUrl> public2 = Arrays.asList(createMissingUrl("shop", "/legacy", 3L, 2000L), createMissingUrl("blog", "/old", 2L, 1000L));
+
+        List<MissingUrl> merged = MissingUrlTracker.merge(Arrays.asList(author, public1, public2), 2);
+        assertThat(merged.size(), equalTo(2));
+        assertThat(merged.get(0).getPath(), equalTo("/legacy"));
+        assertThat(merged.get(0).getCount(), equalTo(7L));
+        assertThat(merged.get(0).getLastSeen(), equalTo(2000L));
+        assertThat(merged.get(1).getSiteName(), equalTo("shop"));
+        assertThat(merged.get(1).getCount(), equalTo(6L));
+    }
+
+    private static MissingUrl createMissingUrl(final String siteName, final String path, final long count, final long lastSeen) {
+        return new MissingUrl(siteName, new TopKSketch.Entry(path, count, 0L, lastSeen));
+    }
+}
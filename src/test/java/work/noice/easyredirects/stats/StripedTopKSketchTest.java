@@ -0,0 +1,92 @@
+package work.noice.easyredirects.stats;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Test for the striped heavy hitters sketch.
+ */
+public class StripedTopKSketchTest {
+
+    private StripedTopKSketch _sketch;
+
+    @Test
+    public void testStripesKeepMinimumCapacity() {
+        assertThat(_sketch.getStripes(), equalTo(4));
+        assertThat(new StripedTopKSketch(200, 8).getStripes(), equalTo(8));
+        assertThat(new StripedTopKSketch(20, 8).getStripes(), equalTo(1));
+    }
+
+    @Test
+    public void testMergesStripes() {
+        offer("/a", 3);
+        offer("/b", 5);
+        offer("/c", 1);
+        _sketch.remove("/c");
+
+        List<TopKSketch.Entry> top = _sketch.top(10);
+        assertThat(top.size(), equalTo(2));
+        assertThat(top.get(0).getKey(), equalTo("/b"));
+        assertThat(top.get(0).getCount(), equalTo(5L));
+        assertThat(top.get(1).getKey(), equalTo("/a"));
+        assertThat(_sketch.top(1).size(), equalTo(1));
+    }
+
+    @Test
+    public void testConcurrentOffers() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    _sketch.offer("/legacy/products");
+                    _sketch.offer("/scan/" + i);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), equalTo(true));
+
+        assertThat(_sketch.getTotal(), equalTo(8000L));
+        assertThat(_sketch.top(1).get(0).getKey(), equalTo("/legacy/products"));
+        assertThat(_sketch.top(1).get(0).getCount(), equalTo(4000L));
+    }
+
+    private void offer(final String key, final int times) {
+        for (int i = 0; i < times; i++) {
+            _sketch.offer(key);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        _sketch = new StripedTopKSketch(64, 4);
+    }
+}
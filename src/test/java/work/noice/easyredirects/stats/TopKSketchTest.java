@@ -0,0 +1,111 @@
+package work.noice.easyredirects.stats;
+
+/*
+ * #%L
+ * easyredirects Magnolia Module
+ * %%
+ *
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Test for the space-saving sketch ({@link TopKSketch}).
+ */
+public class TopKSketchTest {
+
+    private TopKSketch _sketch;
+
+    @Test
+    public void testCountsWithinCapacity() {
+        offer("/a", 3);
+        offer("/b", 5);
+        offer("/c", 1);
+
+        List<TopKSketch.Entry> top = _sketch.top(10);
+        assertThat(top.size(), equalTo(3));
+        assertThat(top.get(0).getKey(), equalTo("/b"));
+        assertThat(top.get(0).getCount(), equalTo(5L));
+        assertThat(top.get(0).getError(), equalTo(0L));
+        assertThat(top.get(1).getKey(), equalTo("/a"));
+        assertThat(top.get(2).getKey(), equalTo("/c"));
+    }
+
+    @Test
+    public void testMemoryStaysBoundedUnderScan() {
+        for (int i = 0; i < 10000; i++) {
+            _sketch.offer("/scan/" + i);
+            if (i % 100 == 0) {
+                offer("/legacy/products", 5);
+                offer("/legacy/about", 2);
+            }
+        }
+
+        assertThat(_sketch.size(), equalTo(_sketch.getCapacity()));
+        assertThat(_sketch.getTotal(), equalTo(10700L));
+        List<TopKSketch.Entry> top = _sketch.top(2);
+        assertThat(top.get(0).getKey(), equalTo("/legacy/products"));
+        assertThat(top.get(1).getKey(), equalTo("/legacy/about"));
+    }
+
+    @Test
+    public void testHeavyHitterReplacesMinimum() {
+        offer("/a", 2);
+        offer("/b", 2);
+        offer("/c", 2);
+        offer("/d", 2);
+        offer("/e", 1);
+        offer("/hot", 10);
+
+        List<TopKSketch.Entry> top = _sketch.top(1);
+        assertThat(top.get(0).getKey(), equalTo("/hot"));
+        assertThat(top.get(0).getCount() >= 10L, equalTo(true));
+    }
+
+    @Test
+    public void testRemove() {
+        offer("/a", 3);
+        offer("/b", 2);
+        offer("/c", 1);
+        _sketch.remove("/b");
+        _sketch.remove("/unknown");
+
+        List<TopKSketch.Entry> top = _sketch.top(10);
+        assertThat(top.size(), equalTo(2));
+        assertThat(top.get(0).getKey(), equalTo("/a"));
+        assertThat(top.get(1).getKey(), equalTo("/c"));
+
+        offer("/c", 5);
+        assertThat(_sketch.top(1).get(0).getKey(), equalTo("/c"));
+    }
+
+    private void offer(final String key, final int times) {
+        for (int i = 0; i < times; i++) {
+            _sketch.offer(key);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        _sketch = new TopKSketch(5);
+    }
+}